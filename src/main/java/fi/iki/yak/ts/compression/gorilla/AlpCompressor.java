@@ -0,0 +1,225 @@
+package fi.iki.yak.ts.compression.gorilla;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Compresses double values with ALP, adaptive lossless floating-point compression (Afroozeh et al., SIGMOD 2024).
+ * Values are collected to vectors of 1024 values. Each vector gets a decimal exponent e and factor f from a sample
+ * of its values, and a value v is stored as the integer round(v * 10^e * 10^-f) if n * 10^f * 10^-e gives back
+ * exactly the same double. The integers are stored with a frame of reference and bit packed with a fixed width, the
+ * rest of the values are stored as exceptions. A vector that would not get smaller is stored as is.
+ *
+ * Block layout (little endian): 32 bits amount of values, then per vector a 16 byte header (exponent, factor, bit
+ * width, unused byte, 16 bits amount of exceptions, unused 16 bits, 64 bits frame of reference), the bit packed
+ * integers in 64 bit words, 16 bit positions and 64 bit values of the exceptions. The block ends with 8 bytes of
+ * padding for the loads of the decompressor.
+ *
+ * Uncompressed vectors have the exponent 0xFF and are followed by the values.
+ */
+public class AlpCompressor {
+
+    static final int VECTOR_SIZE = 1024;
+    static final int VECTOR_HEADER_BYTES = 16;
+    static final int UNCOMPRESSED = 0xFF;
+    static final int MAX_EXPONENT = 18;
+
+    private static final int SAMPLES = 32;
+    private static final int EXCEPTION_BITS = Short.SIZE + Long.SIZE;
+    // Integers must stay exactly presentable as doubles
+    private static final double ENCODING_LIMIT = 1L << 52;
+
+    // 10^i and 10^-i, the negative powers are not exact but the compressor checks every value
+    static final double[] POW10 = new double[MAX_EXPONENT + 1];
+    static final double[] NEGATIVE_POW10 = new double[MAX_EXPONENT + 1];
+
+    static {
+        for(int i = 0; i <= MAX_EXPONENT; i++) {
+            POW10[i] = Double.parseDouble("1e" + i);
+            NEGATIVE_POW10[i] = Double.parseDouble("1e-" + i);
+        }
+    }
+
+    private final double[] vector = new double[VECTOR_SIZE];
+    private final long[] encoded = new long[VECTOR_SIZE];
+    private final short[] exceptions = new short[VECTOR_SIZE];
+    private final long[] packed = new long[VECTOR_SIZE];
+    private int vectorSize = 0;
+    private int count = 0;
+
+    private ByteBuffer bb;
+
+    public AlpCompressor() {
+        this(VECTOR_SIZE);
+    }
+
+    /**
+     * @param expectedValues Initial capacity in values, grown when needed
+     */
+    public AlpCompressor(int expectedValues) {
+        bb = ByteBuffer.allocate(Integer.BYTES + Math.max(expectedValues, 1) * Long.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        bb.putInt(0);
+    }
+
+    /**
+     * Adds a new double value to the series. Note, values must be inserted in order.
+     *
+     * @param value next floating point value in the series
+     */
+    public void addValue(double value) {
+        vector[vectorSize++] = value;
+        count++;
+        if(vectorSize == VECTOR_SIZE) {
+            compressVector();
+        }
+    }
+
+    /**
+     * Closes the block, see {@link #getByteBuffer()}.
+     */
+    public void close() {
+        if(vectorSize > 0) {
+            compressVector();
+        }
+        ensureCapacity(Long.BYTES);
+        bb.putLong(0);
+        bb.putInt(0, count);
+    }
+
+    /**
+     * Returns the closed block, the position of the ByteBuffer is at the end of the block.
+     *
+     * @return ByteBuffer of the block
+     */
+    public ByteBuffer getByteBuffer() {
+        return bb;
+    }
+
+    private static long encode(double value, int exponent, int factor) {
+        double scaled = value * POW10[exponent] * NEGATIVE_POW10[factor];
+        if(!(Math.abs(scaled) <= ENCODING_LIMIT)) {
+            // Also NaN, always an exception
+            return Long.MIN_VALUE;
+        }
+        return (long) Math.rint(scaled);
+    }
+
+    static double decode(long encoded, int exponent, int factor) {
+        return encoded * POW10[factor] * NEGATIVE_POW10[exponent];
+    }
+
+    private static boolean isException(double value, long encoded, int exponent, int factor) {
+        return encoded == Long.MIN_VALUE
+                || Double.doubleToRawLongBits(decode(encoded, exponent, factor)) != Double.doubleToRawLongBits(value);
+    }
+
+    private void compressVector() {
+        // Sample evenly from the vector and pick the exponent and factor with the smallest estimated size
+        int step = Math.max(vectorSize / SAMPLES, 1);
+        int bestExponent = 0;
+        int bestFactor = 0;
+        long bestSize = Long.MAX_VALUE;
+        for(int exponent = MAX_EXPONENT; exponent >= 0; exponent--) {
+            for(int factor = exponent; factor >= 0; factor--) {
+                long min = Long.MAX_VALUE;
+                long max = Long.MIN_VALUE;
+                int exceptionCount = 0;
+                int samples = 0;
+                for(int i = 0; i < vectorSize; i += step, samples++) {
+                    long n = encode(vector[i], exponent, factor);
+                    if(isException(vector[i], n, exponent, factor)) {
+                        exceptionCount++;
+                    } else {
+                        min = Math.min(min, n);
+                        max = Math.max(max, n);
+                    }
+                }
+                int bitWidth = exceptionCount == samples ? 0 : Long.SIZE - Long.numberOfLeadingZeros(max - min);
+                long size = (long) samples * bitWidth + (long) exceptionCount * EXCEPTION_BITS;
+                if(size < bestSize) {
+                    bestSize = size;
+                    bestExponent = exponent;
+                    bestFactor = factor;
+                }
+            }
+        }
+
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        int exceptionCount = 0;
+        for(int i = 0; i < vectorSize; i++) {
+            long n = encode(vector[i], bestExponent, bestFactor);
+            if(isException(vector[i], n, bestExponent, bestFactor)) {
+                exceptions[exceptionCount++] = (short) i;
+            } else {
+                min = Math.min(min, n);
+                max = Math.max(max, n);
+            }
+            encoded[i] = n;
+        }
+        if(exceptionCount == vectorSize) {
+            min = max = 0;
+        }
+        // Exceptions are packed as the frame of reference
+        for(int i = 0; i < exceptionCount; i++) {
+            encoded[exceptions[i]] = min;
+        }
+        int bitWidth = Long.SIZE - Long.numberOfLeadingZeros(max - min);
+        int words = (vectorSize * bitWidth + Long.SIZE - 1) / Long.SIZE;
+
+        long compressedBytes = (long) words * Long.BYTES + (long) exceptionCount * (Short.BYTES + Long.BYTES);
+        if(compressedBytes >= (long) vectorSize * Long.BYTES) {
+            ensureCapacity(VECTOR_HEADER_BYTES + vectorSize * Long.BYTES);
+            bb.put((byte) UNCOMPRESSED);
+            bb.position(bb.position() + VECTOR_HEADER_BYTES - 1);
+            for(int i = 0; i < vectorSize; i++) {
+                bb.putDouble(vector[i]);
+            }
+            vectorSize = 0;
+            return;
+        }
+
+        Arrays.fill(packed, 0, words, 0);
+        for(int i = 0; i < vectorSize; i++) {
+            long delta = encoded[i] - min;
+            long bitPosition = (long) i * bitWidth;
+            int word = (int) (bitPosition >>> 6);
+            int shift = (int) (bitPosition & 0x3F);
+            packed[word] |= delta << shift;
+            if(shift + bitWidth > Long.SIZE) {
+                packed[word + 1] |= delta >>> (Long.SIZE - shift);
+            }
+        }
+
+        ensureCapacity(VECTOR_HEADER_BYTES + (int) compressedBytes);
+        bb.put((byte) bestExponent);
+        bb.put((byte) bestFactor);
+        bb.put((byte) bitWidth);
+        bb.put((byte) 0);
+        bb.putShort((short) exceptionCount);
+        bb.putShort((short) 0);
+        bb.putLong(min);
+        for(int i = 0; i < words; i++) {
+            bb.putLong(packed[i]);
+        }
+        for(int i = 0; i < exceptionCount; i++) {
+            bb.putShort(exceptions[i]);
+        }
+        for(int i = 0; i < exceptionCount; i++) {
+            bb.putDouble(vector[exceptions[i]]);
+        }
+        vectorSize = 0;
+    }
+
+    private void ensureCapacity(int bytes) {
+        if(bb.remaining() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(bb.capacity() * 2, bb.position() + bytes))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            bb.flip();
+            larger.put(bb);
+            bb = larger;
+        }
+    }
+}
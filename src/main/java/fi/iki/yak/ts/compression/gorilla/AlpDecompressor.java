@@ -0,0 +1,124 @@
+package fi.iki.yak.ts.compression.gorilla;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Decompresses a block created by the AlpCompressor. The values are decoded in bulk, a vector at a time: the
+ * integers are unpacked with a fixed width and multiplied back to doubles in a loop without data dependent
+ * branches, after which the exceptions are patched in.
+ */
+public class AlpDecompressor {
+
+    private final ByteBuffer bb;
+    private final int start;
+    private final int count;
+
+    /**
+     * Reads the block from the current position of the ByteBuffer, the position is not changed.
+     *
+     * @param buf Buffer of the block
+     */
+    public AlpDecompressor(ByteBuffer buf) {
+        bb = buf.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        start = bb.position();
+        count = bb.getInt(start);
+    }
+
+    /**
+     * Returns the amount of values in the block.
+     *
+     * @return Amount of values
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Decompresses the block to the given array, which must have room for {@link #size()} values.
+     *
+     * @param values Receives the values
+     * @return Amount of decompressed values
+     */
+    public int decode(double[] values) {
+        int position = start + Integer.BYTES;
+        for(int offset = 0; offset < count; offset += AlpCompressor.VECTOR_SIZE) {
+            position = decodeVector(values, offset, Math.min(AlpCompressor.VECTOR_SIZE, count - offset), position);
+        }
+        return count;
+    }
+
+    /**
+     * Decompresses the block and pushes each value to the consumer, the index of the value is given as the
+     * timestamp.
+     *
+     * @param consumer Receives indexes and values
+     * @return Amount of decompressed values
+     */
+    public int decode(TimestampValueConsumer consumer) {
+        double[] values = new double[count];
+        decode(values);
+        for(int i = 0; i < count; i++) {
+            consumer.accept(i, Double.doubleToRawLongBits(values[i]));
+        }
+        return count;
+    }
+
+    private int decodeVector(double[] values, int offset, int size, int position) {
+        int exponent = bb.get(position) & 0xFF;
+        if(exponent == AlpCompressor.UNCOMPRESSED) {
+            position += AlpCompressor.VECTOR_HEADER_BYTES;
+            for(int i = 0; i < size; i++) {
+                values[offset + i] = bb.getDouble(position);
+                position += Long.BYTES;
+            }
+            return position;
+        }
+
+        int factor = bb.get(position + 1);
+        int bitWidth = bb.get(position + 2);
+        int exceptionCount = bb.getShort(position + 4) & 0xFFFF;
+        long base = bb.getLong(position + 8);
+        position += AlpCompressor.VECTOR_HEADER_BYTES;
+
+        // Fused multiply of the unpacked integers, the loads past the packed words are masked away
+        double multiplier = AlpCompressor.POW10[factor];
+        double divider = AlpCompressor.NEGATIVE_POW10[exponent];
+        if(bitWidth == 0) {
+            // All the values are the frame of reference, there are no packed words
+            double value = base * multiplier * divider;
+            for(int i = 0; i < size; i++) {
+                values[offset + i] = value;
+            }
+        } else {
+            long mask = -1L >>> (Long.SIZE - bitWidth);
+            for(int i = 0; i < size; i++) {
+                long bitPosition = (long) i * bitWidth;
+                int word = position + (int) (bitPosition >>> 6) * Long.BYTES;
+                int shift = (int) (bitPosition & 0x3F);
+                long packed = (bb.getLong(word) >>> shift) | ((bb.getLong(word + Long.BYTES) << 1) << (63 - shift));
+                values[offset + i] = (base + (packed & mask)) * multiplier * divider;
+            }
+        }
+        position += (size * bitWidth + Long.SIZE - 1) / Long.SIZE * Long.BYTES;
+
+        int valuePosition = position + exceptionCount * Short.BYTES;
+        for(int i = 0; i < exceptionCount; i++) {
+            values[offset + bb.getShort(position + i * Short.BYTES)] = bb.getDouble(valuePosition + i * Long.BYTES);
+        }
+        return valuePosition + exceptionCount * Long.BYTES;
+    }
+
+    /**
+     * Decompresses the whole block from the current position of the ByteBuffer.
+     *
+     * @param buf Buffer of the block
+     * @return Decompressed values
+     */
+    public static double[] decode(ByteBuffer buf) {
+        AlpDecompressor d = new AlpDecompressor(buf);
+        double[] values = new double[d.size()];
+        d.decode(values);
+        return values;
+    }
+}
@@ -0,0 +1,210 @@
+package fi.iki.yak.ts.compression.gorilla;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compacts segment files in the background by merging adjacent small blocks of a series into larger ones, which
+ * saves the header, the first delta and the first value of each merged block.
+ *
+ * Blocks are merged if they are BlockEncoder containers of the same codec and predictor of this package without an
+ * error bound. The points are streamed from the decoders of the blocks to the encoder of the merged block, so the
+ * memory use is bounded by one merged block per thread. Other blocks, including the ones that are not containers,
+ * are copied as is.
+ */
+public class BlockCompactor implements Closeable {
+
+    /**
+     * Longest time range of a merged block. A merged block starts at the timestamp of its first point, so its first
+     * delta is always zero. The cap keeps every delta, and so every delta-of-delta, of the merged block small enough
+     * for the 32-bit zigzag bucket of the timestamp encoding, which the points of adjacent blocks do not guarantee.
+     */
+    public static final long MAX_SPAN = (1L << GorillaCompressor.FIRST_DELTA_BITS) - 1;
+    public static final int DEFAULT_MAX_POINTS = 1 << 16;
+
+    private static final int TASKS_PER_THREAD = 4;
+
+    private final ExecutorService executor;
+    private final int threads;
+    private final int maxPoints;
+    private final long maxSpan;
+
+    /**
+     * Creates a compactor that merges blocks up to the default amount of points and the longest time range.
+     *
+     * @param threads Amount of compaction threads
+     */
+    public BlockCompactor(int threads) {
+        this(threads, DEFAULT_MAX_POINTS, MAX_SPAN);
+    }
+
+    /**
+     * @param threads Amount of compaction threads
+     * @param maxPoints Maximum amount of points in a merged block
+     * @param maxSpan Maximum time range of a merged block, at most MAX_SPAN
+     */
+    public BlockCompactor(int threads, int maxPoints, long maxSpan) {
+        if(threads < 1) {
+            throw new IllegalArgumentException("Amount of threads must be positive, was " + threads);
+        }
+        if(maxPoints < 1) {
+            throw new IllegalArgumentException("Maximum amount of points must be positive, was " + maxPoints);
+        }
+        if(maxSpan < 0 || maxSpan > MAX_SPAN) {
+            throw new IllegalArgumentException("Maximum time range must be between 0 and " + MAX_SPAN + ", was "
+                    + maxSpan);
+        }
+        this.threads = threads;
+        this.maxPoints = maxPoints;
+        this.maxSpan = maxSpan;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "block-compactor-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Compacts the source segment to a new target segment in the background. The series are split between the
+     * threads, the blocks of a series are always compacted by one thread in time order. If the compaction fails,
+     * the target segment is deleted.
+     *
+     * @param source Path of the segment to compact
+     * @param target Path of the compacted segment, the file must not exist
+     * @return Future of the amount of blocks in the target segment
+     * @throws IOException if the segments can not be opened
+     */
+    public CompletableFuture<Integer> compact(Path source, Path target) throws IOException {
+        SegmentReader reader = new SegmentReader(source);
+        SegmentWriter writer;
+        try {
+            writer = new SegmentWriter(target);
+        } catch(IOException e) {
+            reader.close();
+            throw e;
+        }
+
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        int blocksPerTask = Math.max(1, reader.size() / (threads * TASKS_PER_THREAD));
+        for(int from = 0; from < reader.size(); ) {
+            int to = Math.min(reader.size(), from + blocksPerTask);
+            // Series are not split between the tasks
+            while(to < reader.size() && reader.getSeriesId(to) == reader.getSeriesId(to - 1)) {
+                to++;
+            }
+            int start = from;
+            int end = to;
+            tasks.add(CompletableFuture.runAsync(() -> compact(reader, writer, start, end), executor));
+            from = to;
+        }
+
+        return CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0]))
+                .handle((ignored, failure) -> {
+                    int blocks = writer.size();
+                    try {
+                        writer.close();
+                        reader.close();
+                        if(failure != null) {
+                            Files.deleteIfExists(target);
+                        }
+                    } catch(IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    if(failure != null) {
+                        throw failure instanceof CompletionException ? (CompletionException) failure
+                                : new CompletionException(failure);
+                    }
+                    return blocks;
+                });
+    }
+
+    private void compact(SegmentReader reader, SegmentWriter writer, int from, int to) {
+        int groupStart = from;
+        BlockDecoder groupDecoder = null;
+        long groupFirstTimestamp = 0;
+        int groupPoints = 0;
+
+        for(int i = from; i < to; i++) {
+            BlockDecoder decoder = mergeableDecoder(reader.getBlock(i));
+            if(groupDecoder != null && decoder != null
+                    && reader.getSeriesId(i) == reader.getSeriesId(groupStart)
+                    && decoder.getCodec() == groupDecoder.getCodec()
+                    && decoder.getPredictor() == groupDecoder.getPredictor()
+                    && decoder.getPredictorParameter() == groupDecoder.getPredictorParameter()
+                    && groupPoints + decoder.size() <= maxPoints
+                    && decoder.getLastTimestamp() - groupFirstTimestamp <= maxSpan) {
+                groupPoints += decoder.size();
+                continue;
+            }
+            write(reader, writer, groupStart, i, groupDecoder, groupFirstTimestamp, groupPoints);
+            groupStart = i;
+            groupDecoder = decoder;
+            groupFirstTimestamp = decoder != null ? decoder.getFirstTimestamp() : 0;
+            groupPoints = decoder != null ? decoder.size() : 0;
+        }
+        write(reader, writer, groupStart, to, groupDecoder, groupFirstTimestamp, groupPoints);
+    }
+
+    private static BlockDecoder mergeableDecoder(ByteBuffer block) {
+        BlockDecoder decoder;
+        try {
+            decoder = new BlockDecoder(block);
+        } catch(IllegalArgumentException e) {
+            // Not a container
+            return null;
+        }
+        // The 32-bit codecs are not decoded in this package
+        return !BlockEncoder.isCodec32(decoder.getCodec()) && !decoder.isLossy() ? decoder : null;
+    }
+
+    private static void write(SegmentReader reader, SegmentWriter writer, int from, int to, BlockDecoder decoder,
+                              long firstTimestamp, int points) {
+        if(from == to) {
+            return;
+        }
+        long seriesId = reader.getSeriesId(from);
+        try {
+            if(to - from == 1) {
+                synchronized(writer) {
+                    writer.append(seriesId, reader.getFirstTimestamp(from), reader.getLastTimestamp(from),
+                            reader.getBlock(from));
+                }
+                return;
+            }
+
+            BlockEncoder encoder = new BlockEncoder(decoder.getCodec(), firstTimestamp, points,
+                    decoder.getPredictor(), decoder.getPredictorParameter(), 0);
+            for(int i = from; i < to; i++) {
+                new BlockDecoder(reader.getBlock(i)).decode(encoder::addValue);
+            }
+            encoder.close();
+            ByteBuffer container = encoder.getByteBuffer();
+            container.flip();
+            synchronized(writer) {
+                writer.append(seriesId, container);
+            }
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Stops the compaction threads after the submitted compactions are done.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
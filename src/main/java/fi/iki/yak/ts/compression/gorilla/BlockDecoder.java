@@ -0,0 +1,266 @@
+package fi.iki.yak.ts.compression.gorilla;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Decompresses a container created by the BlockEncoder. The header is verified when the decoder is created and the
+ * decompressor of the block is chosen by the codec in the header.
+ */
+public class BlockDecoder {
+
+    private final ByteBuffer bb;
+    private final int start;
+
+    private final int codec;
+    private final int predictor;
+    private final int flags;
+    private final int predictorParameter;
+    private final int points;
+    private final long firstTimestamp;
+    private final long lastTimestamp;
+    private final int payloadLength;
+
+    /**
+     * Reads the container from the current position of the ByteBuffer, the position is not changed.
+     *
+     * @param buf Buffer of the container
+     * @throws IllegalArgumentException if the buffer does not start with a valid container or the checksum does not
+     * match
+     */
+    public BlockDecoder(ByteBuffer buf) {
+        bb = buf.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        start = bb.position();
+        if(bb.remaining() < BlockEncoder.HEADER_BYTES || bb.getInt(start) != BlockEncoder.MAGIC) {
+            throw new IllegalArgumentException("Not a block container at position " + start);
+        }
+        int version = bb.get(start + 4);
+        if(version != BlockEncoder.VERSION) {
+            throw new IllegalArgumentException("Unsupported block container version " + version);
+        }
+        codec = bb.get(start + 5);
+        predictor = bb.get(start + 6);
+        flags = bb.get(start + 7);
+        predictorParameter = bb.getInt(start + 8);
+        points = bb.getInt(start + 12);
+        firstTimestamp = bb.getLong(start + 16);
+        lastTimestamp = bb.getLong(start + 24);
+        payloadLength = bb.getInt(start + 32);
+        if(payloadLength < 0 || bb.remaining() - BlockEncoder.HEADER_BYTES < payloadLength) {
+            throw new IllegalArgumentException("Block container at position " + start + " is truncated");
+        }
+        if(bb.getInt(start + 36) != BlockEncoder.checksum(bb, start)) {
+            throw new IllegalArgumentException("Checksum of the block container at position " + start
+                    + " does not match");
+        }
+    }
+
+    /**
+     * @return One of the BlockEncoder CODEC constants
+     */
+    public int getCodec() {
+        return codec;
+    }
+
+    /**
+     * @return One of the BlockEncoder PREDICTOR constants
+     */
+    public int getPredictor() {
+        return predictor;
+    }
+
+    /**
+     * @return Table size of the DifferentialFCM or the degree of the POLYNOMIAL codec, otherwise zero
+     */
+    public int getPredictorParameter() {
+        return predictorParameter;
+    }
+
+    /**
+     * @return BlockEncoder FLAG constants of the block
+     */
+    public int getFlags() {
+        return flags;
+    }
+
+    /**
+     * @return true if the values were stored with an error bound
+     */
+    public boolean isLossy() {
+        return (flags & BlockEncoder.FLAG_LOSSY) != 0;
+    }
+
+    /**
+     * Returns the amount of points in the block.
+     *
+     * @return Amount of points
+     */
+    public int size() {
+        return points;
+    }
+
+    /**
+     * @return Timestamp of the first point, Long.MAX_VALUE if the block is empty
+     */
+    public long getFirstTimestamp() {
+        return firstTimestamp;
+    }
+
+    /**
+     * @return Timestamp of the last point, Long.MIN_VALUE if the block is empty
+     */
+    public long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    /**
+     * Returns the length of the container in bytes, the next container of a store starts right after it.
+     *
+     * @return Length of the header and the compressed block
+     */
+    public int length() {
+        return BlockEncoder.HEADER_BYTES + payloadLength;
+    }
+
+    /**
+     * Returns the compressed block without the header, used by the decoders of the codecs outside of this package.
+     *
+     * @return Slice of the compressed block, the position is zero
+     */
+    public ByteBuffer getPayload() {
+        ByteBuffer payload = bb.duplicate();
+        payload.limit(start + length()).position(start + BlockEncoder.HEADER_BYTES);
+        return payload.slice();
+    }
+
+    /**
+     * Returns the timestamp stream of a codec that stores the timestamps apart from the values, see
+     * {@link BlockEncoder#payload(ByteBuffer, ByteBuffer)}.
+     *
+     * @return Slice of the timestamp stream, the position is zero
+     */
+    public ByteBuffer getTimestampPayload() {
+        ByteBuffer payload = getPayload();
+        int length = payload.order(ByteOrder.LITTLE_ENDIAN).getInt();
+        payload.limit(Integer.BYTES + length);
+        return payload.slice();
+    }
+
+    /**
+     * Returns the value stream of a codec that stores the timestamps apart from the values, see
+     * {@link BlockEncoder#payload(ByteBuffer, ByteBuffer)}.
+     *
+     * @return Slice of the value stream, the position is zero
+     */
+    public ByteBuffer getValuePayload() {
+        ByteBuffer payload = getPayload();
+        int length = payload.order(ByteOrder.LITTLE_ENDIAN).getInt();
+        payload.position(Integer.BYTES + length);
+        return payload.slice();
+    }
+
+    /**
+     * Decompresses the block and pushes each pair to the consumer.
+     *
+     * @param consumer Receives timestamps and values
+     * @return Amount of decompressed pairs
+     */
+    public int decode(TimestampValueConsumer consumer) {
+        checkCodec();
+        switch(codec) {
+            case BlockEncoder.CODEC_PATAS:
+                return new PatasDecompressor(getPayload()).decode(consumer);
+            case BlockEncoder.CODEC_ALP:
+                return new AlpDecompressor(getValuePayload()).decode(withTimestamps(consumer));
+            case BlockEncoder.CODEC_VALUES:
+                return new Decompressor(new ByteBufferBitInput(getValuePayload()), isFramed())
+                        .decode(withTimestamps(consumer));
+            default:
+                return gorillaDecompressor().decode(consumer);
+        }
+    }
+
+    /**
+     * Decompresses the block to the arrays, which must have room for {@link #size()} points.
+     *
+     * @param timestamps Receives the timestamps
+     * @param values Receives the long values (or bits of the double values)
+     * @return Amount of decompressed points
+     */
+    public int decode(long[] timestamps, long[] values) {
+        checkCodec();
+        if(codec == BlockEncoder.CODEC_PATAS) {
+            return new PatasDecompressor(getPayload()).decode(timestamps, values);
+        }
+        if(isFramed() && !BlockEncoder.hasTimestampStream(codec)) {
+            return gorillaDecompressor().decode(timestamps, values);
+        }
+        int[] index = new int[1];
+        return decode((timestamp, value) -> {
+            timestamps[index[0]] = timestamp;
+            values[index[0]++] = value;
+        });
+    }
+
+    /**
+     * Replaces the indexes that the decompressors of the codecs without timestamps give as the timestamps with the
+     * timestamps of the timestamp stream.
+     */
+    private TimestampValueConsumer withTimestamps(TimestampValueConsumer consumer) {
+        BitInput input = new ByteBufferBitInput(getTimestampPayload());
+        TimestampDecompressor timestampDecompressor = new TimestampDecompressor(input.getLong(64), input);
+        return (index, value) -> consumer.accept(index == 0 ? timestampDecompressor.readFirstTimestamp()
+                : timestampDecompressor.readNextTimestamp(), value);
+    }
+
+    private void checkCodec() {
+        if(BlockEncoder.isCodec32(codec)) {
+            throw new IllegalArgumentException("Codec " + codec + " is a 32-bit codec, use the BlockDecoder32");
+        }
+    }
+
+    private boolean isFramed() {
+        return (flags & BlockEncoder.FLAG_FRAMED) != 0;
+    }
+
+    private GorillaDecompressor gorillaDecompressor() {
+        BitInput input = new ByteBufferBitInput(getPayload());
+        ValueDecoder valueDecompressor;
+        switch(codec) {
+            case BlockEncoder.CODEC_GORILLA:
+                valueDecompressor = new ValueDecompressor(input,
+                        BlockEncoder.createPredictor(predictor, predictorParameter));
+                break;
+            case BlockEncoder.CODEC_CHIMP:
+                valueDecompressor = new ChimpValueDecompressor(input);
+                break;
+            case BlockEncoder.CODEC_CHIMP128:
+                valueDecompressor = new Chimp128ValueDecompressor(input);
+                break;
+            case BlockEncoder.CODEC_ELF:
+                valueDecompressor = new ElfValueDecompressor(input,
+                        BlockEncoder.createPredictor(predictor, predictorParameter));
+                break;
+            case BlockEncoder.CODEC_INTEGER:
+                valueDecompressor = new IntegerValueDecompressor(input);
+                break;
+            case BlockEncoder.CODEC_DICTIONARY:
+                valueDecompressor = new DictionaryValueDecompressor(input);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown codec " + codec);
+        }
+        return new GorillaDecompressor(input, valueDecompressor, isFramed());
+    }
+
+    /**
+     * Decompresses the container from the current position of the ByteBuffer.
+     *
+     * @param buf Buffer of the container
+     * @param consumer Receives timestamps and values
+     * @return Amount of decompressed pairs
+     */
+    public static int decode(ByteBuffer buf, TimestampValueConsumer consumer) {
+        return new BlockDecoder(buf).decode(consumer);
+    }
+}
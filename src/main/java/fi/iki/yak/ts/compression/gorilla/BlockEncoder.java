@@ -0,0 +1,391 @@
+package fi.iki.yak.ts.compression.gorilla;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.CRC32;
+
+import fi.iki.yak.ts.compression.gorilla.predictors.DifferentialFCM;
+import fi.iki.yak.ts.compression.gorilla.predictors.LastValuePredictor;
+
+/**
+ * Compresses a block with one of the codecs of the library and stores it in a self-describing container, which is
+ * read with the BlockDecoder without knowing the codec beforehand.
+ *
+ * The container is a little endian header of 40 bytes followed by the compressed block:
+ * int magic, byte version, byte codec, byte predictor, byte flags, int predictor parameter, int amount of points,
+ * long first timestamp, long last timestamp, int length of the compressed block and int CRC32 checksum of the
+ * header fields and the compressed block. The time range of an empty block is Long.MAX_VALUE to Long.MIN_VALUE.
+ *
+ * The codecs that compress only the values (ALP and VALUES) store the timestamps in a separate stream, see
+ * {@link #payload(ByteBuffer, ByteBuffer)}. The codec ids from CODEC_COMPRESSOR32 to CODEC_HYBRID are reserved for
+ * the 32-bit codecs of gr.aueb.compression.gorilla, whose containers are written with its BlockEncoder32 and read with
+ * its BlockDecoder32.
+ */
+public class BlockEncoder {
+
+    public static final int MAGIC = 0x31524F47; // "GOR1"
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 40;
+
+    /** GorillaCompressor with the XOR ValueCompressor, or the LossyValueCompressor if the block is lossy */
+    public static final int CODEC_GORILLA = 1;
+    /** GorillaCompressor with the ChimpValueCompressor */
+    public static final int CODEC_CHIMP = 2;
+    /** GorillaCompressor with the Chimp128ValueCompressor */
+    public static final int CODEC_CHIMP128 = 3;
+    /** GorillaCompressor with the ElfValueCompressor */
+    public static final int CODEC_ELF = 4;
+    /** GorillaCompressor with the IntegerValueCompressor storing delta-of-deltas */
+    public static final int CODEC_INTEGER = 5;
+    /** GorillaCompressor with the DictionaryValueCompressor of the default size */
+    public static final int CODEC_DICTIONARY = 6;
+    /** PatasCompressor */
+    public static final int CODEC_PATAS = 7;
+    /** AlpCompressor with a timestamp stream */
+    public static final int CODEC_ALP = 8;
+    /** Compressor with a timestamp stream */
+    public static final int CODEC_VALUES = 9;
+    /** Compressor32 with a timestamp stream */
+    public static final int CODEC_COMPRESSOR32 = 10;
+    /** GorillaCompressor32 */
+    public static final int CODEC_GORILLA32 = 11;
+    /** LossyCompressor32 with a timestamp stream */
+    public static final int CODEC_LOSSY32 = 12;
+    /** PmcMREncoder with the PmcMRCompressor and a timestamp stream */
+    public static final int CODEC_PMC_MR = 13;
+    /** SwingFilterEncoder with the SwingFilterCompressor and a timestamp stream */
+    public static final int CODEC_SWING = 14;
+    /** PolynomialFilterEncoder with the PolynomialCompressor and a timestamp stream */
+    public static final int CODEC_POLYNOMIAL = 15;
+    /** HybridEncoder with a timestamp stream */
+    public static final int CODEC_HYBRID = 16;
+
+    /** Codec does not use a predictor */
+    public static final int PREDICTOR_NONE = 0;
+    public static final int PREDICTOR_LAST_VALUE = 1;
+    /** DifferentialFCM, the predictor parameter is the table size */
+    public static final int PREDICTOR_DIFFERENTIAL_FCM = 2;
+
+    /** Compressed block was framed with the amount of points instead of the end of stream marker */
+    public static final int FLAG_FRAMED = 0x01;
+    /** Values were stored with an error bound */
+    public static final int FLAG_LOSSY = 0x02;
+
+    private final int codec;
+    private final int predictor;
+    private final int predictorParameter;
+    private final int points;
+    private int flags = 0;
+
+    private int count = 0;
+    private long firstTimestamp = Long.MAX_VALUE;
+    private long lastTimestamp = Long.MIN_VALUE;
+
+    private ByteBufferBitOutput output;
+    private GorillaCompressor gorillaCompressor;
+    private Compressor compressor;
+    private PatasCompressor patasCompressor;
+    private AlpCompressor alpCompressor;
+    private ByteBufferBitOutput timestampOutput;
+    private TimestampCompressor timestampCompressor;
+
+    private ByteBuffer bb;
+
+    /**
+     * Creates an encoder for a block of unknown amount of points. The VALUES codec can not store NaN values in such
+     * a block, as NaN is its end of stream marker.
+     *
+     * @param codec One of the CODEC constants
+     * @param blockTimestamp Block timestamp
+     */
+    public BlockEncoder(int codec, long blockTimestamp) {
+        this(codec, blockTimestamp, -1);
+    }
+
+    /**
+     * Creates an encoder for a block of the given amount of points, see
+     * {@link GorillaCompressor#GorillaCompressor(long, int, BitOutput)}.
+     *
+     * @param codec One of the CODEC constants
+     * @param blockTimestamp Block timestamp
+     * @param points Amount of points that are added before close, negative if not known
+     */
+    public BlockEncoder(int codec, long blockTimestamp, int points) {
+        this(codec, blockTimestamp, points, codec == CODEC_GORILLA || codec == CODEC_ELF
+                ? PREDICTOR_LAST_VALUE : PREDICTOR_NONE, 0, 0);
+    }
+
+    /**
+     * Creates an encoder with a predictor and an error bound for the codecs that support them. The predictor is
+     * supported by the GORILLA and ELF codecs, the error bound by the GORILLA codec.
+     *
+     * @param codec One of the CODEC constants
+     * @param blockTimestamp Block timestamp
+     * @param points Amount of points that are added before close, negative if not known
+     * @param predictor One of the PREDICTOR constants
+     * @param predictorParameter Table size of the DifferentialFCM, otherwise ignored
+     * @param maxError Maximum absolute error of the values, zero for lossless compression
+     */
+    public BlockEncoder(int codec, long blockTimestamp, int points, int predictor, int predictorParameter,
+                        double maxError) {
+        boolean predicted = codec == CODEC_GORILLA || codec == CODEC_ELF;
+        if(predicted == (predictor == PREDICTOR_NONE)) {
+            throw new IllegalArgumentException("Predictor " + predictor + " is not supported by codec " + codec);
+        }
+        if(isCodec32(codec)) {
+            throw new IllegalArgumentException("Codec " + codec + " is a 32-bit codec, use the BlockEncoder32");
+        }
+        if(maxError != 0 && codec != CODEC_GORILLA) {
+            throw new IllegalArgumentException("Error bound is not supported by codec " + codec);
+        }
+        this.codec = codec;
+        this.predictor = predictor;
+        this.predictorParameter = predictor == PREDICTOR_DIFFERENTIAL_FCM ? predictorParameter : 0;
+        this.points = points < 0 ? -1 : points;
+        if(maxError != 0) {
+            flags |= FLAG_LOSSY;
+        }
+
+        if(hasTimestampStream(codec)) {
+            timestampOutput = new ByteBufferBitOutput();
+            timestampOutput.writeBits(blockTimestamp, 64);
+            timestampCompressor = new TimestampCompressor(blockTimestamp, timestampOutput);
+        }
+
+        switch(codec) {
+            case CODEC_PATAS:
+                patasCompressor = this.points < 0 ? new PatasCompressor(blockTimestamp)
+                        : new PatasCompressor(blockTimestamp, this.points);
+                return;
+            case CODEC_ALP:
+                alpCompressor = this.points < 0 ? new AlpCompressor() : new AlpCompressor(this.points);
+                return;
+            default:
+                break;
+        }
+
+        output = new ByteBufferBitOutput();
+        if(this.points >= 0) {
+            flags |= FLAG_FRAMED;
+        }
+        if(codec == CODEC_VALUES) {
+            compressor = this.points < 0 ? new Compressor(output) : new Compressor(output, this.points);
+            return;
+        }
+
+        ValueEncoder valueCompressor;
+        switch(codec) {
+            case CODEC_GORILLA:
+                valueCompressor = maxError != 0 ? new LossyValueCompressor(output, createPredictor(), maxError)
+                        : new ValueCompressor(output, createPredictor());
+                break;
+            case CODEC_CHIMP:
+                valueCompressor = new ChimpValueCompressor(output);
+                break;
+            case CODEC_CHIMP128:
+                valueCompressor = new Chimp128ValueCompressor(output);
+                break;
+            case CODEC_ELF:
+                valueCompressor = new ElfValueCompressor(output, createPredictor());
+                break;
+            case CODEC_INTEGER:
+                valueCompressor = new IntegerValueCompressor(output);
+                break;
+            case CODEC_DICTIONARY:
+                valueCompressor = new DictionaryValueCompressor(output);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown codec " + codec);
+        }
+        gorillaCompressor = this.points < 0 ? new GorillaCompressor(blockTimestamp, output, valueCompressor)
+                : new GorillaCompressor(blockTimestamp, this.points, output, valueCompressor);
+    }
+
+    /**
+     * @param codec Codec id
+     * @return true if the codec id is reserved for the 32-bit codecs
+     */
+    public static boolean isCodec32(int codec) {
+        return codec >= CODEC_COMPRESSOR32 && codec <= CODEC_HYBRID;
+    }
+
+    /**
+     * @param codec Codec id
+     * @return true if the codec stores the timestamps in a stream apart from the values
+     */
+    public static boolean hasTimestampStream(int codec) {
+        return codec == CODEC_ALP || codec == CODEC_VALUES || (isCodec32(codec) && codec != CODEC_GORILLA32);
+    }
+
+    private Predictor createPredictor() {
+        return createPredictor(predictor, predictorParameter);
+    }
+
+    static Predictor createPredictor(int predictor, int predictorParameter) {
+        switch(predictor) {
+            case PREDICTOR_LAST_VALUE:
+                return new LastValuePredictor();
+            case PREDICTOR_DIFFERENTIAL_FCM:
+                return new DifferentialFCM(predictorParameter);
+            default:
+                throw new IllegalArgumentException("Unknown predictor " + predictor);
+        }
+    }
+
+    /**
+     * Adds a new double value to the block. Note, values must be inserted in order.
+     *
+     * @param timestamp Timestamp which is inside the allowed time block
+     * @param value next floating point value in the series
+     */
+    public void addValue(long timestamp, double value) {
+        addValue(timestamp, Double.doubleToRawLongBits(value));
+    }
+
+    /**
+     * Adds a new long value to the block. Note, values must be inserted in order.
+     *
+     * @param timestamp Timestamp which is inside the allowed time block
+     * @param value next long value (or bits of the double value) in the series
+     */
+    public void addValue(long timestamp, long value) {
+        if(gorillaCompressor != null) {
+            gorillaCompressor.addValue(timestamp, value);
+        } else if(patasCompressor != null) {
+            patasCompressor.addValue(timestamp, value);
+        } else if(alpCompressor != null) {
+            alpCompressor.addValue(Double.longBitsToDouble(value));
+        } else {
+            compressor.addValue(value);
+        }
+        if(count++ == 0) {
+            firstTimestamp = timestamp;
+            if(timestampCompressor != null) {
+                timestampCompressor.writeFirst(timestamp);
+            }
+        } else if(timestampCompressor != null) {
+            timestampCompressor.compressTimestamp(timestamp);
+        }
+        lastTimestamp = timestamp;
+    }
+
+    /**
+     * Closes the block and writes the container, available from {@link #getByteBuffer()}.
+     */
+    public void close() {
+        if(points >= 0 && count != points) {
+            throw new IllegalStateException("Block has " + count + " points, it was created for " + points);
+        }
+
+        ByteBuffer payload;
+        if(gorillaCompressor != null || compressor != null) {
+            if(gorillaCompressor != null) {
+                gorillaCompressor.close();
+            } else {
+                compressor.close();
+            }
+            payload = output.getByteBuffer();
+        } else if(patasCompressor != null) {
+            patasCompressor.close();
+            payload = patasCompressor.getByteBuffer();
+        } else {
+            alpCompressor.close();
+            payload = alpCompressor.getByteBuffer();
+        }
+        payload.flip();
+        if(timestampCompressor != null) {
+            timestampCompressor.writeEndOfStream();
+            timestampOutput.skipBit();
+            timestampOutput.flush();
+            ByteBuffer timestamps = timestampOutput.getByteBuffer();
+            timestamps.flip();
+            payload = payload(timestamps, payload);
+        }
+        bb = container(codec, predictor, flags, predictorParameter, count, firstTimestamp, lastTimestamp, payload);
+    }
+
+    /**
+     * Joins the streams of a codec that stores the timestamps apart from the values to one compressed block, used by
+     * the encoders of the codecs outside of this package. The block is the int length of the timestamp stream, the
+     * timestamp stream and the value stream. The timestamp stream is the 64 bits block timestamp followed by the
+     * timestamps in the format of the TimestampCompressor and its end of stream marker.
+     *
+     * @param timestamps Timestamp stream from its current position to the limit
+     * @param values Value stream from its current position to the limit
+     * @return Compressed block, the position is zero
+     */
+    public static ByteBuffer payload(ByteBuffer timestamps, ByteBuffer values) {
+        ByteBuffer payload = ByteBuffer.allocate(Integer.BYTES + timestamps.remaining() + values.remaining())
+                .order(ByteOrder.LITTLE_ENDIAN);
+        payload.putInt(timestamps.remaining());
+        payload.put(timestamps);
+        payload.put(values);
+        payload.flip();
+        return payload;
+    }
+
+    /**
+     * Writes a container of a compressed block, used by the encoders of the codecs outside of this package.
+     *
+     * @param codec One of the CODEC constants
+     * @param predictor One of the PREDICTOR constants
+     * @param flags FLAG constants of the block
+     * @param predictorParameter Parameter of the predictor or the codec
+     * @param count Amount of points in the block
+     * @param firstTimestamp Timestamp of the first point
+     * @param lastTimestamp Timestamp of the last point
+     * @param payload Compressed block from its current position to the limit
+     * @return Little endian heap ByteBuffer, the position is at the end of the container
+     */
+    public static ByteBuffer container(int codec, int predictor, int flags, int predictorParameter, int count,
+                                       long firstTimestamp, long lastTimestamp, ByteBuffer payload) {
+        ByteBuffer bb = ByteBuffer.allocate(HEADER_BYTES + payload.remaining()).order(ByteOrder.LITTLE_ENDIAN);
+        bb.putInt(MAGIC);
+        bb.put((byte) VERSION);
+        bb.put((byte) codec);
+        bb.put((byte) predictor);
+        bb.put((byte) flags);
+        bb.putInt(predictorParameter);
+        bb.putInt(count);
+        bb.putLong(firstTimestamp);
+        bb.putLong(lastTimestamp);
+        bb.putInt(payload.remaining());
+        bb.position(HEADER_BYTES);
+        bb.put(payload);
+        bb.putInt(HEADER_BYTES - Integer.BYTES, checksum(bb, 0));
+        return bb;
+    }
+
+    /**
+     * Calculates the checksum of the block that starts from the given position of the buffer. CRC32C would be
+     * faster, but it is only available since Java 9, CRC32 is an intrinsic since Java 8.
+     */
+    static int checksum(ByteBuffer buf, int start) {
+        int payloadLength = buf.getInt(start + HEADER_BYTES - 2 * Integer.BYTES);
+        CRC32 crc = new CRC32();
+        ByteBuffer view = buf.duplicate();
+        view.limit(start + HEADER_BYTES - Integer.BYTES).position(start);
+        crc.update(view);
+        view.limit(start + HEADER_BYTES + payloadLength).position(start + HEADER_BYTES);
+        crc.update(view);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Returns the amount of points added to the block.
+     *
+     * @return Amount of points
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns the container after the close, the position is at the end of the container.
+     *
+     * @return Little endian heap ByteBuffer
+     */
+    public ByteBuffer getByteBuffer() {
+        return bb;
+    }
+}
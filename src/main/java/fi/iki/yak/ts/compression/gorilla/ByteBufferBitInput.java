@@ -1,15 +1,20 @@
 package fi.iki.yak.ts.compression.gorilla;
 
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 /**
  * An implementation of BitInput that parses the data from byte array or existing ByteBuffer.
  *
+ * The stream is read 64 bits at a time with getLong, only the tail of the stream is read byte-by-byte.
+ *
  * @author Michael Burman
  */
 public class ByteBufferBitInput implements BitInput {
     private ByteBuffer bb;
-    private byte b;
+    private final boolean reverseBytes;
+    private long lB;
     private int bitsLeft = 0;
 
     /**
@@ -19,7 +24,8 @@ public class ByteBufferBitInput implements BitInput {
      */
     public ByteBufferBitInput(ByteBuffer buf) {
         bb = buf;
-        flipByte();
+        // Stream is always big endian, regardless of the order of the supplied buffer
+        reverseBytes = buf.order() != ByteOrder.BIG_ENDIAN;
     }
 
     public ByteBufferBitInput(byte[] input) {
@@ -32,10 +38,11 @@ public class ByteBufferBitInput implements BitInput {
      * @return true if the next bit is 1, otherwise 0.
      */
     public boolean readBit() {
-        boolean bit = ((b >> (bitsLeft - 1)) & 1) == 1;
+        if(bitsLeft == 0) {
+            flipWord();
+        }
         bitsLeft--;
-        flipByte();
-        return bit;
+        return (lB & LongArrayOutput.BIT_SET_MASK[bitsLeft]) != 0;
     }
 
     /**
@@ -45,22 +52,21 @@ public class ByteBufferBitInput implements BitInput {
      * @return long value that was read from the stream
      */
     public long getLong(int bits) {
-        long value = 0;
-        while(bits > 0) {
-            if(bits > bitsLeft || bits == Byte.SIZE) {
-                // Take only the bitsLeft "least significant" bits
-                byte d = (byte) (b & ((1<<bitsLeft) - 1));
-                value = (value << bitsLeft) + (d & 0xFF);
-                bits -= bitsLeft;
-                bitsLeft = 0;
-            } else {
-                // Shift to correct position and take only least significant bits
-                byte d = (byte) ((b >>> (bitsLeft - bits)) & ((1<<bits) - 1));
-                value = (value << bits) + (d & 0xFF);
-                bitsLeft -= bits;
-                bits = 0;
+        long value;
+        if(bits <= bitsLeft) {
+            value = (lB >>> (bitsLeft - bits)) & LongArrayOutput.MASK_ARRAY[bits - 1];
+            bitsLeft -= bits;
+        } else {
+            // This word and next one, no more (max bits is 64)
+            value = (bitsLeft == 0) ? 0 : lB & LongArrayOutput.MASK_ARRAY[bitsLeft - 1];
+            bits -= bitsLeft;
+            flipWord();
+            if(bits > bitsLeft) {
+                throw new BufferUnderflowException();
             }
-            flipByte();
+            value <<= bits;
+            value |= (lB >>> (bitsLeft - bits)) & LongArrayOutput.MASK_ARRAY[bits - 1];
+            bitsLeft -= bits;
         }
         return value;
     }
@@ -82,10 +88,24 @@ public class ByteBufferBitInput implements BitInput {
         return val;
     }
 
-    private void flipByte() {
-        if (bitsLeft == 0) {
-            b = bb.get();
-            bitsLeft = Byte.SIZE;
+    private void flipWord() {
+        if(bb.remaining() >= Long.BYTES) {
+            lB = bb.getLong();
+            if(reverseBytes) {
+                lB = Long.reverseBytes(lB);
+            }
+            bitsLeft = Long.SIZE;
+        } else {
+            // Tail of the stream, only the remaining bytes are available
+            int bytes = bb.remaining();
+            if(bytes == 0) {
+                throw new BufferUnderflowException();
+            }
+            lB = 0;
+            for(int i = 0; i < bytes; i++) {
+                lB = (lB << Byte.SIZE) | (bb.get() & 0xFF);
+            }
+            bitsLeft = bytes * Byte.SIZE;
         }
     }
 
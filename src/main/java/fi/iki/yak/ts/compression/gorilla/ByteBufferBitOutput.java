@@ -5,14 +5,17 @@ import java.nio.ByteBuffer;
 /**
  * An implementation of BitOutput interface that uses off-heap storage.
  *
+ * The bits are collected to a 64 bit word which is written to the ByteBuffer with a single putLong. The stored
+ * byte stream is identical to the one created by the byte-at-a-time implementation (big endian).
+ *
  * @author Michael Burman
  */
 public class ByteBufferBitOutput implements BitOutput {
     public static final int DEFAULT_ALLOCATION = 4096;
 
     private ByteBuffer bb;
-    private byte b;
-    private int bitsLeft = Byte.SIZE;
+    private long lB;
+    private int bitsLeft = Long.SIZE;
 
     /**
      * Creates a new ByteBufferBitOutput with a default allocated size of 4096 bytes.
@@ -27,40 +30,42 @@ public class ByteBufferBitOutput implements BitOutput {
      * @param initialSize New initialsize to use
      */
     public ByteBufferBitOutput(int initialSize) {
-        bb = ByteBuffer.allocateDirect(initialSize);
-        b = bb.get(bb.position());
+        bb = ByteBuffer.allocateDirect(Math.max(initialSize, Long.BYTES));
     }
 
     private void expandAllocation() {
         ByteBuffer largerBB = ByteBuffer.allocateDirect(bb.capacity()*2);
         bb.flip();
         largerBB.put(bb);
-        largerBB.position(bb.capacity());
         bb = largerBB;
     }
 
-    private void flipByte() {
+    private void checkAndFlipWord() {
         if(bitsLeft == 0) {
-            bb.put(b);
-            if(!bb.hasRemaining()) {
-                expandAllocation();
-            }
-            b = bb.get(bb.position());
-            bitsLeft = Byte.SIZE;
+            flipWord();
+        }
+    }
+
+    private void flipWord() {
+        if(bb.remaining() < Long.BYTES) {
+            expandAllocation();
         }
+        bb.putLong(lB);
+        lB = 0;
+        bitsLeft = Long.SIZE;
     }
 
     @Override
     public void writeBit() {
-        b |= (1 << (bitsLeft - 1));
+        lB |= LongArrayOutput.BIT_SET_MASK[bitsLeft - 1];
         bitsLeft--;
-        flipByte();
+        checkAndFlipWord();
     }
 
     @Override
     public void skipBit() {
         bitsLeft--;
-        flipByte();
+        checkAndFlipWord();
     }
 
     /**
@@ -70,29 +75,37 @@ public class ByteBufferBitOutput implements BitOutput {
      * @param bits How many bits are stored to the stream
      */
     public void writeBits(long value, int bits) {
-        while(bits > 0) {
-            int shift = bits - bitsLeft;
-            if(shift >= 0) {
-                b |= (byte) ((value >> shift) & ((1 << bitsLeft) - 1));
-                bits -= bitsLeft;
-                bitsLeft = 0;
-            } else {
-                shift = bitsLeft - bits;
-                b |= (byte) (value << shift);
-                bitsLeft -= bits;
-                bits = 0;
-            }
-            flipByte();
+        if(bits <= bitsLeft) {
+            int lastBitPosition = bitsLeft - bits;
+            lB |= (value << lastBitPosition) & LongArrayOutput.MASK_ARRAY[bitsLeft - 1];
+            bitsLeft -= bits;
+            checkAndFlipWord();
+        } else {
+            value &= LongArrayOutput.MASK_ARRAY[bits - 1];
+            int firstBitPosition = bits - bitsLeft;
+            lB |= value >>> firstBitPosition;
+            bits -= bitsLeft;
+            flipWord();
+            lB |= value << (64 - bits);
+            bitsLeft -= bits;
         }
     }
 
     /**
-     * Causes the currently handled byte to be written to the stream
+     * Causes the currently handled byte to be written to the stream. Only the started bytes of the current word
+     * (and always at least one byte) are written, as with the original byte oriented implementation.
      */
     @Override
     public void flush() {
-        bitsLeft = 0;
-        flipByte(); // Causes write to the ByteBuffer
+        int bytes = ((Long.SIZE - bitsLeft) >>> 3) + 1;
+        if(bb.remaining() < Long.BYTES) {
+            expandAllocation();
+        }
+        for(int i = 0; i < bytes; i++) {
+            bb.put((byte) (lB >>> (Long.SIZE - Byte.SIZE * (i + 1))));
+        }
+        lB = 0;
+        bitsLeft = Long.SIZE;
     }
 
     /**
@@ -0,0 +1,96 @@
+package fi.iki.yak.ts.compression.gorilla;
+
+/**
+ * ValueCompressor for the Chimp128 encoding format. Same as the ChimpValueCompressor, but the value is XORed with
+ * the one of the last 128 values that shares the most trailing bits. Candidates are found with an index on the
+ * lowest 14 bits of the values, which is checked for a single earlier value only. Supply with long presentation of
+ * the value, in case of doubles use Double.doubleToRawLongBits(value)
+ *
+ * Control bits of each value:
+ * '00' 7 bits index of the equal value,
+ * '01' 7 bits index of the reference value, 3 bits leading zeros, 6 bits length of the meaningful bits and the
+ * meaningful bits,
+ * '10' the bits after the same leading zeros as previous value, XORed with the previous value,
+ * '11' 3 bits leading zeros and the bits after them, XORed with the previous value.
+ */
+public class Chimp128ValueCompressor implements ValueEncoder {
+
+    static final int PREVIOUS_VALUES_LOG2 = 7;
+    static final int PREVIOUS_VALUES = 1 << PREVIOUS_VALUES_LOG2;
+    static final int PREVIOUS_VALUES_MASK = PREVIOUS_VALUES - 1;
+
+    // A reference value is only used if the XOR has more trailing zeros than this, the index must be paid for
+    private static final int THRESHOLD = ChimpValueCompressor.THRESHOLD + PREVIOUS_VALUES_LOG2;
+    private static final int INDEX_MASK = (1 << (THRESHOLD + 1)) - 1;
+
+    private static final int NO_LEADING_ZEROS = Long.SIZE + 1;
+
+    private int storedLeadingZeros = NO_LEADING_ZEROS;
+
+    // Last values in a ring buffer and the index of the latest value with the given lowest bits
+    private final long[] storedValues = new long[PREVIOUS_VALUES];
+    private final int[] indices = new int[INDEX_MASK + 1];
+    private int index = 0;
+
+    private final BitOutput out;
+
+    public Chimp128ValueCompressor(BitOutput out) {
+        this.out = out;
+    }
+
+    @Override
+    public void writeFirst(long value) {
+        storedValues[0] = value;
+        indices[(int) value & INDEX_MASK] = index;
+        out.writeBits(value, 64);
+    }
+
+    @Override
+    public void compressValue(long value) {
+        int key = (int) value & INDEX_MASK;
+        int previousIndex = index & PREVIOUS_VALUES_MASK;
+        long xor = storedValues[previousIndex] ^ value;
+        int trailingZeros = 0;
+
+        int candidateIndex = indices[key];
+        if(index - candidateIndex < PREVIOUS_VALUES) {
+            long candidateXor = storedValues[candidateIndex & PREVIOUS_VALUES_MASK] ^ value;
+            int candidateTrailingZeros = Long.numberOfTrailingZeros(candidateXor);
+            if(candidateTrailingZeros > THRESHOLD) {
+                previousIndex = candidateIndex & PREVIOUS_VALUES_MASK;
+                xor = candidateXor;
+                trailingZeros = candidateTrailingZeros;
+            }
+        }
+
+        if(xor == 0) {
+            // 00 and the index of the equal value
+            out.writeBits(previousIndex, PREVIOUS_VALUES_LOG2 + 2);
+            storedLeadingZeros = NO_LEADING_ZEROS;
+        } else {
+            int leadingZeros = ChimpValueCompressor.LEADING_ROUND[Long.numberOfLeadingZeros(xor)];
+
+            if(trailingZeros > THRESHOLD) {
+                int significantBits = Long.SIZE - leadingZeros - trailingZeros;
+                // 01, index, leading zeros in 3 bits and the length of the meaningful bits in 6 bits
+                out.writeBits(((PREVIOUS_VALUES | previousIndex) << 9)
+                        | (ChimpValueCompressor.LEADING_REPRESENTATION[leadingZeros] << 6) | significantBits,
+                        PREVIOUS_VALUES_LOG2 + 11);
+                out.writeBits(xor >>> trailingZeros, significantBits);
+                storedLeadingZeros = NO_LEADING_ZEROS;
+            } else if(leadingZeros == storedLeadingZeros) {
+                out.writeBits(2, 2);
+                out.writeBits(xor, Long.SIZE - leadingZeros);
+            } else {
+                // 11 and leading zeros in 3 bits
+                out.writeBits((3 << 3) | ChimpValueCompressor.LEADING_REPRESENTATION[leadingZeros], 5);
+                out.writeBits(xor, Long.SIZE - leadingZeros);
+                storedLeadingZeros = leadingZeros;
+            }
+        }
+
+        index++;
+        storedValues[index & PREVIOUS_VALUES_MASK] = value;
+        indices[key] = index;
+    }
+}
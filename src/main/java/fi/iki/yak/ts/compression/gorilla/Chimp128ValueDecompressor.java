@@ -0,0 +1,53 @@
+package fi.iki.yak.ts.compression.gorilla;
+
+/**
+ * Value decompressor for values stored by the Chimp128ValueCompressor
+ */
+public class Chimp128ValueDecompressor implements ValueDecoder {
+
+    private static final int PREVIOUS_VALUES_LOG2 = Chimp128ValueCompressor.PREVIOUS_VALUES_LOG2;
+    private static final int PREVIOUS_VALUES_MASK = Chimp128ValueCompressor.PREVIOUS_VALUES_MASK;
+
+    private int storedLeadingZeros = Integer.MAX_VALUE;
+    private final long[] storedValues = new long[Chimp128ValueCompressor.PREVIOUS_VALUES];
+    private int index = 0;
+
+    private final BitInput in;
+
+    public Chimp128ValueDecompressor(BitInput input) {
+        this.in = input;
+    }
+
+    @Override
+    public long readFirst() {
+        long value = in.getLong(Long.SIZE);
+        storedValues[0] = value;
+        return value;
+    }
+
+    @Override
+    public long nextValue() {
+        long value = storedValues[index & PREVIOUS_VALUES_MASK];
+        switch((int) in.getLong(2)) {
+            case 3:
+                storedLeadingZeros = ChimpValueCompressor.LEADING_ZEROS[(int) in.getLong(3)];
+                value ^= in.getLong(Long.SIZE - storedLeadingZeros);
+                break;
+            case 2:
+                value ^= in.getLong(Long.SIZE - storedLeadingZeros);
+                break;
+            case 1:
+                int header = (int) in.getLong(PREVIOUS_VALUES_LOG2 + 9);
+                int leadingZeros = ChimpValueCompressor.LEADING_ZEROS[(header >>> 6) & 0x7];
+                int significantBits = header & 0x3F;
+                int trailingZeros = Long.SIZE - leadingZeros - significantBits;
+                value = storedValues[header >>> 9] ^ (in.getLong(significantBits) << trailingZeros);
+                break;
+            default:
+                value = storedValues[(int) in.getLong(PREVIOUS_VALUES_LOG2)];
+        }
+        index++;
+        storedValues[index & PREVIOUS_VALUES_MASK] = value;
+        return value;
+    }
+}
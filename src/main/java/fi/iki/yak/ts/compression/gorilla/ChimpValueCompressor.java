@@ -0,0 +1,84 @@
+package fi.iki.yak.ts.compression.gorilla;
+
+/**
+ * ValueCompressor for the Chimp encoding format (Liakos et al., VLDB 2022). Each value is XORed with the previous
+ * one, the leading zeros are rounded down to one of eight buckets stored in 3 bits and trailing zeros are only
+ * removed when there are enough of them to pay for the 6 bit length. Supply with long presentation of the value,
+ * in case of doubles use Double.doubleToRawLongBits(value)
+ *
+ * Control bits of each value:
+ * '00' same value as previous,
+ * '01' 3 bits leading zeros, 6 bits length of the meaningful bits and the meaningful bits,
+ * '10' the bits after the same leading zeros as previous value,
+ * '11' 3 bits leading zeros and the bits after them.
+ */
+public class ChimpValueCompressor implements ValueEncoder {
+
+    // Trailing zeros are removed only if there are more than this many
+    static final int THRESHOLD = 6;
+
+    // Leading zero buckets and the 3 bit presentation of each amount of leading zeros, rounded down to a bucket
+    static final int[] LEADING_ZEROS = {0, 8, 12, 16, 18, 20, 22, 24};
+    static final int[] LEADING_ROUND = new int[Long.SIZE + 1];
+    static final int[] LEADING_REPRESENTATION = new int[Long.SIZE + 1];
+
+    static {
+        for(int i = 0, bucket = 0; i < LEADING_ROUND.length; i++) {
+            while(bucket + 1 < LEADING_ZEROS.length && LEADING_ZEROS[bucket + 1] <= i) {
+                bucket++;
+            }
+            LEADING_ROUND[i] = LEADING_ZEROS[bucket];
+            LEADING_REPRESENTATION[i] = bucket;
+        }
+    }
+
+    // Can never match the rounded leading zeros, forces the next value to store its leading zeros
+    private static final int NO_LEADING_ZEROS = Long.SIZE + 1;
+
+    private int storedLeadingZeros = NO_LEADING_ZEROS;
+    private long storedVal = 0;
+
+    private final BitOutput out;
+
+    public ChimpValueCompressor(BitOutput out) {
+        this.out = out;
+    }
+
+    @Override
+    public void writeFirst(long value) {
+        storedVal = value;
+        out.writeBits(value, 64);
+    }
+
+    @Override
+    public void compressValue(long value) {
+        long xor = storedVal ^ value;
+        storedVal = value;
+
+        if(xor == 0) {
+            // Write 00
+            out.writeBits(0, 2);
+            storedLeadingZeros = NO_LEADING_ZEROS;
+            return;
+        }
+
+        int leadingZeros = LEADING_ROUND[Long.numberOfLeadingZeros(xor)];
+        int trailingZeros = Long.numberOfTrailingZeros(xor);
+
+        if(trailingZeros > THRESHOLD) {
+            int significantBits = Long.SIZE - leadingZeros - trailingZeros;
+            // 01, leading zeros in 3 bits and the length of meaningful bits in 6 bits
+            out.writeBits((1 << 9) | (LEADING_REPRESENTATION[leadingZeros] << 6) | significantBits, 11);
+            out.writeBits(xor >>> trailingZeros, significantBits);
+            storedLeadingZeros = NO_LEADING_ZEROS;
+        } else if(leadingZeros == storedLeadingZeros) {
+            out.writeBits(2, 2);
+            out.writeBits(xor, Long.SIZE - leadingZeros);
+        } else {
+            // 11 and leading zeros in 3 bits
+            out.writeBits((3 << 3) | LEADING_REPRESENTATION[leadingZeros], 5);
+            out.writeBits(xor, Long.SIZE - leadingZeros);
+            storedLeadingZeros = leadingZeros;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package fi.iki.yak.ts.compression.gorilla;
+
+/**
+ * Value decompressor for values stored by the ChimpValueCompressor
+ */
+public class ChimpValueDecompressor implements ValueDecoder {
+
+    private int storedLeadingZeros = Integer.MAX_VALUE;
+    private long storedVal = 0;
+
+    private final BitInput in;
+
+    public ChimpValueDecompressor(BitInput input) {
+        this.in = input;
+    }
+
+    @Override
+    public long readFirst() {
+        storedVal = in.getLong(Long.SIZE);
+        return storedVal;
+    }
+
+    @Override
+    public long nextValue() {
+        switch((int) in.getLong(2)) {
+            case 3:
+                storedLeadingZeros = ChimpValueCompressor.LEADING_ZEROS[(int) in.getLong(3)];
+                storedVal ^= in.getLong(Long.SIZE - storedLeadingZeros);
+                break;
+            case 2:
+                storedVal ^= in.getLong(Long.SIZE - storedLeadingZeros);
+                break;
+            case 1:
+                int header = (int) in.getLong(9);
+                int leadingZeros = ChimpValueCompressor.LEADING_ZEROS[header >>> 6];
+                int significantBits = header & 0x3F;
+                int trailingZeros = Long.SIZE - leadingZeros - significantBits;
+                storedVal ^= in.getLong(significantBits) << trailingZeros;
+                break;
+            default:
+                // Same value as previous
+        }
+        return storedVal;
+    }
+}
@@ -13,6 +13,8 @@ public class Compressor {
     private long storedVal = 0;
     private boolean first = true;
     private int size;
+    private int points = -1;
+    private int count = 0;
 
 //    public final static short FIRST_DELTA_BITS = 27;
 
@@ -24,12 +26,31 @@ public class Compressor {
         size = 0;
     }
 
+    /**
+     * Creates a compressor for a framed block of the given amount of values. The amount is stored in front of the
+     * values instead of the NaN end of stream marker, so NaN values can be stored as well. The block is read with
+     * {@link Decompressor#Decompressor(BitInput, boolean)}.
+     *
+     * @param output Stream to write to
+     * @param points Amount of values that are added before close
+     */
+    public Compressor(BitOutput output, int points) {
+        if(points < 0) {
+            throw new IllegalArgumentException("Amount of values must not be negative, was " + points);
+        }
+        out = output;
+        this.points = points;
+        out.writeBits(points, 32);
+        size = 32;
+    }
+
     /**
      * Adds a new long value to the series. Note, values must be inserted in order.
      *
      * @param value next floating point value in the series
      */
     public void addValue(long value) {
+        countValue();
         if(first) {
             writeFirst(value);
         } else {
@@ -43,6 +64,7 @@ public class Compressor {
      * @param value next floating point value in the series
      */
     public void addValue(double value) {
+        countValue();
         if(first) {
             writeFirst(Double.doubleToRawLongBits(value));
         } else {
@@ -57,11 +79,22 @@ public class Compressor {
         size += 64;
     }
 
+    private void countValue() {
+        if(count == points) {
+            throw new IllegalStateException("Block is full, it was created for " + points + " values");
+        }
+        count++;
+    }
+
     /**
      * Closes the block and writes the remaining stuff to the BitOutput.
      */
     public void close() {
-    	addValue(Double.NaN);
+        if(points < 0) {
+            addValue(Double.NaN);
+        } else if(count != points) {
+            throw new IllegalStateException("Block has " + count + " values, it was created for " + points);
+        }
         out.skipBit();
         out.flush();
     }
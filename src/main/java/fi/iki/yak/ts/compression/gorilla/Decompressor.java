@@ -12,6 +12,8 @@ public class Decompressor {
     private long storedVal = 0;
     private boolean first = true;
     private boolean endOfStream = false;
+    private boolean framed = false;
+    private int remaining = 0;
 
     private BitInput in;
 
@@ -21,20 +23,137 @@ public class Decompressor {
         in = input;
     }
 
+    /**
+     * Creates a decompressor for a framed block if framed is true, see {@link Compressor#Compressor(BitOutput, int)}.
+     * Otherwise same as {@link #Decompressor(BitInput)}.
+     *
+     * @param input Compressed values
+     * @param framed true if the block was created with the amount of values
+     */
+    public Decompressor(BitInput input, boolean framed) {
+        in = input;
+        if(framed) {
+            this.framed = true;
+            this.remaining = (int) in.getLong(32);
+        }
+    }
+
+    /**
+     * Returns the amount of values that have not been read yet from a framed block.
+     *
+     * @return Amount of remaining values, -1 if the block is not framed
+     */
+    public int size() {
+        return framed ? remaining : -1;
+    }
+
     /**
      * Returns the next pair in the time series, if available.
      *
      * @return Pair if there's next value, null if series is done.
      */
     public Value readPair() {
-        next();
-        if(endOfStream) {
+        if(!advance()) {
             return null;
         }
         return new Value(storedVal);
     }
 
+    /**
+     * Moves to the next value in the series without creating any objects. The value is then available from
+     * {@link #currentDouble()} or {@link #currentBits()}.
+     *
+     * @return true if there's next value, false if series is done.
+     */
+    public boolean advance() {
+        next();
+        return !endOfStream;
+    }
+
+    /**
+     * @return Current value as double, valid after a successful {@link #advance()}
+     */
+    public double currentDouble() {
+        return Double.longBitsToDouble(storedVal);
+    }
+
+    /**
+     * @return Current value as long, valid after a successful {@link #advance()}
+     */
+    public long currentBits() {
+        return storedVal;
+    }
+
+    /**
+     * Decompresses the rest of the values and pushes them to the consumer. The index of the value in the block is
+     * given as the timestamp.
+     *
+     * @param consumer Receives indexes and values
+     * @return Amount of decompressed values
+     */
+    public int decode(TimestampValueConsumer consumer) {
+        int count = 0;
+        for(next(); !endOfStream; next()) {
+            consumer.accept(count++, storedVal);
+        }
+        return count;
+    }
+
+    /**
+     * Decompresses the rest of a framed block to the array, which must have room for {@link #size()} values.
+     *
+     * @param values Receives the values
+     * @return Amount of decompressed values
+     */
+    public int decode(double[] values) {
+        if(!framed) {
+            throw new IllegalStateException("Block is not framed, the amount of values is not known");
+        }
+        int count = remaining;
+        int i = 0;
+        if(first && count > 0) {
+            first = false;
+            storedVal = in.getLong(64);
+            values[i++] = Double.longBitsToDouble(storedVal);
+        }
+        for(; i < count; i++) {
+            storedVal = decodeValue();
+            values[i] = Double.longBitsToDouble(storedVal);
+        }
+        remaining = 0;
+        endOfStream = true;
+        return count;
+    }
+
+    /**
+     * Decompresses all the values from the input, see {@link #decode(TimestampValueConsumer)}.
+     *
+     * @param input Compressed values
+     * @param consumer Receives indexes and values
+     * @return Amount of decompressed values
+     */
+    public static int decode(BitInput input, TimestampValueConsumer consumer) {
+        return new Decompressor(input).decode(consumer);
+    }
+
     private void next() {
+        if (endOfStream) {
+            return;
+        }
+        if (framed) {
+            if (remaining == 0) {
+                endOfStream = true;
+                return;
+            }
+            remaining--;
+            if (first) {
+                first = false;
+                storedVal = in.getLong(64);
+            } else {
+                storedVal = decodeValue();
+            }
+            return;
+        }
         if (first) {
         	first = false;
             storedVal = in.getLong(64);
@@ -49,6 +168,15 @@ public class Decompressor {
     }
 
     private void nextValue() {
+        long value = decodeValue();
+        if (value == NAN_LONG) {
+            endOfStream = true;
+        } else {
+            storedVal = value;
+        }
+    }
+
+    private long decodeValue() {
         // Read value
         if (in.readBit()) {
             // else -> same value as before
@@ -64,15 +192,9 @@ public class Decompressor {
             }
             long value = in.getLong(64 - storedLeadingZeros - storedTrailingZeros);
             value <<= storedTrailingZeros;
-            value = storedVal ^ value;
-            if (value == NAN_LONG) {
-            	endOfStream = true;
-            	return;
-            } else {
-            	storedVal = value;
-            }
-
+            return storedVal ^ value;
         }
+        return storedVal;
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,91 @@
+package fi.iki.yak.ts.compression.gorilla;
+
+import fi.iki.yak.ts.compression.gorilla.predictors.LastValuePredictor;
+
+/**
+ * ValueCompressor for low cardinality series such as states, enums or status codes. Each distinct value is stored
+ * once and later occurrences are stored as an index to the dictionary of the block, which is as wide as the
+ * dictionary requires. If the series has more distinct values than the dictionary can hold, the rest of the block
+ * is stored with the XOR encoding of the ValueCompressor.
+ *
+ * Control bits of each value after the first one, which is stored as is:
+ * '0' same value as previous,
+ * '10' index to the dictionary,
+ * '11' new value as is, or if the dictionary is full, the switch to the XOR encoding of the value.
+ */
+public class DictionaryValueCompressor implements ValueEncoder {
+
+    public static final int DEFAULT_MAX_SIZE = 16;
+
+    private final long[] dictionary;
+    private int size = 0;
+    private int indexBits = 0;
+    private long storedVal = 0;
+    private boolean xor = false;
+
+    private final Predictor predictor;
+    private final BitOutput out;
+    private final ValueCompressor xorCompressor;
+
+    public DictionaryValueCompressor(BitOutput out) {
+        this(out, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param out Stream to write to
+     * @param maxSize Maximum amount of distinct values in the dictionary, the decompressor must use the same size
+     */
+    public DictionaryValueCompressor(BitOutput out, int maxSize) {
+        if(maxSize < 1) {
+            throw new IllegalArgumentException("Dictionary size must be positive, was " + maxSize);
+        }
+        this.out = out;
+        this.predictor = new LastValuePredictor();
+        this.xorCompressor = new ValueCompressor(out, predictor);
+        this.dictionary = new long[maxSize];
+    }
+
+    @Override
+    public void writeFirst(long value) {
+        out.writeBits(value, 64);
+        add(value);
+        storedVal = value;
+    }
+
+    @Override
+    public void compressValue(long value) {
+        if(xor) {
+            xorCompressor.compressValue(value);
+            return;
+        }
+        if(value == storedVal) {
+            out.skipBit();
+            return;
+        }
+
+        for(int i = 0; i < size; i++) {
+            if(dictionary[i] == value) {
+                out.writeBits((0x02L << indexBits) | i, indexBits + 2);
+                storedVal = value;
+                return;
+            }
+        }
+
+        out.writeBits(0x03, 2);
+        if(size == dictionary.length) {
+            // Cardinality is too high for the dictionary, the XOR encoding continues from the previous value
+            xor = true;
+            predictor.update(storedVal);
+            xorCompressor.compressValue(value);
+            return;
+        }
+        out.writeBits(value, 64);
+        add(value);
+        storedVal = value;
+    }
+
+    private void add(long value) {
+        dictionary[size++] = value;
+        indexBits = 32 - Integer.numberOfLeadingZeros(size - 1);
+    }
+}
@@ -0,0 +1,72 @@
+package fi.iki.yak.ts.compression.gorilla;
+
+import fi.iki.yak.ts.compression.gorilla.predictors.LastValuePredictor;
+
+/**
+ * Value decompressor for values stored by the DictionaryValueCompressor.
+ */
+public class DictionaryValueDecompressor implements ValueDecoder {
+
+    private final long[] dictionary;
+    private int size = 0;
+    private int indexBits = 0;
+    private long storedVal = 0;
+    private boolean xor = false;
+
+    private final Predictor predictor;
+    private final BitInput in;
+    private final ValueDecompressor xorDecompressor;
+
+    public DictionaryValueDecompressor(BitInput input) {
+        this(input, DictionaryValueCompressor.DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param input Stream to read from
+     * @param maxSize Maximum amount of distinct values in the dictionary, must match the compressor
+     */
+    public DictionaryValueDecompressor(BitInput input, int maxSize) {
+        if(maxSize < 1) {
+            throw new IllegalArgumentException("Dictionary size must be positive, was " + maxSize);
+        }
+        this.in = input;
+        this.predictor = new LastValuePredictor();
+        this.xorDecompressor = new ValueDecompressor(input, predictor);
+        this.dictionary = new long[maxSize];
+    }
+
+    @Override
+    public long readFirst() {
+        storedVal = in.getLong(Long.SIZE);
+        add(storedVal);
+        return storedVal;
+    }
+
+    @Override
+    public long nextValue() {
+        if(xor) {
+            return xorDecompressor.nextValue();
+        }
+        switch(in.nextClearBit(2)) {
+            case 0x00:
+                return storedVal;
+            case 0x02:
+                storedVal = dictionary[(int) in.getLong(indexBits)];
+                return storedVal;
+            default:
+                if(size == dictionary.length) {
+                    xor = true;
+                    predictor.update(storedVal);
+                    return xorDecompressor.nextValue();
+                }
+                storedVal = in.getLong(Long.SIZE);
+                add(storedVal);
+                return storedVal;
+        }
+    }
+
+    private void add(long value) {
+        dictionary[size++] = value;
+        indexBits = 32 - Integer.numberOfLeadingZeros(size - 1);
+    }
+}
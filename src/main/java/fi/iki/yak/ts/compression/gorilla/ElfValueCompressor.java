@@ -0,0 +1,160 @@
+package fi.iki.yak.ts.compression.gorilla;
+
+import fi.iki.yak.ts.compression.gorilla.predictors.LastValuePredictor;
+
+/**
+ * Lossless ValueCompressor for doubles that were parsed from decimal text, using the erasure of Elf (Li et al.,
+ * VLDB 2023). The mantissa bits that are not needed to tell the value apart at its amount of decimal places are set
+ * to zero before the XOR encoding, which gives long runs of trailing zeros. The amount of significant decimal digits
+ * is stored in front of each erased value, so the decompressor can round the value back to the original.
+ *
+ * Flag of each value, followed by the XOR encoding of the (erased) value:
+ * '0' not erased,
+ * '10' erased, same amount of significant digits as the previous erased value,
+ * '11' erased, 4 bits amount of significant digits.
+ *
+ * A value is only erased if the ElfValueDecompressor restores exactly the same bits, so NaNs, infinities and values
+ * with more digits than a double can hold are stored as is.
+ */
+public class ElfValueCompressor implements ValueEncoder {
+
+    static final int MANTISSA_BITS = 52;
+    static final int MAX_DIGITS = 15;
+    static final int MAX_DECIMALS = 17;
+    private static final int MIN_ERASED_BITS = 5;
+
+    // 10^i for the exact decimal scaling and the bits of the fraction needed for i decimal places, ceil(i * log2(10))
+    static final double[] POW10 = new double[MAX_DECIMALS + 1];
+    private static final int[] FRACTION_BITS = new int[MAX_DECIMALS + 1];
+    private static final double[] POW10_BOUNDS = new double[2 * 20 + 1];
+
+    static {
+        for(int i = 0; i <= MAX_DECIMALS; i++) {
+            POW10[i] = Double.parseDouble("1e" + i);
+            FRACTION_BITS[i] = (int) Math.ceil(i * Math.log(10) / Math.log(2));
+        }
+        for(int i = -20; i <= 20; i++) {
+            POW10_BOUNDS[i + 20] = Double.parseDouble("1e" + i);
+        }
+    }
+
+    private int storedDigits = Integer.MAX_VALUE;
+    private int storedDecimals = 0;
+
+    private final BitOutput out;
+    private final ValueCompressor xorCompressor;
+
+    public ElfValueCompressor(BitOutput out) {
+        this(out, new LastValuePredictor());
+    }
+
+    /**
+     * @param out Stream to write to
+     * @param predictor Predictor of the erased values, the decompressor must use the same predictor
+     */
+    public ElfValueCompressor(BitOutput out, Predictor predictor) {
+        this.out = out;
+        this.xorCompressor = new ValueCompressor(out, predictor);
+    }
+
+    @Override
+    public void writeFirst(long value) {
+        xorCompressor.writeFirst(erase(value));
+    }
+
+    @Override
+    public void compressValue(long value) {
+        xorCompressor.compressValue(erase(value));
+    }
+
+    /**
+     * Writes the flag of the value and returns the value to XOR encode.
+     */
+    private long erase(long value) {
+        double abs = Math.abs(Double.longBitsToDouble(value));
+        int exponent = Math.getExponent(abs);
+        if(exponent < Double.MIN_EXPONENT || exponent > Double.MAX_EXPONENT) {
+            // Zero, subnormal, infinite or NaN
+            out.skipBit();
+            return value;
+        }
+
+        int decimals = decimalPlaces(abs);
+        if(decimals >= 0) {
+            int erasedBits = Math.min(MANTISSA_BITS - exponent - FRACTION_BITS[decimals], MANTISSA_BITS);
+            if(erasedBits >= MIN_ERASED_BITS && (value & ((1L << erasedBits) - 1)) != 0) {
+                long erased = value & -(1L << erasedBits);
+                int digits = decimals + decimalExponent(Math.abs(Double.longBitsToDouble(erased))) + 1;
+                if(digits >= 0 && digits <= MAX_DIGITS && restore(erased, digits) == value) {
+                    if(digits == storedDigits) {
+                        out.writeBits(0x02, 2);
+                    } else {
+                        out.writeBits((0x03 << 4) | digits, 6);
+                        storedDigits = digits;
+                    }
+                    return erased;
+                }
+            }
+        }
+        out.skipBit();
+        return value;
+    }
+
+    /**
+     * Returns the smallest amount of decimal places the value has, or -1 if there are more than MAX_DECIMALS. Series
+     * tend to keep their precision, so the search starts from the decimal places of the previous value.
+     */
+    private int decimalPlaces(double abs) {
+        int decimals = storedDecimals;
+        if(!hasDecimalPlaces(abs, decimals)) {
+            decimals = 0;
+            while(decimals <= MAX_DECIMALS && !hasDecimalPlaces(abs, decimals)) {
+                decimals++;
+            }
+            if(decimals > MAX_DECIMALS) {
+                return -1;
+            }
+        }
+        while(decimals > 0 && hasDecimalPlaces(abs, decimals - 1)) {
+            decimals--;
+        }
+        storedDecimals = decimals;
+        return decimals;
+    }
+
+    private static boolean hasDecimalPlaces(double abs, int decimals) {
+        return Math.rint(abs * POW10[decimals]) / POW10[decimals] == abs;
+    }
+
+    /**
+     * Returns floor(log10(abs)) of a positive value, table lookups for the common range. Values at the exact powers
+     * of ten can be off by one as the negative powers are not exact, but the compressor and the decompressor agree.
+     */
+    static int decimalExponent(double abs) {
+        int estimate = (int) Math.floor(Math.getExponent(abs) * 0.3010299956639812);
+        if(estimate < -19 || estimate > 19) {
+            return (int) Math.floor(Math.log10(abs));
+        }
+        if(abs >= POW10_BOUNDS[estimate + 21]) {
+            return estimate + 1;
+        }
+        if(abs < POW10_BOUNDS[estimate + 20]) {
+            return estimate - 1;
+        }
+        return estimate;
+    }
+
+    /**
+     * Rounds the erased value up to the decimal places given by the amount of significant digits.
+     */
+    static long restore(long erased, int digits) {
+        double value = Double.longBitsToDouble(erased);
+        int decimals = digits - decimalExponent(Math.abs(value)) - 1;
+        if(decimals < 0 || decimals > MAX_DECIMALS) {
+            // Can't be the result of an erasure, the compressor checks the restored value
+            return ~erased;
+        }
+        double restored = Math.ceil(Math.abs(value) * POW10[decimals]) / POW10[decimals];
+        return Double.doubleToRawLongBits(Math.copySign(restored, value));
+    }
+}
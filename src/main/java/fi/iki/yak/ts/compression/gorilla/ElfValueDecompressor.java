@@ -0,0 +1,52 @@
+package fi.iki.yak.ts.compression.gorilla;
+
+import fi.iki.yak.ts.compression.gorilla.predictors.LastValuePredictor;
+
+/**
+ * Value decompressor for values stored by the ElfValueCompressor
+ */
+public class ElfValueDecompressor implements ValueDecoder {
+
+    private int storedDigits = Integer.MAX_VALUE;
+
+    private final BitInput in;
+    private final ValueDecompressor xorDecompressor;
+
+    public ElfValueDecompressor(BitInput input) {
+        this(input, new LastValuePredictor());
+    }
+
+    public ElfValueDecompressor(BitInput input, Predictor predictor) {
+        this.in = input;
+        this.xorDecompressor = new ValueDecompressor(input, predictor);
+    }
+
+    @Override
+    public long readFirst() {
+        int digits = readDigits();
+        return restore(xorDecompressor.readFirst(), digits);
+    }
+
+    @Override
+    public long nextValue() {
+        int digits = readDigits();
+        return restore(xorDecompressor.nextValue(), digits);
+    }
+
+    /**
+     * Reads the flag of the value, returns -1 if the value is not erased.
+     */
+    private int readDigits() {
+        if(!in.readBit()) {
+            return -1;
+        }
+        if(in.readBit()) {
+            storedDigits = (int) in.getLong(4);
+        }
+        return storedDigits;
+    }
+
+    private static long restore(long value, int digits) {
+        return digits < 0 ? value : ElfValueCompressor.restore(value, digits);
+    }
+}
@@ -1,5 +1,8 @@
 package fi.iki.yak.ts.compression.gorilla;
 
+import java.util.PrimitiveIterator;
+import java.util.stream.LongStream;
+
 import fi.iki.yak.ts.compression.gorilla.predictors.LastValuePredictor;
 
 /**
@@ -10,34 +13,98 @@ import fi.iki.yak.ts.compression.gorilla.predictors.LastValuePredictor;
  */
 public class GorillaCompressor {
 
-    private long storedTimestamp = 0;
-    private int storedDelta = 0;
-
-    private long blockTimestamp = 0;
+    private boolean first = true;
+    private int points = -1;
+    private int count = 0;
 
-    public final static int FIRST_DELTA_BITS = 27;
-
-    private static int DELTAD_7_MASK = 0x02 << 7;
-    private static int DELTAD_9_MASK = 0x06 << 9;
-    private static int DELTAD_12_MASK = 0x0E << 12;
+    public final static int FIRST_DELTA_BITS = TimestampCompressor.FIRST_DELTA_BITS;
 
     private BitOutput out;
 
-    private ValueCompressor valueCompressor;
+    private TimestampCompressor timestampCompressor;
+    private ValueEncoder valueCompressor;
 
     public GorillaCompressor(long timestamp, BitOutput output) {
         this(timestamp, output, new LastValuePredictor());
     }
 
     public GorillaCompressor(long timestamp, BitOutput output, Predictor predictor) {
-        blockTimestamp = timestamp;
         out = output;
         addHeader(timestamp);
+        this.timestampCompressor = new TimestampCompressor(timestamp, output);
         this.valueCompressor = new ValueCompressor(output, predictor);
     }
 
+    /**
+     * Creates a lossy compressor for double values, the absolute error of each value is below maxError. The stream is
+     * read with the GorillaDecompressor using the same predictor.
+     *
+     * @param timestamp Block timestamp
+     * @param output Stream to write to
+     * @param predictor Predictor of the values
+     * @param maxError Maximum absolute error, positive and finite
+     */
+    public GorillaCompressor(long timestamp, BitOutput output, Predictor predictor, double maxError) {
+        out = output;
+        addHeader(timestamp);
+        this.timestampCompressor = new TimestampCompressor(timestamp, output);
+        this.valueCompressor = new LossyValueCompressor(output, predictor, maxError);
+    }
+
+    /**
+     * Creates a compressor that stores the values with the given value encoder, for example the
+     * ChimpValueCompressor. The stream is read with the GorillaDecompressor using the matching value decoder.
+     *
+     * @param timestamp Block timestamp
+     * @param output Stream to write to
+     * @param valueCompressor Value compressor that writes to the same output
+     */
+    public GorillaCompressor(long timestamp, BitOutput output, ValueEncoder valueCompressor) {
+        out = output;
+        addHeader(timestamp);
+        this.timestampCompressor = new TimestampCompressor(timestamp, output);
+        this.valueCompressor = valueCompressor;
+    }
+
+    /**
+     * Creates a compressor for a framed block of the given amount of points. The amount is stored after the block
+     * timestamp instead of the end of stream marker, so the decompressor reads the points with a counted loop. The
+     * block is read with {@link GorillaDecompressor#GorillaDecompressor(BitInput, boolean)}.
+     *
+     * @param timestamp Block timestamp
+     * @param points Amount of points that are added before close
+     * @param output Stream to write to
+     */
+    public GorillaCompressor(long timestamp, int points, BitOutput output) {
+        this(timestamp, points, output, new ValueCompressor(output));
+    }
+
+    /**
+     * Creates a compressor for a framed block of the given amount of points that stores the values with the given
+     * value compressor. The block is read with
+     * {@link GorillaDecompressor#GorillaDecompressor(BitInput, ValueDecoder, boolean)}.
+     *
+     * @param timestamp Block timestamp
+     * @param points Amount of points that are added before close
+     * @param output Stream to write to
+     * @param valueCompressor Value compressor that writes to the same output
+     */
+    public GorillaCompressor(long timestamp, int points, BitOutput output, ValueEncoder valueCompressor) {
+        if(points < 0) {
+            throw new IllegalArgumentException("Amount of points must not be negative, was " + points);
+        }
+        out = output;
+        this.points = points;
+        addHeader(timestamp);
+        this.timestampCompressor = new TimestampCompressor(timestamp, output);
+        this.valueCompressor = valueCompressor;
+    }
+
     private void addHeader(long timestamp) {
         out.writeBits(timestamp, 64);
+        if(points >= 0) {
+            out.writeBits(points, 32);
+        }
     }
 
     /**
@@ -47,10 +114,11 @@ public class GorillaCompressor {
      * @param value next floating point value in the series
      */
     public void addValue(long timestamp, long value) {
-        if(storedTimestamp == 0) {
+        countPoint();
+        if(first) {
             writeFirst(timestamp, value);
         } else {
-            compressTimestamp(timestamp);
+            timestampCompressor.compressTimestamp(timestamp);
             valueCompressor.compressValue(value);
         }
     }
@@ -62,84 +130,65 @@ public class GorillaCompressor {
      * @param value next floating point value in the series
      */
     public void addValue(long timestamp, double value) {
-        if(storedTimestamp == 0) {
+        countPoint();
+        if(first) {
             writeFirst(timestamp, Double.doubleToRawLongBits(value));
             return;
         }
-        compressTimestamp(timestamp);
+        timestampCompressor.compressTimestamp(timestamp);
         valueCompressor.compressValue(Double.doubleToRawLongBits(value));
     }
 
-    private void writeFirst(long timestamp, long value) {
-        storedDelta = (int) (timestamp - blockTimestamp);
-        storedTimestamp = timestamp;
-
-        out.writeBits(storedDelta, FIRST_DELTA_BITS);
-        valueCompressor.writeFirst(value);
-    }
-
     /**
-     * Closes the block and writes the remaining stuff to the BitOutput.
+     * Adds all the pairs from the iterator to the series. The iterator must return the timestamp and the long
+     * value (or bits of the double value, Double.doubleToRawLongBits) of each pair interleaved.
+     *
+     * @param pairs Interleaved timestamps and values
      */
-    public void close() {
-        out.writeBits(0x0F, 4);
-        out.writeBits(0xFFFFFFFF, 32);
-        out.skipBit();
-        out.flush();
+    public void compress(PrimitiveIterator.OfLong pairs) {
+        while(pairs.hasNext()) {
+            long timestamp = pairs.nextLong();
+            if(!pairs.hasNext()) {
+                throw new IllegalArgumentException("Missing value for timestamp " + timestamp);
+            }
+            addValue(timestamp, pairs.nextLong());
+        }
     }
 
     /**
-     * Difference to the original Facebook paper, we store the first delta as 27 bits to allow
-     * millisecond accuracy for a one day block.
-     *
-     * Also, the timestamp delta-delta is not good for millisecond compressions..
+     * Adds all the pairs from the stream to the series, see {@link #compress(PrimitiveIterator.OfLong)} for the
+     * expected layout. The stream is consumed sequentially.
      *
-     * @param timestamp epoch
+     * @param pairs Interleaved timestamps and values
      */
-    private void compressTimestamp(long timestamp) {
-
-        // a) Calculate the delta of delta
-        int newDelta = (int) (timestamp - storedTimestamp);
-        int deltaD = newDelta - storedDelta;
+    public void compressLongStream(LongStream pairs) {
+        compress(pairs.sequential().iterator());
+    }
 
-        if(deltaD == 0) {
-            out.skipBit();
-        } else {
-            deltaD = encodeZigZag32(deltaD);
-            deltaD--; // Increase by one in the decompressing phase as we have one free bit
-            int bitsRequired = 32 - Integer.numberOfLeadingZeros(deltaD); // Faster than highestSetBit
-
-            // Turns to inlineable tableswitch
-            switch(bitsRequired) {
-                case 1:
-                case 2:
-                case 3:
-                case 4:
-                case 5:
-                case 6:
-                case 7:
-                    deltaD |= DELTAD_7_MASK;
-                    out.writeBits(deltaD, 9);
-                    break;
-                case 8:
-                case 9:
-                    deltaD |= DELTAD_9_MASK;
-                    out.writeBits(deltaD, 12);
-                    break;
-                case 10:
-                case 11:
-                case 12:
-                    out.writeBits(deltaD | DELTAD_12_MASK, 16);
-                    break;
-                default:
-                    out.writeBits(0x0F, 4); // Store '1111'
-                    out.writeBits(deltaD, 32); // Store delta using 32 bits
-                    break;
-            }
-            storedDelta = newDelta;
+    private void countPoint() {
+        if(count == points) {
+            throw new IllegalStateException("Block is full, it was created for " + points + " points");
         }
+        count++;
+    }
+
+    private void writeFirst(long timestamp, long value) {
+        first = false;
+        timestampCompressor.writeFirst(timestamp);
+        valueCompressor.writeFirst(value);
+    }
 
-        storedTimestamp = timestamp;
+    /**
+     * Closes the block and writes the remaining stuff to the BitOutput.
+     */
+    public void close() {
+        if(points < 0) {
+            timestampCompressor.writeEndOfStream();
+        } else if(count != points) {
+            throw new IllegalStateException("Block has " + count + " points, it was created for " + points);
+        }
+        out.skipBit();
+        out.flush();
     }
 
     // START: From protobuf
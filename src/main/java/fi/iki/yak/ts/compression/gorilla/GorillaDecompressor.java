@@ -1,5 +1,10 @@
 package fi.iki.yak.ts.compression.gorilla;
 
+import java.util.Spliterator;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
 import fi.iki.yak.ts.compression.gorilla.predictors.LastValuePredictor;
 
 /**
@@ -9,16 +14,18 @@ import fi.iki.yak.ts.compression.gorilla.predictors.LastValuePredictor;
  */
 public class GorillaDecompressor {
     private long storedTimestamp = 0;
-    private long storedDelta = 0;
 
-    private long blockTimestamp = 0;
     private long storedVal = 0;
+    private boolean first = true;
     private boolean endOfStream = false;
+    private boolean framed = false;
+    private int remaining = 0;
 
-    public final static short FIRST_DELTA_BITS = 27;
+    public final static short FIRST_DELTA_BITS = TimestampCompressor.FIRST_DELTA_BITS;
 
     private final BitInput in;
-    private final ValueDecompressor decompressor;
+    private final TimestampDecompressor timestampDecompressor;
+    private final ValueDecoder decompressor;
 
     public GorillaDecompressor(BitInput input) {
         this(input, new LastValuePredictor());
@@ -26,12 +33,65 @@ public class GorillaDecompressor {
 
     public GorillaDecompressor(BitInput input, Predictor predictor) {
         in = input;
-        readHeader();
+        this.timestampDecompressor = new TimestampDecompressor(readHeader(), input);
         this.decompressor = new ValueDecompressor(input, predictor);
     }
 
-    private void readHeader() {
-        blockTimestamp = in.getLong(64);
+    /**
+     * Creates a decompressor for a stream whose values were stored with a different value compressor, for example
+     * the ChimpValueDecompressor for the ChimpValueCompressor.
+     *
+     * @param input Compressed series
+     * @param decompressor Value decompressor that reads from the same input
+     */
+    public GorillaDecompressor(BitInput input, ValueDecoder decompressor) {
+        in = input;
+        this.timestampDecompressor = new TimestampDecompressor(readHeader(), input);
+        this.decompressor = decompressor;
+    }
+
+    /**
+     * Creates a decompressor for a framed block if framed is true, see
+     * {@link GorillaCompressor#GorillaCompressor(long, int, BitOutput)}. Otherwise same as
+     * {@link #GorillaDecompressor(BitInput)}.
+     *
+     * @param input Compressed series
+     * @param framed true if the block was created with the amount of points
+     */
+    public GorillaDecompressor(BitInput input, boolean framed) {
+        this(input, new ValueDecompressor(input), framed);
+    }
+
+    /**
+     * Creates a decompressor for a framed block whose values were stored with a different value compressor if framed
+     * is true. Otherwise same as {@link #GorillaDecompressor(BitInput, ValueDecoder)}.
+     *
+     * @param input Compressed series
+     * @param decompressor Value decompressor that reads from the same input
+     * @param framed true if the block was created with the amount of points
+     */
+    public GorillaDecompressor(BitInput input, ValueDecoder decompressor, boolean framed) {
+        in = input;
+        long blockTimestamp = readHeader();
+        if(framed) {
+            this.framed = true;
+            this.remaining = (int) in.getLong(32);
+        }
+        this.timestampDecompressor = new TimestampDecompressor(blockTimestamp, input);
+        this.decompressor = decompressor;
+    }
+
+    private long readHeader() {
+        return in.getLong(64);
+    }
+
+    /**
+     * Returns the amount of points that have not been read yet from a framed block.
+     *
+     * @return Amount of remaining points, -1 if the block is not framed
+     */
+    public int size() {
+        return framed ? remaining : -1;
     }
 
     /**
@@ -48,66 +108,175 @@ public class GorillaDecompressor {
         return pair;
     }
 
-    private void next() {
-        // TODO I could implement a non-streaming solution also.. is there ever a need for streaming solution?
+    /**
+     * Decompresses the rest of the series and pushes each pair to the consumer.
+     *
+     * @param consumer Receives timestamps and values
+     * @return Amount of decompressed pairs
+     */
+    public int decode(TimestampValueConsumer consumer) {
+        int count = 0;
+        for(next(); !endOfStream; next()) {
+            consumer.accept(storedTimestamp, storedVal);
+            count++;
+        }
+        return count;
+    }
 
-        if(storedTimestamp == 0) {
-            first();
-            return;
+    /**
+     * Decompresses the rest of a framed block to the arrays, which must have room for {@link #size()} points.
+     *
+     * @param timestamps Receives the timestamps
+     * @param values Receives the long values (or bits of the double values)
+     * @return Amount of decompressed points
+     */
+    public int decode(long[] timestamps, long[] values) {
+        if(!framed) {
+            throw new IllegalStateException("Block is not framed, the amount of points is not known");
+        }
+        int count = remaining;
+        int i = 0;
+        if(first && count > 0) {
+            first = false;
+            storedTimestamp = timestampDecompressor.readFirstTimestamp();
+            storedVal = decompressor.readFirst();
+            timestamps[i] = storedTimestamp;
+            values[i++] = storedVal;
         }
+        for(; i < count; i++) {
+            timestamps[i] = timestampDecompressor.readNextTimestamp();
+            values[i] = decompressor.nextValue();
+        }
+        if(count > 0) {
+            storedTimestamp = timestamps[count - 1];
+            storedVal = values[count - 1];
+        }
+        remaining = 0;
+        endOfStream = true;
+        return count;
+    }
 
-        nextTimestamp();
+    /**
+     * Decompresses the whole series from the input, which must have been compressed using the
+     * LastValuePredictor.
+     *
+     * @param input Compressed series
+     * @param consumer Receives timestamps and values
+     * @return Amount of decompressed pairs
+     */
+    public static int decode(BitInput input, TimestampValueConsumer consumer) {
+        return new GorillaDecompressor(input).decode(consumer);
     }
 
-    private void first() {
-        // First item to read
-        storedDelta = in.getLong(FIRST_DELTA_BITS);
-        if(storedDelta == (1<<27) - 1) {
-            endOfStream = true;
-            return;
+    /**
+     * Returns a lazy spliterator over the rest of the series. Timestamp and the long value (or bits of the double
+     * value) of each pair are returned interleaved, which is the same layout
+     * {@link GorillaCompressor#compress(java.util.PrimitiveIterator.OfLong)} accepts.
+     *
+     * @return Spliterator of interleaved timestamps and values
+     */
+    public Spliterator.OfLong spliterator() {
+        return new PairSpliterator();
+    }
+
+    /**
+     * Returns a lazy sequential stream over the rest of the series, see {@link #spliterator()}.
+     *
+     * @return LongStream of interleaved timestamps and values
+     */
+    public LongStream longStream() {
+        return StreamSupport.longStream(spliterator(), false);
+    }
+
+    private class PairSpliterator implements Spliterator.OfLong {
+        private boolean valuePending = false;
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            if(valuePending) {
+                valuePending = false;
+                action.accept(storedVal);
+                return true;
+            }
+            next();
+            if(endOfStream) {
+                return false;
+            }
+            valuePending = true;
+            action.accept(storedTimestamp);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(LongConsumer action) {
+            if(valuePending) {
+                valuePending = false;
+                action.accept(storedVal);
+            }
+            for(next(); !endOfStream; next()) {
+                action.accept(storedTimestamp);
+                action.accept(storedVal);
+            }
+        }
+
+        @Override
+        public Spliterator.OfLong trySplit() {
+            // The stream can only be decoded sequentially
+            return null;
+        }
+
+        @Override
+        public long estimateSize() {
+            if(framed) {
+                return 2L * remaining + (valuePending ? 1 : 0);
+            }
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE;
         }
-        storedVal = decompressor.readFirst();
-//        storedVal = in.getLong(64);
-        storedTimestamp = blockTimestamp + storedDelta;
     }
 
-    private void nextTimestamp() {
-        // Next, read timestamp
-        int readInstruction = in.nextClearBit(4);
-        long deltaDelta;
+    private void next() {
+        if(endOfStream) {
+            return;
+        }
 
-        switch(readInstruction) {
-            case 0x00:
-                storedTimestamp = storedDelta + storedTimestamp;
-                storedVal = decompressor.nextValue();
-                return;
-            case 0x02:
-                deltaDelta = in.getLong(7);
-                break;
-            case 0x06:
-                deltaDelta = in.getLong(9);
-                break;
-            case 0x0e:
-                deltaDelta = in.getLong(12);
-                break;
-            case 0x0F:
-                deltaDelta = in.getLong(32);
-                // For storage save.. if this is the last available word, check if remaining bits are all 1
-                if ((int) deltaDelta == 0xFFFFFFFF) {
-                    // End of stream
-                    endOfStream = true;
-                    return;
-                }
-                break;
-            default:
+        if(framed) {
+            if(remaining == 0) {
+                endOfStream = true;
                 return;
+            }
+            remaining--;
+            if(first) {
+                first = false;
+                storedTimestamp = timestampDecompressor.readFirstTimestamp();
+                storedVal = decompressor.readFirst();
+            } else {
+                storedTimestamp = timestampDecompressor.readNextTimestamp();
+                storedVal = decompressor.nextValue();
+            }
+            return;
         }
 
-        deltaDelta++;
-        deltaDelta = decodeZigZag32((int) deltaDelta);
-        storedDelta = storedDelta + deltaDelta;
+        if(first) {
+            first = false;
+            if(!timestampDecompressor.readFirst()) {
+                endOfStream = true;
+                return;
+            }
+            storedTimestamp = timestampDecompressor.getTimestamp();
+            storedVal = decompressor.readFirst();
+            return;
+        }
 
-        storedTimestamp = storedDelta + storedTimestamp;
+        if(!timestampDecompressor.readNext()) {
+            endOfStream = true;
+            return;
+        }
+        storedTimestamp = timestampDecompressor.getTimestamp();
         storedVal = decompressor.nextValue();
     }
 
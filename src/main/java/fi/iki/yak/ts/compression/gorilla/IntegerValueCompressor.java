@@ -0,0 +1,86 @@
+package fi.iki.yak.ts.compression.gorilla;
+
+/**
+ * ValueCompressor for long values such as counters. Instead of the XOR the values are stored as zigzag encoded
+ * deltas or delta-of-deltas with the same bucketed prefixes as the timestamps of the GorillaCompressor, except that
+ * the last bucket has 64 bits. Supply with the long values, doubles compress better with the ValueCompressor.
+ *
+ * The mode is chosen per block and stored as a flag bit in front of the first value: '0' delta, '1' delta-of-delta.
+ * Delta suits gauges that hover around a value, delta-of-delta suits counters that grow at a steady rate.
+ *
+ * Control bits of each value after the first one:
+ * '0' zero,
+ * '10' 7 bits,
+ * '110' 9 bits,
+ * '1110' 12 bits,
+ * '1111' 64 bits.
+ */
+public class IntegerValueCompressor implements ValueEncoder {
+
+    private static final long DELTAD_7_MASK = 0x02L << 7;
+    private static final long DELTAD_9_MASK = 0x06L << 9;
+    private static final long DELTAD_12_MASK = 0x0EL << 12;
+
+    private final boolean deltaOfDelta;
+    private long storedVal = 0;
+    private long storedDelta = 0;
+
+    private final BitOutput out;
+
+    /**
+     * Creates a compressor that stores delta-of-deltas.
+     *
+     * @param out Stream to write to
+     */
+    public IntegerValueCompressor(BitOutput out) {
+        this(out, true);
+    }
+
+    /**
+     * @param out Stream to write to
+     * @param deltaOfDelta true to store delta-of-deltas, false to store deltas
+     */
+    public IntegerValueCompressor(BitOutput out, boolean deltaOfDelta) {
+        this.out = out;
+        this.deltaOfDelta = deltaOfDelta;
+    }
+
+    @Override
+    public void writeFirst(long value) {
+        if(deltaOfDelta) {
+            out.writeBit();
+        } else {
+            out.skipBit();
+        }
+        out.writeBits(value, 64);
+        storedVal = value;
+    }
+
+    @Override
+    public void compressValue(long value) {
+        long delta = value - storedVal;
+        long deltaD = deltaOfDelta ? delta - storedDelta : delta;
+        storedVal = value;
+        storedDelta = delta;
+
+        if(deltaD == 0) {
+            out.skipBit();
+            return;
+        }
+
+        // Zigzag, decreased by one as zero has its own control bit
+        long encoded = ((deltaD << 1) ^ (deltaD >> 63)) - 1;
+        int bitsRequired = Long.SIZE - Long.numberOfLeadingZeros(encoded);
+
+        if(bitsRequired <= 7) {
+            out.writeBits(encoded | DELTAD_7_MASK, 9);
+        } else if(bitsRequired <= 9) {
+            out.writeBits(encoded | DELTAD_9_MASK, 12);
+        } else if(bitsRequired <= 12) {
+            out.writeBits(encoded | DELTAD_12_MASK, 16);
+        } else {
+            out.writeBits(0x0F, 4); // Store '1111'
+            out.writeBits(encoded, 64);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package fi.iki.yak.ts.compression.gorilla;
+
+/**
+ * Value decompressor for values stored by the IntegerValueCompressor, the mode is read from the stream.
+ */
+public class IntegerValueDecompressor implements ValueDecoder {
+
+    private boolean deltaOfDelta;
+    private long storedVal = 0;
+    private long storedDelta = 0;
+
+    private final BitInput in;
+
+    public IntegerValueDecompressor(BitInput input) {
+        this.in = input;
+    }
+
+    @Override
+    public long readFirst() {
+        deltaOfDelta = in.readBit();
+        storedVal = in.getLong(Long.SIZE);
+        return storedVal;
+    }
+
+    @Override
+    public long nextValue() {
+        long encoded;
+        switch(in.nextClearBit(4)) {
+            case 0x00:
+                storedVal += deltaOfDelta ? storedDelta : 0;
+                return storedVal;
+            case 0x02:
+                encoded = in.getLong(7);
+                break;
+            case 0x06:
+                encoded = in.getLong(9);
+                break;
+            case 0x0e:
+                encoded = in.getLong(12);
+                break;
+            default:
+                encoded = in.getLong(64);
+                break;
+        }
+
+        encoded++;
+        long deltaD = (encoded >>> 1) ^ -(encoded & 1);
+        storedDelta = deltaOfDelta ? storedDelta + deltaD : deltaD;
+        storedVal += storedDelta;
+        return storedVal;
+    }
+}
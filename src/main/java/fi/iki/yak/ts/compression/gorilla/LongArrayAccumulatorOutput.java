@@ -0,0 +1,98 @@
+package fi.iki.yak.ts.compression.gorilla;
+
+import java.util.Arrays;
+
+/**
+ * An implementation of BitOutput interface that uses on-heap long array. Produces the same stream as
+ * LongArrayOutput, but writes are appended to a 128 bit accumulator (the current word and the spill word)
+ * without the bits-fit branch and mask lookups. The only branch per write is the word flip, which happens at most
+ * once per call and is also the only place where the capacity is checked.
+ */
+public class LongArrayAccumulatorOutput implements BitOutput {
+    public static final int DEFAULT_ALLOCATION = 256;
+
+    private long[] longArray;
+    private int position = 0;
+
+    private long lB;
+    private int bitsLeft = Long.SIZE;
+
+    /**
+     * Creates a new LongArrayAccumulatorOutput with a default allocated size of 256 longs.
+     */
+    public LongArrayAccumulatorOutput() {
+        this(DEFAULT_ALLOCATION);
+    }
+
+    /**
+     * Give an initialSize different than DEFAULT_ALLOCATIONS.
+     *
+     * @param initialSize New initialsize to use
+     */
+    public LongArrayAccumulatorOutput(int initialSize) {
+        longArray = new long[Math.max(initialSize, 1)];
+    }
+
+    private void expandAllocation() {
+        longArray = Arrays.copyOf(longArray, longArray.length*2);
+    }
+
+    private void flipWord(long next) {
+        if(position == longArray.length) {
+            expandAllocation();
+        }
+        longArray[position++] = lB;
+        lB = next;
+        bitsLeft += Long.SIZE;
+    }
+
+    @Override
+    public void writeBit() {
+        lB |= 1L << (bitsLeft - 1);
+        if(--bitsLeft == 0) {
+            flipWord(0);
+        }
+    }
+
+    @Override
+    public void skipBit() {
+        if(--bitsLeft == 0) {
+            flipWord(0);
+        }
+    }
+
+    /**
+     * Writes the given long to the stream using bits amount of meaningful bits. Bits above the given amount are
+     * ignored.
+     *
+     * @param value Value to be written to the stream
+     * @param bits How many bits are stored to the stream, between 1 and 64
+     */
+    @Override
+    public void writeBits(long value, int bits) {
+        // Left align the value, this also drops the bits we're not interested in
+        long aligned = value << (Long.SIZE - bits);
+        lB |= aligned >>> (Long.SIZE - bitsLeft);
+        // Whatever did not fit the current word, two shifts as bitsLeft can be 64
+        long spill = (aligned << 1) << (bitsLeft - 1);
+        bitsLeft -= bits;
+        if(bitsLeft <= 0) {
+            flipWord(spill);
+        }
+    }
+
+    /**
+     * Causes the currently handled word to be written to the stream
+     */
+    @Override
+    public void flush() {
+        bitsLeft = 0;
+        flipWord(0);
+    }
+
+    public long[] getLongArray() {
+        long[] copy = Arrays.copyOf(longArray, position + 1);
+        copy[copy.length - 1] = lB;
+        return copy;
+    }
+}
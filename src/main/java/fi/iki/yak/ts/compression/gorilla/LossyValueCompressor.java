@@ -0,0 +1,66 @@
+package fi.iki.yak.ts.compression.gorilla;
+
+/**
+ * Error bounded version of the ValueCompressor for doubles. Before the XOR step the value is replaced with the
+ * prediction if it is close enough, otherwise the mantissa bits below the error bound are replaced with the bits of
+ * the prediction, which gives trailing zeros to the XOR. The stream format does not change, the values are read with
+ * the ValueDecompressor using the same Predictor.
+ *
+ * The absolute error of each value is below maxError. Infinity and NaN are stored as is, as is the first value.
+ */
+public class LossyValueCompressor extends ValueCompressor {
+
+    private static final int MANTISSA_BITS = 52;
+    private static final int EXPONENT_BIAS = 1023;
+    private static final long[] LOW_BITS_MASK = new long[MANTISSA_BITS + 1];
+
+    static {
+        for(int i = 0; i < LOW_BITS_MASK.length; i++) {
+            LOW_BITS_MASK[i] = (1L << i) - 1;
+        }
+    }
+
+    private final Predictor predictor;
+    private final double maxError;
+    // Largest power of two below or equal to maxError
+    private final int logOfError;
+
+    /**
+     * @param out Stream to write to
+     * @param predictor Predictor of the values, the decompressor must use the same predictor
+     * @param maxError Maximum absolute error, positive and finite
+     */
+    public LossyValueCompressor(BitOutput out, Predictor predictor, double maxError) {
+        super(out, predictor);
+        if(!(maxError > 0) || Double.isInfinite(maxError)) {
+            throw new IllegalArgumentException("Error bound must be positive and finite, was " + maxError);
+        }
+        this.predictor = predictor;
+        this.maxError = maxError;
+        this.logOfError = Math.getExponent(maxError);
+    }
+
+    @Override
+    public void compressValue(long value) {
+        long prediction = predictor.predict();
+        if(Math.abs(Double.longBitsToDouble(value) - Double.longBitsToDouble(prediction)) < maxError) {
+            super.compressValue(prediction);
+            return;
+        }
+
+        int exponent = (int) (value >>> MANTISSA_BITS) & 0x7FF;
+        if(exponent != 0x7FF) {
+            // Changing the lowest space bits changes the value less than 2^logOfError, subnormals have the same ulp
+            // as the smallest normal exponent
+            int space = MANTISSA_BITS + logOfError - (Math.max(exponent, 1) - EXPONENT_BIAS);
+            if(space > MANTISSA_BITS) {
+                space = MANTISSA_BITS;
+            }
+            if(space > 0) {
+                long mask = LOW_BITS_MASK[space];
+                value = (value & ~mask) | (prediction & mask);
+            }
+        }
+        super.compressValue(value);
+    }
+}
@@ -0,0 +1,176 @@
+package fi.iki.yak.ts.compression.gorilla;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Compresses a time series block in the byte aligned Patas format, which trades some compression ratio for decoding
+ * speed compared to the GorillaCompressor. Each value is XORed with a reference from the last 128 values (found
+ * with an index on the lowest bits as in Chimp128) and only the significant bytes of the XOR are stored. The
+ * reference, byte count and trailing zeros of each value are packed to a 16 bit header, so decoding a value is one
+ * unaligned 64 bit load, a mask and a shift without any data dependent branches.
+ *
+ * Block layout (little endian): 64 bits block timestamp, 32 bits amount of points, 32 bits length of the
+ * timestamps, timestamps as varint encoded zigzag delta-of-deltas, 16 bit headers of the values, significant bytes
+ * of the values, 8 bytes of padding for the loads.
+ *
+ * Header of a value: 7 bits reference, 3 bits amount of significant bytes, 6 bits trailing zeros. Eight bytes are
+ * stored as 0 bytes with 0 trailing zeros, an equal value as 0 bytes with 1 trailing zero.
+ */
+public class PatasCompressor {
+
+    static final int HEADER_BYTES = 16;
+    static final int PADDING_BYTES = Long.BYTES;
+
+    static final int PREVIOUS_VALUES = 128;
+    static final int PREVIOUS_VALUES_MASK = PREVIOUS_VALUES - 1;
+    private static final int INDEX_MASK = (1 << 14) - 1;
+
+    private final long blockTimestamp;
+
+    private int count = 0;
+    private long storedTimestamp;
+    private long storedDelta = 0;
+
+    private final long[] storedValues = new long[PREVIOUS_VALUES];
+    private final int[] indices = new int[INDEX_MASK + 1];
+
+    private byte[] timestampBytes;
+    private int timestampPosition = 0;
+    private short[] valueHeaders;
+    private byte[] valueBytes;
+    private int valuePosition = 0;
+
+    private ByteBuffer bb;
+
+    public PatasCompressor(long timestamp) {
+        this(timestamp, 1024);
+    }
+
+    /**
+     * @param timestamp Block timestamp
+     * @param expectedPoints Initial capacity in points, grown when needed
+     */
+    public PatasCompressor(long timestamp, int expectedPoints) {
+        this.blockTimestamp = timestamp;
+        this.storedTimestamp = timestamp;
+        expectedPoints = Math.max(expectedPoints, 1);
+        timestampBytes = new byte[expectedPoints];
+        valueHeaders = new short[expectedPoints];
+        valueBytes = new byte[expectedPoints * Long.BYTES];
+    }
+
+    /**
+     * Adds a new double value to the series. Note, values must be inserted in order.
+     *
+     * @param timestamp Timestamp of the point
+     * @param value next floating point value in the series
+     */
+    public void addValue(long timestamp, double value) {
+        addValue(timestamp, Double.doubleToRawLongBits(value));
+    }
+
+    /**
+     * Adds a new long value to the series. Note, values must be inserted in order.
+     *
+     * @param timestamp Timestamp of the point
+     * @param value next long value in the series, or the bits of a double value
+     */
+    public void addValue(long timestamp, long value) {
+        if(count == valueHeaders.length) {
+            valueHeaders = Arrays.copyOf(valueHeaders, count * 2);
+        }
+        compressTimestamp(timestamp);
+        compressValue(value);
+        count++;
+    }
+
+    private void compressTimestamp(long timestamp) {
+        long delta = timestamp - storedTimestamp;
+        long deltaD = delta - storedDelta;
+        storedTimestamp = timestamp;
+        storedDelta = delta;
+
+        if(timestampBytes.length - timestampPosition < 10) {
+            timestampBytes = Arrays.copyOf(timestampBytes, timestampBytes.length * 2 + 10);
+        }
+        long zigzag = (deltaD << 1) ^ (deltaD >> 63);
+        while((zigzag & ~0x7FL) != 0) {
+            timestampBytes[timestampPosition++] = (byte) ((zigzag & 0x7F) | 0x80);
+            zigzag >>>= 7;
+        }
+        timestampBytes[timestampPosition++] = (byte) zigzag;
+    }
+
+    private void compressValue(long value) {
+        int key = (int) value & INDEX_MASK;
+
+        // The slot of the previous value is the reference of the first value, storedValues start as zeros
+        int previousIndex = (count - 1) & PREVIOUS_VALUES_MASK;
+        long xor = storedValues[previousIndex] ^ value;
+
+        // Any slot is a valid reference as the decompressor has the same values, the index only finds a good one
+        int candidateIndex = indices[key] & PREVIOUS_VALUES_MASK;
+        long candidateXor = storedValues[candidateIndex] ^ value;
+        if(significantBits(candidateXor) < significantBits(xor)) {
+            previousIndex = candidateIndex;
+            xor = candidateXor;
+        }
+
+        int bytes;
+        int trailingZeros;
+        if(xor == 0) {
+            bytes = 0;
+            trailingZeros = 1;
+        } else {
+            trailingZeros = Long.numberOfTrailingZeros(xor);
+            bytes = (Long.SIZE - Long.numberOfLeadingZeros(xor) - trailingZeros + 7) >>> 3;
+            if(bytes == Long.BYTES) {
+                trailingZeros = 0;
+            }
+        }
+
+        valueHeaders[count] = (short) ((previousIndex << 9) | ((bytes & 0x7) << 6) | trailingZeros);
+
+        if(valueBytes.length - valuePosition < Long.BYTES) {
+            valueBytes = Arrays.copyOf(valueBytes, valueBytes.length * 2);
+        }
+        long significant = xor >>> trailingZeros;
+        for(int i = 0; i < bytes; i++) {
+            valueBytes[valuePosition++] = (byte) (significant >>> (i * Byte.SIZE));
+        }
+
+        storedValues[count & PREVIOUS_VALUES_MASK] = value;
+        indices[key] = count;
+    }
+
+    private static int significantBits(long xor) {
+        return xor == 0 ? 0 : Long.SIZE - Long.numberOfLeadingZeros(xor) - Long.numberOfTrailingZeros(xor);
+    }
+
+    /**
+     * Closes the block and writes it to the ByteBuffer, see {@link #getByteBuffer()}.
+     */
+    public void close() {
+        bb = ByteBuffer.allocate(HEADER_BYTES + timestampPosition + count * Short.BYTES + valuePosition
+                + PADDING_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        bb.putLong(blockTimestamp);
+        bb.putInt(count);
+        bb.putInt(timestampPosition);
+        bb.put(timestampBytes, 0, timestampPosition);
+        bb.asShortBuffer().put(valueHeaders, 0, count);
+        bb.position(bb.position() + count * Short.BYTES);
+        bb.put(valueBytes, 0, valuePosition);
+        bb.position(bb.capacity());
+    }
+
+    /**
+     * Returns the closed block, the position of the ByteBuffer is at the end of the block.
+     *
+     * @return ByteBuffer of the block, null if the compressor is not closed
+     */
+    public ByteBuffer getByteBuffer() {
+        return bb;
+    }
+}
@@ -0,0 +1,156 @@
+package fi.iki.yak.ts.compression.gorilla;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Decompresses a block created by the PatasCompressor. The block is decoded in bulk, first the timestamps and then
+ * the values, with absolute reads from the ByteBuffer.
+ */
+public class PatasDecompressor {
+
+    // Masks of the lowest 0 to 8 bytes
+    private static final long[] BYTE_MASK = new long[Long.BYTES + 1];
+
+    static {
+        for(int i = 0; i < Long.BYTES; i++) {
+            BYTE_MASK[i] = (1L << (i * Byte.SIZE)) - 1;
+        }
+        BYTE_MASK[Long.BYTES] = -1L;
+    }
+
+    private final ByteBuffer bb;
+    private final int start;
+
+    private final long blockTimestamp;
+    private final int count;
+    private final int timestampLength;
+
+    /**
+     * Reads the block from the current position of the ByteBuffer, the position is not changed.
+     *
+     * @param buf Buffer of the block
+     */
+    public PatasDecompressor(ByteBuffer buf) {
+        bb = buf.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        start = bb.position();
+        blockTimestamp = bb.getLong(start);
+        count = bb.getInt(start + Long.BYTES);
+        timestampLength = bb.getInt(start + Long.BYTES + Integer.BYTES);
+    }
+
+    public long getBlockTimestamp() {
+        return blockTimestamp;
+    }
+
+    /**
+     * Returns the amount of points in the block.
+     *
+     * @return Amount of points
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Decompresses the block to the given arrays, which must have room for {@link #size()} points.
+     *
+     * @param timestamps Receives the timestamps
+     * @param values Receives the long values (or bits of the double values)
+     * @return Amount of decompressed points
+     */
+    public int decode(long[] timestamps, long[] values) {
+        decodeTimestamps(timestamps);
+        decodeValues(values, null);
+        return count;
+    }
+
+    /**
+     * Decompresses the block to the given arrays, which must have room for {@link #size()} points.
+     *
+     * @param timestamps Receives the timestamps
+     * @param values Receives the double values
+     * @return Amount of decompressed points
+     */
+    public int decode(long[] timestamps, double[] values) {
+        decodeTimestamps(timestamps);
+        decodeValues(null, values);
+        return count;
+    }
+
+    /**
+     * Decompresses the block and pushes each pair to the consumer.
+     *
+     * @param consumer Receives timestamps and values
+     * @return Amount of decompressed pairs
+     */
+    public int decode(TimestampValueConsumer consumer) {
+        long[] timestamps = new long[count];
+        long[] values = new long[count];
+        decode(timestamps, values);
+        for(int i = 0; i < count; i++) {
+            consumer.accept(timestamps[i], values[i]);
+        }
+        return count;
+    }
+
+    private void decodeTimestamps(long[] timestamps) {
+        int position = start + PatasCompressor.HEADER_BYTES;
+        long timestamp = blockTimestamp;
+        long delta = 0;
+        for(int i = 0; i < count; i++) {
+            long zigzag = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bb.get(position++);
+                zigzag |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while(b < 0);
+            delta += (zigzag >>> 1) ^ -(zigzag & 1);
+            timestamp += delta;
+            timestamps[i] = timestamp;
+        }
+    }
+
+    /**
+     * Decodes the values to either of the arrays, the other one is null. The check is loop invariant.
+     */
+    private void decodeValues(long[] values, double[] doubles) {
+        long[] storedValues = new long[PatasCompressor.PREVIOUS_VALUES];
+        int headerPosition = start + PatasCompressor.HEADER_BYTES + timestampLength;
+        int valuePosition = headerPosition + count * Short.BYTES;
+        for(int i = 0; i < count; i++) {
+            int header = bb.getShort(headerPosition) & 0xFFFF;
+            headerPosition += Short.BYTES;
+
+            int bytes = (header >>> 6) & 0x7;
+            int trailingZeros = header & 0x3F;
+            if((bytes | trailingZeros) == 0) {
+                bytes = Long.BYTES;
+            }
+
+            long xor = (bb.getLong(valuePosition) & BYTE_MASK[bytes]) << trailingZeros;
+            valuePosition += bytes;
+
+            long value = storedValues[header >>> 9] ^ xor;
+            storedValues[i & PatasCompressor.PREVIOUS_VALUES_MASK] = value;
+            if(values != null) {
+                values[i] = value;
+            } else {
+                doubles[i] = Double.longBitsToDouble(value);
+            }
+        }
+    }
+
+    /**
+     * Decompresses the whole block from the current position of the ByteBuffer.
+     *
+     * @param buf Buffer of the block
+     * @param consumer Receives timestamps and values
+     * @return Amount of decompressed pairs
+     */
+    public static int decode(ByteBuffer buf, TimestampValueConsumer consumer) {
+        return new PatasDecompressor(buf).decode(consumer);
+    }
+}
@@ -0,0 +1,204 @@
+package fi.iki.yak.ts.compression.gorilla;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Reads a segment file written by the SegmentWriter. The file is memory mapped and the index is binary searched in
+ * place, the blocks are returned as slices of the mapping without copying them. The file is limited to 2 GB, the
+ * largest size a single ByteBuffer can map.
+ */
+public class SegmentReader implements Closeable {
+
+    private final FileChannel channel;
+    private final MappedByteBuffer mapped;
+    private final ByteBuffer bb;
+    private final int indexStart;
+    private final int entries;
+
+    /**
+     * Opens and maps the segment file and verifies its index.
+     *
+     * @param path Path of the segment file
+     * @throws IOException if the file can not be read or it is not a valid segment file
+     */
+    public SegmentReader(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long fileSize = channel.size();
+            if(fileSize > Integer.MAX_VALUE) {
+                throw new IOException("Segment " + path + " is too large to be mapped");
+            }
+            if(fileSize < SegmentWriter.FOOTER_BYTES) {
+                throw new IOException("Segment " + path + " has no footer");
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            bb = mapped.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+
+            int footer = (int) fileSize - SegmentWriter.FOOTER_BYTES;
+            if(bb.getInt(footer + 20) != SegmentWriter.MAGIC) {
+                throw new IOException("Not a segment file " + path);
+            }
+            int version = bb.getInt(footer + 16);
+            if(version != SegmentWriter.VERSION) {
+                throw new IOException("Unsupported segment version " + version + " in " + path);
+            }
+            long indexOffset = bb.getLong(footer);
+            entries = bb.getInt(footer + 8);
+            if(entries < 0 || indexOffset < 0 || indexOffset + (long) entries * SegmentWriter.ENTRY_BYTES != footer) {
+                throw new IOException("Index of segment " + path + " is corrupted");
+            }
+            indexStart = (int) indexOffset;
+
+            ByteBuffer index = bb.duplicate();
+            index.limit(footer).position(indexStart);
+            CRC32 crc = new CRC32();
+            crc.update(index);
+            if((int) crc.getValue() != bb.getInt(footer + 12)) {
+                throw new IOException("Checksum of the index of segment " + path + " does not match");
+            }
+        } catch(IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the amount of blocks in the segment.
+     *
+     * @return Amount of blocks
+     */
+    public int size() {
+        return entries;
+    }
+
+    private int entry(int i) {
+        if(i < 0 || i >= entries) {
+            throw new IndexOutOfBoundsException("Block " + i + " is not in the segment of " + entries + " blocks");
+        }
+        return indexStart + i * SegmentWriter.ENTRY_BYTES;
+    }
+
+    /**
+     * @param i Index of the block, blocks are ordered by the series id and time
+     * @return Series id of the block
+     */
+    public long getSeriesId(int i) {
+        return bb.getLong(entry(i));
+    }
+
+    /**
+     * @param i Index of the block, blocks are ordered by the series id and time
+     * @return Timestamp of the first point in the block
+     */
+    public long getFirstTimestamp(int i) {
+        return bb.getLong(entry(i) + 8);
+    }
+
+    /**
+     * @param i Index of the block, blocks are ordered by the series id and time
+     * @return Timestamp of the last point in the block
+     */
+    public long getLastTimestamp(int i) {
+        return bb.getLong(entry(i) + 16);
+    }
+
+    /**
+     * Returns the block as a big endian slice of the mapping, the position is zero and the limit is the length of
+     * the block.
+     *
+     * @param i Index of the block, blocks are ordered by the series id and time
+     * @return Block without copying it
+     */
+    public ByteBuffer getBlock(int i) {
+        int entry = entry(i);
+        int offset = (int) bb.getLong(entry + 24);
+        int length = bb.getInt(entry + 32);
+        ByteBuffer block = mapped.duplicate();
+        block.limit(offset + length).position(offset);
+        return block.slice();
+    }
+
+    /**
+     * Returns a BitInput that reads the block straight from the mapping.
+     *
+     * @param i Index of the block, blocks are ordered by the series id and time
+     * @return BitInput of the block
+     */
+    public BitInput getBitInput(int i) {
+        return new ByteBufferBitInput(getBlock(i));
+    }
+
+    /**
+     * Finds the first block of the series that ends at or after the timestamp.
+     *
+     * @param seriesId Id of the series
+     * @param timestamp Timestamp
+     * @return Index of the block, -1 if the series has no points at or after the timestamp
+     */
+    public int indexOf(long seriesId, long timestamp) {
+        int low = 0;
+        int high = entries;
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            long midSeriesId = getSeriesId(mid);
+            if(midSeriesId < seriesId || (midSeriesId == seriesId && getLastTimestamp(mid) < timestamp)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low < entries && getSeriesId(low) == seriesId ? low : -1;
+    }
+
+    /**
+     * Returns the block of the series that contains the timestamp within its time range.
+     *
+     * @param seriesId Id of the series
+     * @param timestamp Timestamp
+     * @return Block without copying it, null if there is no such block
+     */
+    public ByteBuffer getBlock(long seriesId, long timestamp) {
+        int i = indexOf(seriesId, timestamp);
+        return i >= 0 && getFirstTimestamp(i) <= timestamp ? getBlock(i) : null;
+    }
+
+    /**
+     * Returns the blocks of the series that overlap the time range, in time order.
+     *
+     * @param seriesId Id of the series
+     * @param startTimestamp Start of the range, inclusive
+     * @param endTimestamp End of the range, inclusive
+     * @return Blocks without copying them
+     */
+    public List<ByteBuffer> getBlocks(long seriesId, long startTimestamp, long endTimestamp) {
+        List<ByteBuffer> blocks = new ArrayList<>();
+        int i = indexOf(seriesId, startTimestamp);
+        if(i < 0) {
+            return blocks;
+        }
+        for(; i < entries && getSeriesId(i) == seriesId && getFirstTimestamp(i) <= endTimestamp; i++) {
+            blocks.add(getBlock(i));
+        }
+        return blocks;
+    }
+
+    /**
+     * Closes the file. The mapping is released by the garbage collector once the blocks are no longer referenced.
+     *
+     * @throws IOException if closing fails
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,184 @@
+package fi.iki.yak.ts.compression.gorilla;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Appends sealed blocks of many series to a new segment file, which is read with the SegmentReader. The blocks are
+ * written sequentially as they are appended, the index of the blocks is written after them when the segment is
+ * closed.
+ *
+ * The index is sorted by the series id and the first timestamp of the block. Each entry is 36 little endian bytes:
+ * long series id, long first timestamp, long last timestamp, long offset of the block and int length of the block.
+ * The file ends with a footer of 24 bytes: long offset of the index, int amount of entries, int CRC32 checksum of the
+ * index, int version and int magic.
+ *
+ * The blocks of a series must be appended in time order without overlapping, which keeps the last timestamps of a
+ * series sorted as well and allows binary searching the index by both of them. A segment including its index is at
+ * most MAX_SIZE bytes, an append that would exceed it fails and the segment can still be closed.
+ */
+public class SegmentWriter implements Closeable {
+
+    public static final int MAGIC = 0x47455347; // "GSEG"
+    public static final int VERSION = 1;
+    public static final int ENTRY_BYTES = 36;
+    public static final int FOOTER_BYTES = 24;
+    /** Largest size of a segment file, the SegmentReader maps the file as a single ByteBuffer */
+    public static final long MAX_SIZE = Integer.MAX_VALUE;
+
+    private final FileChannel channel;
+    private final List<Entry> entries = new ArrayList<>();
+    private final Map<Long, Long> lastTimestamps = new HashMap<>();
+    private long position;
+    private boolean closed = false;
+
+    private static final class Entry {
+        private final long seriesId;
+        private final long firstTimestamp;
+        private final long lastTimestamp;
+        private final long offset;
+        private final int length;
+
+        private Entry(long seriesId, long firstTimestamp, long lastTimestamp, long offset, int length) {
+            this.seriesId = seriesId;
+            this.firstTimestamp = firstTimestamp;
+            this.lastTimestamp = lastTimestamp;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Creates a new segment file, the file must not exist.
+     *
+     * @param path Path of the segment file
+     * @throws IOException if the file can not be created
+     */
+    public SegmentWriter(Path path) throws IOException {
+        this(path, 0);
+    }
+
+    /**
+     * Creates a segment whose offsets start from the given position, only used to test the size limit.
+     */
+    SegmentWriter(Path path, long position) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        this.position = position;
+    }
+
+    /**
+     * Appends a container created by the BlockEncoder, the time range is read from its header.
+     *
+     * @param seriesId Id of the series
+     * @param container Container from its current position to the limit, the position is not changed
+     * @throws IOException if writing fails
+     */
+    public void append(long seriesId, ByteBuffer container) throws IOException {
+        BlockDecoder decoder = new BlockDecoder(container);
+        ByteBuffer block = container.duplicate();
+        block.limit(block.position() + decoder.length());
+        append(seriesId, decoder.getFirstTimestamp(), decoder.getLastTimestamp(), block);
+    }
+
+    /**
+     * Appends a block of any format, for example the ByteBuffer of the ByteBufferBitOutput of a GorillaCompressor.
+     *
+     * @param seriesId Id of the series
+     * @param firstTimestamp Timestamp of the first point in the block
+     * @param lastTimestamp Timestamp of the last point in the block
+     * @param block Block from its current position to the limit, the position is not changed
+     * @throws IOException if writing fails
+     */
+    public void append(long seriesId, long firstTimestamp, long lastTimestamp, ByteBuffer block) throws IOException {
+        if(closed) {
+            throw new IllegalStateException("Segment is closed");
+        }
+        if(firstTimestamp > lastTimestamp) {
+            throw new IllegalArgumentException("Block of series " + seriesId + " has no points");
+        }
+        Long previous = lastTimestamps.get(seriesId);
+        if(previous != null && firstTimestamp <= previous) {
+            throw new IllegalArgumentException("Block of series " + seriesId + " starting at " + firstTimestamp
+                    + " overlaps or precedes the previous block ending at " + previous);
+        }
+
+        ByteBuffer buf = block.duplicate();
+        int length = buf.remaining();
+        long size = position + length + (long) (entries.size() + 1) * ENTRY_BYTES + FOOTER_BYTES;
+        if(size > MAX_SIZE) {
+            throw new IOException("Block of series " + seriesId + " does not fit in the segment, the segment would be "
+                    + size + " bytes of the maximum " + MAX_SIZE);
+        }
+        write(buf);
+        entries.add(new Entry(seriesId, firstTimestamp, lastTimestamp, position, length));
+        lastTimestamps.put(seriesId, lastTimestamp);
+        position += length;
+    }
+
+    private void write(ByteBuffer buf) throws IOException {
+        while(buf.hasRemaining()) {
+            channel.write(buf);
+        }
+    }
+
+    /**
+     * Returns the amount of appended blocks.
+     *
+     * @return Amount of blocks
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Writes the index and the footer and closes the file.
+     *
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void close() throws IOException {
+        if(closed) {
+            return;
+        }
+        closed = true;
+        try {
+            entries.sort(Comparator.<Entry>comparingLong(e -> e.seriesId).thenComparingLong(e -> e.firstTimestamp));
+
+            ByteBuffer index = ByteBuffer.allocate(entries.size() * ENTRY_BYTES + FOOTER_BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            for(Entry entry : entries) {
+                index.putLong(entry.seriesId);
+                index.putLong(entry.firstTimestamp);
+                index.putLong(entry.lastTimestamp);
+                index.putLong(entry.offset);
+                index.putInt(entry.length);
+            }
+            CRC32 crc = new CRC32();
+            index.flip();
+            crc.update(index.duplicate());
+
+            index.limit(index.capacity()).position(entries.size() * ENTRY_BYTES);
+            index.putLong(position);
+            index.putInt(entries.size());
+            index.putInt((int) crc.getValue());
+            index.putInt(VERSION);
+            index.putInt(MAGIC);
+            index.flip();
+            write(index);
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package fi.iki.yak.ts.compression.gorilla;
+
+/**
+ * TimestampCompressor for the Gorilla encoding format. Stores the first timestamp as a delta to the block timestamp
+ * and the following ones as delta-of-deltas.
+ */
+public class TimestampCompressor {
+
+    private long storedTimestamp = 0;
+    private int storedDelta = 0;
+
+    private final long blockTimestamp;
+
+    public final static int FIRST_DELTA_BITS = 27;
+
+    private static int DELTAD_7_MASK = 0x02 << 7;
+    private static int DELTAD_9_MASK = 0x06 << 9;
+    private static int DELTAD_12_MASK = 0x0E << 12;
+
+    private final BitOutput out;
+
+    public TimestampCompressor(long blockTimestamp, BitOutput out) {
+        this.blockTimestamp = blockTimestamp;
+        this.out = out;
+    }
+
+    /**
+     * Stores the first timestamp of the block as a delta to the block timestamp.
+     *
+     * @param timestamp Timestamp which is inside the allowed time block (default 24 hours with millisecond precision)
+     */
+    public void writeFirst(long timestamp) {
+        storedDelta = (int) (timestamp - blockTimestamp);
+        storedTimestamp = timestamp;
+
+        out.writeBits(storedDelta, FIRST_DELTA_BITS);
+    }
+
+    /**
+     * Difference to the original Facebook paper, we store the first delta as 27 bits to allow
+     * millisecond accuracy for a one day block.
+     *
+     * Also, the timestamp delta-delta is not good for millisecond compressions..
+     *
+     * @param timestamp epoch
+     */
+    public void compressTimestamp(long timestamp) {
+
+        // a) Calculate the delta of delta
+        int newDelta = (int) (timestamp - storedTimestamp);
+        int deltaD = newDelta - storedDelta;
+
+        if(deltaD == 0) {
+            out.skipBit();
+        } else {
+            deltaD = GorillaCompressor.encodeZigZag32(deltaD);
+            deltaD--; // Increase by one in the decompressing phase as we have one free bit
+            int bitsRequired = 32 - Integer.numberOfLeadingZeros(deltaD); // Faster than highestSetBit
+
+            // Turns to inlineable tableswitch
+            switch(bitsRequired) {
+                case 1:
+                case 2:
+                case 3:
+                case 4:
+                case 5:
+                case 6:
+                case 7:
+                    deltaD |= DELTAD_7_MASK;
+                    out.writeBits(deltaD, 9);
+                    break;
+                case 8:
+                case 9:
+                    deltaD |= DELTAD_9_MASK;
+                    out.writeBits(deltaD, 12);
+                    break;
+                case 10:
+                case 11:
+                case 12:
+                    out.writeBits(deltaD | DELTAD_12_MASK, 16);
+                    break;
+                default:
+                    out.writeBits(0x0F, 4); // Store '1111'
+                    out.writeBits(deltaD, 32); // Store delta using 32 bits
+                    break;
+            }
+            storedDelta = newDelta;
+        }
+
+        storedTimestamp = timestamp;
+    }
+
+    /**
+     * Writes the end of stream marker, a delta-of-delta that can't be created by compressTimestamp and also
+     * can't be a valid first delta.
+     */
+    public void writeEndOfStream() {
+        out.writeBits(0x0F, 4);
+        out.writeBits(0xFFFFFFFF, 32);
+    }
+}
@@ -0,0 +1,114 @@
+package fi.iki.yak.ts.compression.gorilla;
+
+/**
+ * Timestamp decompressor for Gorilla encoded timestamps
+ */
+public class TimestampDecompressor {
+    private long storedTimestamp = 0;
+    private long storedDelta = 0;
+
+    private final long blockTimestamp;
+
+    private final BitInput in;
+
+    public TimestampDecompressor(long blockTimestamp, BitInput input) {
+        this.blockTimestamp = blockTimestamp;
+        this.in = input;
+    }
+
+    /**
+     * Reads the first timestamp of the block, available from getTimestamp()
+     *
+     * @return false if the end of stream marker was read instead
+     */
+    public boolean readFirst() {
+        storedDelta = in.getLong(TimestampCompressor.FIRST_DELTA_BITS);
+        if(storedDelta == (1<<27) - 1) {
+            return false;
+        }
+        storedTimestamp = blockTimestamp + storedDelta;
+        return true;
+    }
+
+    /**
+     * Reads the first timestamp of a framed block, which has no end of stream marker.
+     *
+     * @return First timestamp
+     */
+    public long readFirstTimestamp() {
+        storedDelta = in.getLong(TimestampCompressor.FIRST_DELTA_BITS);
+        storedTimestamp = blockTimestamp + storedDelta;
+        return storedTimestamp;
+    }
+
+    /**
+     * Reads the next timestamp of a framed block, which has no end of stream marker.
+     *
+     * @return Next timestamp
+     */
+    public long readNextTimestamp() {
+        int readInstruction = in.nextClearBit(4);
+        switch(readInstruction) {
+            case 0x00:
+                storedTimestamp = storedDelta + storedTimestamp;
+                return storedTimestamp;
+            case 0x02:
+                return addDeltaOfDelta(in.getLong(7));
+            case 0x06:
+                return addDeltaOfDelta(in.getLong(9));
+            case 0x0e:
+                return addDeltaOfDelta(in.getLong(12));
+            default:
+                return addDeltaOfDelta(in.getLong(32));
+        }
+    }
+
+    /**
+     * Reads the next timestamp of the block, available from getTimestamp()
+     *
+     * @return false if the end of stream marker was read instead
+     */
+    public boolean readNext() {
+        int readInstruction = in.nextClearBit(4);
+        long deltaDelta;
+
+        switch(readInstruction) {
+            case 0x00:
+                storedTimestamp = storedDelta + storedTimestamp;
+                return true;
+            case 0x02:
+                deltaDelta = in.getLong(7);
+                break;
+            case 0x06:
+                deltaDelta = in.getLong(9);
+                break;
+            case 0x0e:
+                deltaDelta = in.getLong(12);
+                break;
+            default:
+                deltaDelta = in.getLong(32);
+                // For storage save.. if this is the last available word, check if remaining bits are all 1
+                if ((int) deltaDelta == 0xFFFFFFFF) {
+                    // End of stream
+                    return false;
+                }
+                break;
+        }
+
+        addDeltaOfDelta(deltaDelta);
+        return true;
+    }
+
+    private long addDeltaOfDelta(long deltaDelta) {
+        deltaDelta++;
+        deltaDelta = GorillaDecompressor.decodeZigZag32((int) deltaDelta);
+        storedDelta = storedDelta + deltaDelta;
+
+        storedTimestamp = storedDelta + storedTimestamp;
+        return storedTimestamp;
+    }
+
+    public long getTimestamp() {
+        return storedTimestamp;
+    }
+}
@@ -0,0 +1,18 @@
+package fi.iki.yak.ts.compression.gorilla;
+
+/**
+ * Receives the decompressed points of a series without creating Pair or Value objects.
+ */
+@FunctionalInterface
+public interface TimestampValueConsumer {
+
+    /**
+     * Accepts the next point of the series. Value compressors without a timestamp stream give the index of the
+     * value in the block as timestamp.
+     *
+     * @param timestamp Timestamp of the point
+     * @param value Long value, use Double.longBitsToDouble(value) for doubles or
+     *              Float.intBitsToFloat((int) value) for floats
+     */
+    void accept(long timestamp, long value);
+}
@@ -8,7 +8,7 @@ import fi.iki.yak.ts.compression.gorilla.predictors.LastValuePredictor;
  *
  * @author Michael Burman
  */
-public class ValueCompressor {
+public class ValueCompressor implements ValueEncoder {
     private int storedLeadingZeros = Integer.MAX_VALUE;
     private int storedTrailingZeros = 0;
 
@@ -24,12 +24,12 @@ public class ValueCompressor {
         this.predictor = predictor;
     }
 
-    void writeFirst(long value) {
+    public void writeFirst(long value) {
         predictor.update(value);
         out.writeBits(value, 64);
     }
 
-    protected void compressValue(long value) {
+    public void compressValue(long value) {
         // In original Gorilla, Last-Value predictor is used
         long diff = predictor.predict() ^ value;
         predictor.update(value);
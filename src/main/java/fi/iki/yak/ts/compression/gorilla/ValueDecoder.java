@@ -0,0 +1,21 @@
+package fi.iki.yak.ts.compression.gorilla;
+
+/**
+ * Reads the values written by the matching ValueEncoder, see {@link ValueEncoder}.
+ */
+public interface ValueDecoder {
+
+    /**
+     * Reads the first value of the block.
+     *
+     * @return Long value or bits of the double value
+     */
+    long readFirst();
+
+    /**
+     * Reads the next value of the block.
+     *
+     * @return Long value or bits of the double value
+     */
+    long nextValue();
+}
@@ -7,7 +7,7 @@ import fi.iki.yak.ts.compression.gorilla.predictors.LastValuePredictor;
  *
  * @author Michael Burman
  */
-public class ValueDecompressor {
+public class ValueDecompressor implements ValueDecoder {
     private final BitInput in;
     private final Predictor predictor;
 
@@ -50,6 +50,9 @@ public class ValueDecompressor {
                 predictor.update(value);
                 return value;
         }
-        return predictor.predict();
+        // Same value as predicted, the predictor still needs to see it as the compressor updates it as well
+        long value = predictor.predict();
+        predictor.update(value);
+        return value;
     }
 }
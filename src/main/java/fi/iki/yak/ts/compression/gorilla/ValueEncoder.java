@@ -0,0 +1,23 @@
+package fi.iki.yak.ts.compression.gorilla;
+
+/**
+ * Value encoding of the GorillaCompressor. The timestamps are written by the GorillaCompressor and each value is
+ * written right after its timestamp to the same BitOutput, so the encoder must be read back with the matching
+ * ValueDecoder.
+ */
+public interface ValueEncoder {
+
+    /**
+     * Writes the first value of the block.
+     *
+     * @param value Long value or bits of the double value
+     */
+    void writeFirst(long value);
+
+    /**
+     * Writes the next value of the block.
+     *
+     * @param value Long value or bits of the double value
+     */
+    void compressValue(long value);
+}
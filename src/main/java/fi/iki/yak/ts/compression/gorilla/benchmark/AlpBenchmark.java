@@ -0,0 +1,125 @@
+package fi.iki.yak.ts.compression.gorilla.benchmark;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.util.zip.GZIPInputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fi.iki.yak.ts.compression.gorilla.AlpCompressor;
+import fi.iki.yak.ts.compression.gorilla.AlpDecompressor;
+import fi.iki.yak.ts.compression.gorilla.Compressor;
+import fi.iki.yak.ts.compression.gorilla.Decompressor;
+import fi.iki.yak.ts.compression.gorilla.LongArrayInput;
+import fi.iki.yak.ts.compression.gorilla.LongArrayOutput;
+
+/**
+ * Encoding and bulk decoding throughput of the ALP codec compared to the values only Gorilla Compressor on the Basel
+ * datasets, run from the project directory. Both decode to a double array. Values are 8 bytes uncompressed, so MB/s
+ * is the score in ops/s multiplied by 8e-6.
+ */
+@BenchmarkMode(Mode.Throughput)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class AlpBenchmark {
+
+    private static final int VALUES = 100000;
+
+    @State(Scope.Benchmark)
+    public static class DataGenerator {
+
+        @Param({"src/test/resources/basel-temp.csv.gz", "src/test/resources/basel-wind-speed.csv.gz"})
+        public String dataset;
+
+        public double[] values;
+
+        public long[] gorillaArray;
+        public ByteBuffer alpBuffer;
+
+        public double[] decoded;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            values = new double[VALUES];
+            try(BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(new FileInputStream(dataset)), "UTF-8"))) {
+                for(int i = 0; i < VALUES; i++) {
+                    values[i] = Double.parseDouble(reader.readLine().split(",")[2]);
+                }
+            }
+
+            gorillaArray = encodeGorilla(this).getLongArray();
+            alpBuffer = encodeAlp(this).getByteBuffer();
+            alpBuffer.flip();
+            decoded = new double[VALUES];
+
+            System.out.println();
+            System.out.println(String.format("Gorilla %s: %.2f bits/value", dataset,
+                    gorillaArray.length * (double) Long.SIZE / VALUES));
+            System.out.println(String.format("ALP %s: %.2f bits/value", dataset,
+                    alpBuffer.remaining() * (double) Byte.SIZE / VALUES));
+        }
+    }
+
+    private static LongArrayOutput encodeGorilla(DataGenerator dg) {
+        LongArrayOutput output = new LongArrayOutput(VALUES);
+        Compressor c = new Compressor(output);
+        for(int i = 0; i < VALUES; i++) {
+            c.addValue(dg.values[i]);
+        }
+        c.close();
+        return output;
+    }
+
+    private static AlpCompressor encodeAlp(DataGenerator dg) {
+        AlpCompressor c = new AlpCompressor(VALUES);
+        for(int i = 0; i < VALUES; i++) {
+            c.addValue(dg.values[i]);
+        }
+        c.close();
+        return c;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public LongArrayOutput encodingGorilla(DataGenerator dg) {
+        return encodeGorilla(dg);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public AlpCompressor encodingAlp(DataGenerator dg) {
+        return encodeAlp(dg);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public double[] decodingGorilla(DataGenerator dg) {
+        Decompressor.decode(new LongArrayInput(dg.gorillaArray),
+                (index, value) -> dg.decoded[(int) index] = Double.longBitsToDouble(value));
+        return dg.decoded;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public double[] decodingAlp(DataGenerator dg) {
+        new AlpDecompressor(dg.alpBuffer).decode(dg.decoded);
+        return dg.decoded;
+    }
+}
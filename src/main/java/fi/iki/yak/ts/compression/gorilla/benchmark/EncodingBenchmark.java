@@ -6,6 +6,7 @@ import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.LongStream;
 
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
@@ -27,6 +28,7 @@ import fi.iki.yak.ts.compression.gorilla.Compressor;
 import fi.iki.yak.ts.compression.gorilla.Decompressor;
 import fi.iki.yak.ts.compression.gorilla.GorillaCompressor;
 import fi.iki.yak.ts.compression.gorilla.GorillaDecompressor;
+import fi.iki.yak.ts.compression.gorilla.LongArrayAccumulatorOutput;
 import fi.iki.yak.ts.compression.gorilla.LongArrayInput;
 import fi.iki.yak.ts.compression.gorilla.LongArrayOutput;
 import fi.iki.yak.ts.compression.gorilla.Pair;
@@ -54,7 +56,9 @@ public class EncodingBenchmark {
         public long[] uncompressedTimestamps;
         public long[] uncompressedValues;
         public double[] uncompressedDoubles;
+        public long[] interleavedPairs;
         public long[] compressedArray;
+        public ByteBuffer compressedGorillaBuffer;
 
         public ByteBuffer uncompressedBuffer;
         public ByteBuffer compressedBuffer;
@@ -70,6 +74,7 @@ public class EncodingBenchmark {
             uncompressedTimestamps = new long[amountOfPoints];
             uncompressedDoubles = new double[amountOfPoints];
             uncompressedValues = new long[amountOfPoints];
+            interleavedPairs = new long[amountOfPoints * 2];
 
             insertList = new ArrayList<>(amountOfPoints);
 
@@ -84,6 +89,8 @@ public class EncodingBenchmark {
                 uncompressedTimestamps[i] = now;
                 uncompressedDoubles[i] = i;
                 uncompressedValues[i] = i;
+                interleavedPairs[2*i] = now;
+                interleavedPairs[2*i + 1] = Double.doubleToRawLongBits(i);
                 pairs.add(new Pair(now, i));
 //                bb.putLong(i);
             }
@@ -115,6 +122,11 @@ public class EncodingBenchmark {
             compressedBuffer = byteBuffer;
 
             compressedArray = arrayOutput.getLongArray();
+
+            // Same stream as the long array, not written through a ByteBufferBitOutput to keep the
+            // GorillaCompressor call sites monomorphic in the encoding benchmarks
+            compressedGorillaBuffer = ByteBuffer.allocateDirect(compressedArray.length * Long.BYTES);
+            compressedGorillaBuffer.asLongBuffer().put(compressedArray);
         }
     }
 
@@ -144,6 +156,17 @@ public class EncodingBenchmark {
         }
     }
 
+    @Benchmark
+    @OperationsPerInvocation(100000)
+    public void decodingCursorBenchmark(DataGenerator dg, Blackhole bh) throws Exception {
+        ByteBuffer duplicate = dg.compressedBuffer.duplicate();
+        ByteBufferBitInput input = new ByteBufferBitInput(duplicate);
+        Decompressor d = new Decompressor(input);
+        while(d.advance()) {
+            bh.consume(d.currentDouble());
+        }
+    }
+
     @Benchmark
     @OperationsPerInvocation(100000)
     public void encodingGorillaBenchmark(DataGenerator dg) {
@@ -168,15 +191,39 @@ public class EncodingBenchmark {
         c.close();
     }
 
-//    @Benchmark
-//    @OperationsPerInvocation(100000)
-//    public void encodingGorillaStreamBenchmark(DataGenerator dg) {
-//        LongArrayOutput output = new LongArrayOutput();
-//        GorillaCompressor c = new GorillaCompressor(dg.blockStart, output);
-//
-//        c.compressLongStream(dg.pairs.stream());
-//        c.close();
-//    }
+    @Benchmark
+    @OperationsPerInvocation(100000)
+    public void encodingGorillaAccumulatorBenchmark(DataGenerator dg) {
+        LongArrayAccumulatorOutput output = new LongArrayAccumulatorOutput();
+        GorillaCompressor c = new GorillaCompressor(dg.blockStart, output);
+
+        for(int j = 0; j < dg.amountOfPoints; j++) {
+            c.addValue(dg.uncompressedTimestamps[j], dg.uncompressedDoubles[j]);
+        }
+        c.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(100000)
+    public void encodingGorillaByteBufferBenchmark(DataGenerator dg) {
+        ByteBufferBitOutput output = new ByteBufferBitOutput();
+        GorillaCompressor c = new GorillaCompressor(dg.blockStart, output);
+
+        for(int j = 0; j < dg.amountOfPoints; j++) {
+            c.addValue(dg.uncompressedTimestamps[j], dg.uncompressedDoubles[j]);
+        }
+        c.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(100000)
+    public void encodingGorillaStreamBenchmark(DataGenerator dg) {
+        LongArrayOutput output = new LongArrayOutput();
+        GorillaCompressor c = new GorillaCompressor(dg.blockStart, output);
+
+        c.compressLongStream(LongStream.of(dg.interleavedPairs));
+        c.close();
+    }
 
     @Benchmark
     @OperationsPerInvocation(100000)
@@ -188,4 +235,33 @@ public class EncodingBenchmark {
             bh.consume(pair);
         }
     }
+
+    @Benchmark
+    @OperationsPerInvocation(100000)
+    public void decodingGorillaByteBufferBenchmark(DataGenerator dg, Blackhole bh) throws Exception {
+        ByteBufferBitInput input = new ByteBufferBitInput(dg.compressedGorillaBuffer.duplicate());
+        GorillaDecompressor d = new GorillaDecompressor(input);
+        Pair pair;
+        while((pair = d.readPair()) != null) {
+            bh.consume(pair);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(100000)
+    public void decodingGorillaStreamBenchmark(DataGenerator dg, Blackhole bh) throws Exception {
+        LongArrayInput input = new LongArrayInput(dg.compressedArray);
+        GorillaDecompressor d = new GorillaDecompressor(input);
+        d.longStream().forEach(bh::consume);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(100000)
+    public void decodingGorillaConsumerBenchmark(DataGenerator dg, Blackhole bh) throws Exception {
+        LongArrayInput input = new LongArrayInput(dg.compressedArray);
+        GorillaDecompressor.decode(input, (timestamp, value) -> {
+            bh.consume(timestamp);
+            bh.consume(value);
+        });
+    }
 }
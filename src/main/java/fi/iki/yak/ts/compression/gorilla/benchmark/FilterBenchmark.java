@@ -0,0 +1,166 @@
+package fi.iki.yak.ts.compression.gorilla.benchmark;
+
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fi.iki.yak.ts.compression.gorilla.ByteBufferBitOutput;
+import gr.aueb.compression.gorilla.PmcMRCompressor;
+import gr.aueb.compression.gorilla.PmcMREncoder;
+import gr.aueb.compression.gorilla.PmcMeanEncoder;
+import gr.aueb.compression.gorilla.PolynomialCompressor;
+import gr.aueb.compression.gorilla.PolynomialFilterEncoder;
+import gr.aueb.compression.gorilla.SlideFilterEncoder;
+import gr.aueb.compression.gorilla.SwingFilterCompressor;
+import gr.aueb.compression.gorilla.SwingFilterEncoder;
+
+/**
+ * Encoding throughput of the model based lossy filters. The compression ratio of each filter on the benchmark data
+ * is printed once per trial, the ratios on the Basel datasets are printed by CompressTest. Each filter has its own
+ * loop to keep the encoder call sites monomorphic.
+ */
+@BenchmarkMode(Mode.Throughput)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class FilterBenchmark {
+
+    private static final int POINTS = 100000;
+
+    @State(Scope.Benchmark)
+    public static class DataGenerator {
+
+        @Param({"0.5"})
+        public float epsilon;
+
+        public long[] timestamps;
+        public float[] values;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            // Daily temperature like curve with noise
+            Random random = new Random(1);
+            timestamps = new long[POINTS];
+            values = new float[POINTS];
+            for(int i = 0; i < POINTS; i++) {
+                timestamps[i] = i;
+                values[i] = (float) (10 * Math.sin(i * 2 * Math.PI / 1440) + random.nextGaussian() * 0.2);
+            }
+
+            System.out.println();
+            printRatio("PMC-MR", encodePmcMR(this));
+            printRatio("PMC-Mean", encodePmcMean(this));
+            printRatio("Swing", encodeSwing(this));
+            printRatio("Slide", encodeSlide(this));
+            printRatio("Polynomial-2", encodePolynomial(this));
+        }
+
+        private void printRatio(String filter, ByteBufferBitOutput output) {
+            double bits = output.getByteBuffer().position() * (double) Byte.SIZE;
+            System.out.println(String.format("%s, error %f: %.2f bits/value, ratio to floats %.2f", filter, epsilon,
+                    bits / POINTS, (POINTS * (double) Float.SIZE) / bits));
+        }
+    }
+
+    private static ByteBufferBitOutput encodePmcMR(DataGenerator dg) {
+        ByteBufferBitOutput output = new ByteBufferBitOutput();
+        PmcMRCompressor compressor = new PmcMRCompressor(0, output);
+        PmcMREncoder encoder = new PmcMREncoder(dg.epsilon, compressor);
+        for(int i = 0; i < POINTS; i++) {
+            encoder.add(dg.timestamps[i], dg.values[i]);
+        }
+        encoder.close();
+        compressor.close();
+        return output;
+    }
+
+    private static ByteBufferBitOutput encodePmcMean(DataGenerator dg) {
+        ByteBufferBitOutput output = new ByteBufferBitOutput();
+        PmcMRCompressor compressor = new PmcMRCompressor(0, output);
+        PmcMeanEncoder encoder = new PmcMeanEncoder(dg.epsilon, compressor);
+        for(int i = 0; i < POINTS; i++) {
+            encoder.add(dg.timestamps[i], dg.values[i]);
+        }
+        encoder.close();
+        compressor.close();
+        return output;
+    }
+
+    private static ByteBufferBitOutput encodeSwing(DataGenerator dg) {
+        ByteBufferBitOutput output = new ByteBufferBitOutput();
+        SwingFilterCompressor compressor = new SwingFilterCompressor(0, output);
+        SwingFilterEncoder encoder = new SwingFilterEncoder(dg.epsilon, compressor);
+        for(int i = 0; i < POINTS; i++) {
+            encoder.add(dg.timestamps[i], dg.values[i]);
+        }
+        encoder.close();
+        compressor.close();
+        return output;
+    }
+
+    private static ByteBufferBitOutput encodeSlide(DataGenerator dg) {
+        ByteBufferBitOutput output = new ByteBufferBitOutput();
+        SwingFilterCompressor compressor = new SwingFilterCompressor(0, output);
+        SlideFilterEncoder encoder = new SlideFilterEncoder(dg.epsilon, compressor);
+        for(int i = 0; i < POINTS; i++) {
+            encoder.add(dg.timestamps[i], dg.values[i]);
+        }
+        encoder.close();
+        compressor.close();
+        return output;
+    }
+
+    private static ByteBufferBitOutput encodePolynomial(DataGenerator dg) {
+        ByteBufferBitOutput output = new ByteBufferBitOutput();
+        PolynomialCompressor compressor = new PolynomialCompressor(0, 2, output);
+        PolynomialFilterEncoder encoder = new PolynomialFilterEncoder(2, dg.epsilon, compressor);
+        for(int i = 0; i < POINTS; i++) {
+            encoder.add(dg.timestamps[i], dg.values[i]);
+        }
+        encoder.close();
+        compressor.close();
+        return output;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public ByteBufferBitOutput encodingPmcMRBenchmark(DataGenerator dg) {
+        return encodePmcMR(dg);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public ByteBufferBitOutput encodingPmcMeanBenchmark(DataGenerator dg) {
+        return encodePmcMean(dg);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public ByteBufferBitOutput encodingSwingBenchmark(DataGenerator dg) {
+        return encodeSwing(dg);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public ByteBufferBitOutput encodingSlideBenchmark(DataGenerator dg) {
+        return encodeSlide(dg);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public ByteBufferBitOutput encodingPolynomialBenchmark(DataGenerator dg) {
+        return encodePolynomial(dg);
+    }
+}
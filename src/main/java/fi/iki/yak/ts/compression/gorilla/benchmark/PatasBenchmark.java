@@ -0,0 +1,145 @@
+package fi.iki.yak.ts.compression.gorilla.benchmark;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.util.zip.GZIPInputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fi.iki.yak.ts.compression.gorilla.GorillaCompressor;
+import fi.iki.yak.ts.compression.gorilla.GorillaDecompressor;
+import fi.iki.yak.ts.compression.gorilla.LongArrayInput;
+import fi.iki.yak.ts.compression.gorilla.LongArrayOutput;
+import fi.iki.yak.ts.compression.gorilla.PatasCompressor;
+import fi.iki.yak.ts.compression.gorilla.PatasDecompressor;
+
+/**
+ * Bulk decoding throughput of the byte aligned Patas blocks compared to the Gorilla blocks on the Basel datasets,
+ * run from the project directory. Both decode to arrays of timestamps and values. Points are 16 bytes uncompressed,
+ * so MB/s is the score in ops/s multiplied by 16e-6.
+ */
+@BenchmarkMode(Mode.Throughput)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class PatasBenchmark {
+
+    private static final int POINTS = 100000;
+
+    @State(Scope.Benchmark)
+    public static class DataGenerator {
+
+        @Param({"src/test/resources/basel-temp.csv.gz", "src/test/resources/basel-wind-speed.csv.gz"})
+        public String dataset;
+
+        public long blockStart = 1500000000000L;
+        public long[] timestamps;
+        public double[] values;
+
+        public long[] gorillaArray;
+        public ByteBuffer patasBuffer;
+
+        public long[] decodedTimestamps;
+        public double[] decodedValues;
+        public long[] decodedLongs;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            timestamps = new long[POINTS];
+            values = new double[POINTS];
+            try(BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(new FileInputStream(dataset)), "UTF-8"))) {
+                for(int i = 0; i < POINTS; i++) {
+                    timestamps[i] = blockStart + (i + 1) * 60000L;
+                    values[i] = Double.parseDouble(reader.readLine().split(",")[2]);
+                }
+            }
+
+            gorillaArray = encodeGorilla(this).getLongArray();
+            PatasCompressor patas = encodePatas(this);
+            patasBuffer = patas.getByteBuffer();
+            patasBuffer.flip();
+
+            decodedTimestamps = new long[POINTS];
+            decodedValues = new double[POINTS];
+            decodedLongs = new long[POINTS];
+
+            System.out.println();
+            System.out.println(String.format("Gorilla %s: %.2f bits/point", dataset,
+                    gorillaArray.length * (double) Long.SIZE / POINTS));
+            System.out.println(String.format("Patas %s: %.2f bits/point", dataset,
+                    patasBuffer.remaining() * (double) Byte.SIZE / POINTS));
+        }
+    }
+
+    private static LongArrayOutput encodeGorilla(DataGenerator dg) {
+        LongArrayOutput output = new LongArrayOutput(POINTS);
+        GorillaCompressor c = new GorillaCompressor(dg.blockStart, output);
+        for(int i = 0; i < POINTS; i++) {
+            c.addValue(dg.timestamps[i], dg.values[i]);
+        }
+        c.close();
+        return output;
+    }
+
+    private static PatasCompressor encodePatas(DataGenerator dg) {
+        PatasCompressor c = new PatasCompressor(dg.blockStart, POINTS);
+        for(int i = 0; i < POINTS; i++) {
+            c.addValue(dg.timestamps[i], dg.values[i]);
+        }
+        c.close();
+        return c;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public LongArrayOutput encodingGorilla(DataGenerator dg) {
+        return encodeGorilla(dg);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public PatasCompressor encodingPatas(DataGenerator dg) {
+        return encodePatas(dg);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public double[] decodingGorilla(DataGenerator dg) {
+        int[] index = { 0 };
+        GorillaDecompressor.decode(new LongArrayInput(dg.gorillaArray), (timestamp, value) -> {
+            dg.decodedTimestamps[index[0]] = timestamp;
+            dg.decodedValues[index[0]++] = Double.longBitsToDouble(value);
+        });
+        return dg.decodedValues;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public double[] decodingPatas(DataGenerator dg) {
+        new PatasDecompressor(dg.patasBuffer).decode(dg.decodedTimestamps, dg.decodedValues);
+        return dg.decodedValues;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public long[] decodingPatasLong(DataGenerator dg) {
+        new PatasDecompressor(dg.patasBuffer).decode(dg.decodedTimestamps, dg.decodedLongs);
+        return dg.decodedLongs;
+    }
+}
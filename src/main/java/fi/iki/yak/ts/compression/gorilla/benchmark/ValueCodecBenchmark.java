@@ -0,0 +1,212 @@
+package fi.iki.yak.ts.compression.gorilla.benchmark;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.util.zip.GZIPInputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import fi.iki.yak.ts.compression.gorilla.BitOutput;
+import fi.iki.yak.ts.compression.gorilla.ByteBufferBitOutput;
+import fi.iki.yak.ts.compression.gorilla.Chimp128ValueCompressor;
+import fi.iki.yak.ts.compression.gorilla.Chimp128ValueDecompressor;
+import fi.iki.yak.ts.compression.gorilla.ChimpValueCompressor;
+import fi.iki.yak.ts.compression.gorilla.ChimpValueDecompressor;
+import fi.iki.yak.ts.compression.gorilla.ElfValueCompressor;
+import fi.iki.yak.ts.compression.gorilla.ElfValueDecompressor;
+import fi.iki.yak.ts.compression.gorilla.GorillaCompressor;
+import fi.iki.yak.ts.compression.gorilla.GorillaDecompressor;
+import fi.iki.yak.ts.compression.gorilla.LongArrayInput;
+import fi.iki.yak.ts.compression.gorilla.LongArrayOutput;
+import fi.iki.yak.ts.compression.gorilla.Pair;
+
+/**
+ * Encoding and decoding throughput of the Gorilla, Elf, Chimp and Chimp128 value codecs on the Basel datasets, run from
+ * the project directory. The size of each codec is printed once per trial. Points are 16 bytes uncompressed, so
+ * MB/s is the score in ops/s multiplied by 16e-6. Each codec has its own loop to keep the call sites monomorphic.
+ */
+@BenchmarkMode(Mode.Throughput)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class ValueCodecBenchmark {
+
+    private static final int POINTS = 100000;
+
+    @State(Scope.Benchmark)
+    public static class DataGenerator {
+
+        @Param({"src/test/resources/basel-temp.csv.gz", "src/test/resources/basel-wind-speed.csv.gz"})
+        public String dataset;
+
+        public long blockStart = 1500000000000L;
+        public long[] timestamps;
+        public double[] values;
+
+        public long[] gorillaArray;
+        public long[] elfArray;
+        public long[] chimpArray;
+        public long[] chimp128Array;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            timestamps = new long[POINTS];
+            values = new double[POINTS];
+            try(BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(new FileInputStream(dataset)), "UTF-8"))) {
+                for(int i = 0; i < POINTS; i++) {
+                    timestamps[i] = blockStart + (i + 1) * 60000L;
+                    values[i] = Double.parseDouble(reader.readLine().split(",")[2]);
+                }
+            }
+
+            gorillaArray = encodeGorilla(this, new LongArrayOutput(POINTS)).getLongArray();
+            elfArray = encodeElf(this, new LongArrayOutput(POINTS)).getLongArray();
+            chimpArray = encodeChimp(this, new LongArrayOutput(POINTS)).getLongArray();
+            chimp128Array = encodeChimp128(this, new LongArrayOutput(POINTS)).getLongArray();
+
+            System.out.println();
+            printRatio("Gorilla", gorillaArray);
+            printRatio("Elf", elfArray);
+            printRatio("Chimp", chimpArray);
+            printRatio("Chimp128", chimp128Array);
+        }
+
+        private void printRatio(String codec, long[] compressed) {
+            double bits = compressed.length * (double) Long.SIZE;
+            System.out.println(String.format("%s %s: %.2f bits/point, ratio %.2f", codec, dataset, bits / POINTS,
+                    (POINTS * 2.0 * Long.SIZE) / bits));
+        }
+    }
+
+    private static <T extends BitOutput> T encodeGorilla(DataGenerator dg, T output) {
+        GorillaCompressor c = new GorillaCompressor(dg.blockStart, output);
+        for(int i = 0; i < POINTS; i++) {
+            c.addValue(dg.timestamps[i], dg.values[i]);
+        }
+        c.close();
+        return output;
+    }
+
+    private static <T extends BitOutput> T encodeElf(DataGenerator dg, T output) {
+        GorillaCompressor c = new GorillaCompressor(dg.blockStart, output, new ElfValueCompressor(output));
+        for(int i = 0; i < POINTS; i++) {
+            c.addValue(dg.timestamps[i], dg.values[i]);
+        }
+        c.close();
+        return output;
+    }
+
+    private static <T extends BitOutput> T encodeChimp(DataGenerator dg, T output) {
+        GorillaCompressor c = new GorillaCompressor(dg.blockStart, output, new ChimpValueCompressor(output));
+        for(int i = 0; i < POINTS; i++) {
+            c.addValue(dg.timestamps[i], dg.values[i]);
+        }
+        c.close();
+        return output;
+    }
+
+    private static <T extends BitOutput> T encodeChimp128(DataGenerator dg, T output) {
+        GorillaCompressor c = new GorillaCompressor(dg.blockStart, output, new Chimp128ValueCompressor(output));
+        for(int i = 0; i < POINTS; i++) {
+            c.addValue(dg.timestamps[i], dg.values[i]);
+        }
+        c.close();
+        return output;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public LongArrayOutput encodingGorilla(DataGenerator dg) {
+        return encodeGorilla(dg, new LongArrayOutput());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public LongArrayOutput encodingElf(DataGenerator dg) {
+        return encodeElf(dg, new LongArrayOutput());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public LongArrayOutput encodingChimp(DataGenerator dg) {
+        return encodeChimp(dg, new LongArrayOutput());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public LongArrayOutput encodingChimp128(DataGenerator dg) {
+        return encodeChimp128(dg, new LongArrayOutput());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public ByteBuffer encodingChimpByteBuffer(DataGenerator dg) {
+        return encodeChimp(dg, new ByteBufferBitOutput()).getByteBuffer();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public ByteBuffer encodingChimp128ByteBuffer(DataGenerator dg) {
+        return encodeChimp128(dg, new ByteBufferBitOutput()).getByteBuffer();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public void decodingGorilla(DataGenerator dg, Blackhole bh) {
+        GorillaDecompressor d = new GorillaDecompressor(new LongArrayInput(dg.gorillaArray));
+        Pair pair;
+        while((pair = d.readPair()) != null) {
+            bh.consume(pair);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public void decodingElf(DataGenerator dg, Blackhole bh) {
+        LongArrayInput input = new LongArrayInput(dg.elfArray);
+        GorillaDecompressor d = new GorillaDecompressor(input, new ElfValueDecompressor(input));
+        Pair pair;
+        while((pair = d.readPair()) != null) {
+            bh.consume(pair);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public void decodingChimp(DataGenerator dg, Blackhole bh) {
+        LongArrayInput input = new LongArrayInput(dg.chimpArray);
+        GorillaDecompressor d = new GorillaDecompressor(input, new ChimpValueDecompressor(input));
+        Pair pair;
+        while((pair = d.readPair()) != null) {
+            bh.consume(pair);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public void decodingChimp128(DataGenerator dg, Blackhole bh) {
+        LongArrayInput input = new LongArrayInput(dg.chimp128Array);
+        GorillaDecompressor d = new GorillaDecompressor(input, new Chimp128ValueDecompressor(input));
+        Pair pair;
+        while((pair = d.readPair()) != null) {
+            bh.consume(pair);
+        }
+    }
+}
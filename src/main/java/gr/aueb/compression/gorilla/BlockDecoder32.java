@@ -0,0 +1,131 @@
+package gr.aueb.compression.gorilla;
+
+import java.nio.ByteBuffer;
+
+import fi.iki.yak.ts.compression.gorilla.BitInput;
+import fi.iki.yak.ts.compression.gorilla.BlockDecoder;
+import fi.iki.yak.ts.compression.gorilla.BlockEncoder;
+import fi.iki.yak.ts.compression.gorilla.ByteBufferBitInput;
+import fi.iki.yak.ts.compression.gorilla.TimestampDecompressor;
+
+/**
+ * Decompresses a container created by the BlockEncoder32. The header is verified by the BlockDecoder and the
+ * decompressor of the block is chosen by the codec in the header.
+ */
+public class BlockDecoder32 {
+
+	private final BlockDecoder container;
+
+	/**
+	 * Reads the container from the current position of the ByteBuffer, the position is not changed.
+	 *
+	 * @param buf Buffer of the container
+	 * @throws IllegalArgumentException if the buffer does not start with a valid container of a 32-bit codec or the
+	 * checksum does not match
+	 */
+	public BlockDecoder32(ByteBuffer buf) {
+		container = new BlockDecoder(buf);
+		if (!BlockEncoder.isCodec32(container.getCodec())) {
+			throw new IllegalArgumentException("Codec " + container.getCodec()
+					+ " is not a 32-bit codec, use the BlockDecoder");
+		}
+	}
+
+	/**
+	 * @return One of the 32-bit BlockEncoder CODEC constants
+	 */
+	public int getCodec() {
+		return container.getCodec();
+	}
+
+	/**
+	 * @return true if the values were stored with an error bound
+	 */
+	public boolean isLossy() {
+		return container.isLossy();
+	}
+
+	/**
+	 * Returns the amount of points in the block.
+	 *
+	 * @return Amount of points
+	 */
+	public int size() {
+		return container.size();
+	}
+
+	/**
+	 * @return Timestamp of the first point, Long.MAX_VALUE if the block is empty
+	 */
+	public long getFirstTimestamp() {
+		return container.getFirstTimestamp();
+	}
+
+	/**
+	 * @return Timestamp of the last point, Long.MIN_VALUE if the block is empty
+	 */
+	public long getLastTimestamp() {
+		return container.getLastTimestamp();
+	}
+
+	/**
+	 * Returns the length of the container in bytes, the next container of a store starts right after it.
+	 *
+	 * @return Length of the header and the compressed block
+	 */
+	public int length() {
+		return container.length();
+	}
+
+	/**
+	 * Decompresses the block to the arrays, which must have room for {@link #size()} points.
+	 *
+	 * @param timestamps Receives the timestamps
+	 * @param values Receives the values
+	 * @return Amount of decompressed points
+	 */
+	public int decode(long[] timestamps, float[] values) {
+		if (getCodec() == BlockEncoder.CODEC_GORILLA32) {
+			return new GorillaDecompressor32(new ByteBufferBitInput(container.getPayload())).decode(timestamps, values);
+		}
+		BitInput timestampInput = new ByteBufferBitInput(container.getTimestampPayload());
+		BitInput input = new ByteBufferBitInput(container.getValuePayload());
+		switch (getCodec()) {
+		case BlockEncoder.CODEC_COMPRESSOR32:
+		case BlockEncoder.CODEC_LOSSY32:
+			boolean framed = (container.getFlags() & BlockEncoder.FLAG_FRAMED) != 0;
+			Decompressor32 decompressor = new Decompressor32(input, framed);
+			int count = framed ? decompressor.decode(values) : decompressor.decode((index, value) -> {
+				values[(int) index] = Float.intBitsToFloat((int) value);
+			});
+			TimestampDecompressor timestampDecompressor = new TimestampDecompressor(timestampInput.getLong(64),
+					timestampInput);
+			for (int i = 0; i < count; i++) {
+				timestamps[i] = i == 0 ? timestampDecompressor.readFirstTimestamp()
+						: timestampDecompressor.readNextTimestamp();
+			}
+			return count;
+		case BlockEncoder.CODEC_PMC_MR:
+			return new DecompressorPmcMr(input).decode(timestampInput, timestamps, values);
+		case BlockEncoder.CODEC_SWING:
+			return new DecompressorSwingFilter(input).decode(timestampInput, timestamps, values);
+		case BlockEncoder.CODEC_POLYNOMIAL:
+			return new DecompressorPolynomial(input).decode(timestampInput, timestamps, values);
+		default:
+			return new DecompressorHybrid(input).decode(timestampInput, timestamps, values);
+		}
+	}
+
+	/**
+	 * Decompresses the container from the current position of the ByteBuffer.
+	 *
+	 * @param buf Buffer of the container
+	 * @param timestamps Receives the timestamps
+	 * @param values Receives the values
+	 * @return Amount of decompressed points
+	 */
+	public static int decode(ByteBuffer buf, long[] timestamps, float[] values) {
+		return new BlockDecoder32(buf).decode(timestamps, values);
+	}
+
+}
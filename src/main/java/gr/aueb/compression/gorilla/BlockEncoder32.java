@@ -0,0 +1,205 @@
+package gr.aueb.compression.gorilla;
+
+import java.nio.ByteBuffer;
+
+import fi.iki.yak.ts.compression.gorilla.BlockEncoder;
+import fi.iki.yak.ts.compression.gorilla.ByteBufferBitOutput;
+
+/**
+ * Compresses a block of float values with one of the 32-bit codecs and stores it in the container of the
+ * BlockEncoder, with the codec ids the BlockEncoder reserves for them. The container is read with the BlockDecoder32.
+ * The codecs other than GORILLA32 do not keep the timestamps of the points, they are stored in a
+ * TimestampStreamCompressor stream next to the values.
+ *
+ * The lossy codecs store every value within maxError. The LossyCompressor32 uses the largest power of two not above
+ * maxError as its error bound, the segment codecs use maxError as their epsilon.
+ */
+public class BlockEncoder32 {
+
+	/** Degree of the POLYNOMIAL codec if it is not given */
+	public static final int DEFAULT_DEGREE = 2;
+
+	private final int codec;
+	private final int points;
+	private final int degree;
+	private int flags = 0;
+
+	private int count = 0;
+	private long firstTimestamp = Long.MAX_VALUE;
+	private long lastTimestamp = Long.MIN_VALUE;
+
+	private final ByteBufferBitOutput output = new ByteBufferBitOutput();
+	private ByteBufferBitOutput timestampOutput;
+	private TimestampStreamCompressor timestampCompressor;
+	private Compressor32 compressor;
+	private GorillaCompressor32 gorillaCompressor;
+	private LossyCompressor32 lossyCompressor;
+	private SegmentEncoder segmentEncoder;
+	private PmcMRCompressor pmcMrCompressor;
+	private SwingFilterCompressor swingCompressor;
+	private PolynomialCompressor polynomialCompressor;
+	private HybridEncoder hybridEncoder;
+
+	private ByteBuffer bb;
+
+	/**
+	 * Creates an encoder for a block of unknown amount of points without an error bound. The COMPRESSOR32 and
+	 * LOSSY32 codecs can not store NaN values in such a block, as NaN is their end of stream marker.
+	 *
+	 * @param codec One of the 32-bit BlockEncoder CODEC constants
+	 * @param blockTimestamp Block timestamp
+	 */
+	public BlockEncoder32(int codec, long blockTimestamp) {
+		this(codec, blockTimestamp, -1, 0);
+	}
+
+	/**
+	 * @param codec One of the 32-bit BlockEncoder CODEC constants
+	 * @param blockTimestamp Block timestamp
+	 * @param points Amount of points that are added before close, negative if not known
+	 * @param maxError Maximum absolute error of the values, zero for the lossless codecs
+	 */
+	public BlockEncoder32(int codec, long blockTimestamp, int points, float maxError) {
+		this(codec, blockTimestamp, points, maxError, DEFAULT_DEGREE);
+	}
+
+	/**
+	 * @param codec One of the 32-bit BlockEncoder CODEC constants
+	 * @param blockTimestamp Block timestamp
+	 * @param points Amount of points that are added before close, negative if not known
+	 * @param maxError Maximum absolute error of the values, zero for the lossless codecs
+	 * @param degree Degree of the polynomials of the POLYNOMIAL codec, otherwise ignored
+	 */
+	public BlockEncoder32(int codec, long blockTimestamp, int points, float maxError, int degree) {
+		if (!BlockEncoder.isCodec32(codec)) {
+			throw new IllegalArgumentException("Codec " + codec + " is not a 32-bit codec, use the BlockEncoder");
+		}
+		boolean lossless = codec == BlockEncoder.CODEC_COMPRESSOR32 || codec == BlockEncoder.CODEC_GORILLA32;
+		if (maxError != 0 && lossless) {
+			throw new IllegalArgumentException("Error bound is not supported by codec " + codec);
+		}
+		this.codec = codec;
+		this.points = points < 0 ? -1 : points;
+		this.degree = codec == BlockEncoder.CODEC_POLYNOMIAL ? degree : 0;
+		if (!lossless) {
+			flags |= BlockEncoder.FLAG_LOSSY;
+		}
+		if (BlockEncoder.hasTimestampStream(codec)) {
+			timestampOutput = new ByteBufferBitOutput();
+			timestampCompressor = new TimestampStreamCompressor(blockTimestamp, timestampOutput);
+		}
+
+		switch (codec) {
+		case BlockEncoder.CODEC_COMPRESSOR32:
+			compressor = this.points < 0 ? new Compressor32(output) : new Compressor32(output, this.points);
+			break;
+		case BlockEncoder.CODEC_GORILLA32:
+			gorillaCompressor = new GorillaCompressor32(blockTimestamp, output);
+			break;
+		case BlockEncoder.CODEC_LOSSY32:
+			lossyCompressor = new LossyCompressor32(output, Math.getExponent(maxError), false, this.points);
+			break;
+		case BlockEncoder.CODEC_PMC_MR:
+			pmcMrCompressor = new PmcMRCompressor(blockTimestamp, output);
+			segmentEncoder = new PmcMREncoder(maxError, pmcMrCompressor);
+			break;
+		case BlockEncoder.CODEC_SWING:
+			swingCompressor = new SwingFilterCompressor(blockTimestamp, output);
+			segmentEncoder = new SwingFilterEncoder(maxError, swingCompressor);
+			break;
+		case BlockEncoder.CODEC_POLYNOMIAL:
+			polynomialCompressor = new PolynomialCompressor(blockTimestamp, degree, output);
+			segmentEncoder = new PolynomialFilterEncoder(degree, maxError, polynomialCompressor);
+			break;
+		default:
+			hybridEncoder = new HybridEncoder(maxError, output);
+			segmentEncoder = hybridEncoder;
+			break;
+		}
+		if ((compressor != null || lossyCompressor != null) && this.points >= 0) {
+			flags |= BlockEncoder.FLAG_FRAMED;
+		}
+	}
+
+	/**
+	 * Adds a new value to the block. Note, values must be inserted in order.
+	 *
+	 * @param timestamp Timestamp which is inside the allowed time block
+	 * @param value next floating point value in the series
+	 */
+	public void addValue(long timestamp, float value) {
+		if (compressor != null) {
+			compressor.addValue(value);
+		} else if (gorillaCompressor != null) {
+			gorillaCompressor.addValue(timestamp, value);
+		} else if (lossyCompressor != null) {
+			lossyCompressor.addValue(value);
+		} else {
+			segmentEncoder.add(timestamp, value);
+		}
+		if (timestampCompressor != null) {
+			timestampCompressor.addTimestamp(timestamp);
+		}
+		if (count++ == 0) {
+			firstTimestamp = timestamp;
+		}
+		lastTimestamp = timestamp;
+	}
+
+	/**
+	 * Closes the block and writes the container, available from {@link #getByteBuffer()}.
+	 */
+	public void close() {
+		if (points >= 0 && count != points) {
+			throw new IllegalStateException("Block has " + count + " points, it was created for " + points);
+		}
+
+		if (compressor != null) {
+			compressor.close();
+		} else if (gorillaCompressor != null) {
+			gorillaCompressor.close();
+		} else if (lossyCompressor != null) {
+			lossyCompressor.close();
+		} else if (hybridEncoder != null) {
+			hybridEncoder.closeBlock();
+		} else {
+			segmentEncoder.close();
+			if (pmcMrCompressor != null) {
+				pmcMrCompressor.close();
+			} else if (swingCompressor != null) {
+				swingCompressor.close();
+			} else {
+				polynomialCompressor.close();
+			}
+		}
+		ByteBuffer payload = output.getByteBuffer();
+		payload.flip();
+		if (timestampCompressor != null) {
+			timestampCompressor.close();
+			ByteBuffer timestamps = timestampOutput.getByteBuffer();
+			timestamps.flip();
+			payload = BlockEncoder.payload(timestamps, payload);
+		}
+		bb = BlockEncoder.container(codec, BlockEncoder.PREDICTOR_NONE, flags, degree, count, firstTimestamp,
+				lastTimestamp, payload);
+	}
+
+	/**
+	 * Returns the amount of points added to the block.
+	 *
+	 * @return Amount of points
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Returns the container after the close, the position is at the end of the container.
+	 *
+	 * @return Little endian heap ByteBuffer
+	 */
+	public ByteBuffer getByteBuffer() {
+		return bb;
+	}
+
+}
@@ -15,6 +15,8 @@ public class Compressor32 {
     private int storedVal = 0;
     private boolean first = true;
     private int size;
+    private int points = -1;
+    private int count = 0;
 
 //    public final static short FIRST_DELTA_BITS = 27;
 
@@ -27,13 +29,31 @@ public class Compressor32 {
         size = 0;
     }
 
+    /**
+     * Creates a compressor for a framed block of the given amount of values. The amount is stored in front of the
+     * values instead of the NaN end of stream marker, so NaN values can be stored as well. The block is read with
+     * {@link Decompressor32#Decompressor32(fi.iki.yak.ts.compression.gorilla.BitInput, boolean)}.
+     *
+     * @param output Stream to write to
+     * @param points Amount of values that are added before close
+     */
+    public Compressor32(BitOutput output, int points) {
+        if(points < 0) {
+            throw new IllegalArgumentException("Amount of values must not be negative, was " + points);
+        }
+        out = output;
+        this.points = points;
+        out.writeBits(points, 32);
+        size = 32;
+    }
+
     /**
      * Adds a new long value to the series. Note, values must be inserted in order.
      *
-     * @param timestamp Timestamp which is inside the allowed time block (default 24 hours with millisecond precision)
      * @param value next floating point value in the series
      */
     public void addValue(int value) {
+        countValue();
         if(first) {
             writeFirst(value);
         } else {
@@ -44,10 +64,10 @@ public class Compressor32 {
     /**
      * Adds a new double value to the series. Note, values must be inserted in order.
      *
-     * @param timestamp Timestamp which is inside the allowed time block (default 24 hours with millisecond precision)
      * @param value next floating point value in the series
      */
     public void addValue(float value) {
+        countValue();
         if(first) {
             writeFirst(Float.floatToRawIntBits(value));
         } else {
@@ -62,11 +82,22 @@ public class Compressor32 {
         size += 32;
     }
 
+    private void countValue() {
+        if(count == points) {
+            throw new IllegalStateException("Block is full, it was created for " + points + " values");
+        }
+        count++;
+    }
+
     /**
      * Closes the block and writes the remaining stuff to the BitOutput.
      */
     public void close() {
-    	addValue(Float.NaN);
+        if(points < 0) {
+            addValue(Float.NaN);
+        } else if(count != points) {
+            throw new IllegalStateException("Block has " + count + " values, it was created for " + points);
+        }
         out.skipBit();
         out.flush();
     }
@@ -0,0 +1,12 @@
+package gr.aueb.compression.gorilla;
+
+/**
+ * Receives the finished constant segments of a filter. The segment covers the given amount of points between its
+ * initial and final timestamp, which are the timestamps of its first and last point.
+ */
+@FunctionalInterface
+public interface ConstantSegmentSink {
+
+	void accept(long initialTimestamp, long finalTimestamp, int points, float value);
+
+}
@@ -0,0 +1,39 @@
+package gr.aueb.compression.gorilla;
+
+import fi.iki.yak.ts.compression.gorilla.BitOutput;
+
+/**
+ * BitOutput that discards the bits and only counts them. Used to compare the cost of different encodings.
+ */
+public class CountingBitOutput implements BitOutput {
+
+	private long bits = 0;
+
+	@Override
+	public void writeBit() {
+		bits++;
+	}
+
+	@Override
+	public void skipBit() {
+		bits++;
+	}
+
+	@Override
+	public void writeBits(long value, int bits) {
+		this.bits += bits;
+	}
+
+	@Override
+	public void flush() {
+	}
+
+	public long getBits() {
+		return bits;
+	}
+
+	public void reset() {
+		bits = 0;
+	}
+
+}
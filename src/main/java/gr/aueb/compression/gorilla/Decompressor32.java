@@ -1,9 +1,11 @@
 package gr.aueb.compression.gorilla;
 
 import fi.iki.yak.ts.compression.gorilla.BitInput;
+import fi.iki.yak.ts.compression.gorilla.TimestampValueConsumer;
 
 /**
- * Decompresses a compressed stream created by the Compressor. Returns pairs of timestamp and floating point value.
+ * Decompresses a compressed stream created by the Compressor32. Returns the floating point values, see the
+ * GorillaDecompressor32 for blocks with timestamps.
  *
  * @author Michael Burman
  */
@@ -14,6 +16,8 @@ public class Decompressor32 {
     private int storedVal = 0;
     private boolean first = true;
     private boolean endOfStream = false;
+    private boolean framed = false;
+    private int remaining = 0;
 
     private BitInput in;
 
@@ -24,20 +28,138 @@ public class Decompressor32 {
         in = input;
     }
 
+    /**
+     * Creates a decompressor for a framed block if framed is true, see
+     * {@link Compressor32#Compressor32(fi.iki.yak.ts.compression.gorilla.BitOutput, int)}. Otherwise same as
+     * {@link #Decompressor32(BitInput)}.
+     *
+     * @param input Compressed values
+     * @param framed true if the block was created with the amount of values
+     */
+    public Decompressor32(BitInput input, boolean framed) {
+        in = input;
+        if(framed) {
+            this.framed = true;
+            this.remaining = (int) in.getLong(32);
+        }
+    }
+
+    /**
+     * Returns the amount of values that have not been read yet from a framed block.
+     *
+     * @return Amount of remaining values, -1 if the block is not framed
+     */
+    public int size() {
+        return framed ? remaining : -1;
+    }
+
     /**
      * Returns the next pair in the time series, if available.
      *
      * @return Pair if there's next value, null if series is done.
      */
     public Value readValue() {
-        next();
-        if(endOfStream) {
+        if(!advance()) {
             return null;
         }
         return new Value(storedVal);
     }
 
+    /**
+     * Moves to the next value in the series without creating any objects. The value is then available from
+     * {@link #currentFloat()} or {@link #currentBits()}.
+     *
+     * @return true if there's next value, false if series is done.
+     */
+    public boolean advance() {
+        next();
+        return !endOfStream;
+    }
+
+    /**
+     * @return Current value as float, valid after a successful {@link #advance()}
+     */
+    public float currentFloat() {
+        return Float.intBitsToFloat(storedVal);
+    }
+
+    /**
+     * @return Current value as int, valid after a successful {@link #advance()}
+     */
+    public int currentBits() {
+        return storedVal;
+    }
+
+    /**
+     * Decompresses the rest of the values and pushes them to the consumer. The index of the value in the block is
+     * given as the timestamp and the value is the int presentation of the float.
+     *
+     * @param consumer Receives indexes and values
+     * @return Amount of decompressed values
+     */
+    public int decode(TimestampValueConsumer consumer) {
+        int count = 0;
+        for(next(); !endOfStream; next()) {
+            consumer.accept(count++, storedVal);
+        }
+        return count;
+    }
+
+    /**
+     * Decompresses the rest of a framed block to the array, which must have room for {@link #size()} values.
+     *
+     * @param values Receives the values
+     * @return Amount of decompressed values
+     */
+    public int decode(float[] values) {
+        if(!framed) {
+            throw new IllegalStateException("Block is not framed, the amount of values is not known");
+        }
+        int count = remaining;
+        int i = 0;
+        if(first && count > 0) {
+            first = false;
+            storedVal = (int) in.getLong(32);
+            values[i++] = Float.intBitsToFloat(storedVal);
+        }
+        for(; i < count; i++) {
+            storedVal = decodeValue();
+            values[i] = Float.intBitsToFloat(storedVal);
+        }
+        remaining = 0;
+        endOfStream = true;
+        return count;
+    }
+
+    /**
+     * Decompresses all the values from the input, see {@link #decode(TimestampValueConsumer)}.
+     *
+     * @param input Compressed values
+     * @param consumer Receives indexes and values
+     * @return Amount of decompressed values
+     */
+    public static int decode(BitInput input, TimestampValueConsumer consumer) {
+        return new Decompressor32(input).decode(consumer);
+    }
+
     private void next() {
+        if (endOfStream) {
+            return;
+        }
+        if (framed) {
+            if (remaining == 0) {
+                endOfStream = true;
+                return;
+            }
+            remaining--;
+            if (first) {
+                first = false;
+                storedVal = (int) in.getLong(32);
+            } else {
+                storedVal = decodeValue();
+            }
+            return;
+        }
         if (first) {
         	first = false;
             storedVal = (int) in.getLong(32);
@@ -52,6 +174,15 @@ public class Decompressor32 {
     }
 
     private void nextValue() {
+        int value = decodeValue();
+        if (value == NAN_INT) {
+            endOfStream = true;
+        } else {
+            storedVal = value;
+        }
+    }
+
+    private int decodeValue() {
         // Read value
         if (in.readBit()) {
             // else -> same value as before
@@ -67,15 +198,9 @@ public class Decompressor32 {
             }
             int value = (int) in.getLong(32 - storedLeadingZeros - storedTrailingZeros);
             value <<= storedTrailingZeros;
-            value = storedVal ^ value;
-            if (value == NAN_INT) {
-            	endOfStream = true;
-            	return;
-            } else {
-            	storedVal = value;
-            }
-
+            return storedVal ^ value;
         }
+        return storedVal;
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,129 @@
+package gr.aueb.compression.gorilla;
+
+import fi.iki.yak.ts.compression.gorilla.BitInput;
+import fi.iki.yak.ts.compression.gorilla.TimestampDecompressor;
+
+/**
+ * Reads the segments from a stream created by the HybridEncoder
+ */
+public class DecompressorHybrid {
+
+    private float storedVal = 0f;
+    private boolean endOfStream = false;
+
+    // Current segment
+    private int model;
+    private int remaining = 0;
+    private long position;
+    private long initialTimestamp;
+    private float value;
+    private double a;
+
+    private final BitInput in;
+    private final ValueDecompressor32 xorDecompressor;
+    private boolean xorFirst = true;
+    private final ValueDecompressor32 lossyDecompressor;
+    private boolean lossyFirst = true;
+
+    public DecompressorHybrid(BitInput input) {
+    	this.in = input;
+    	this.xorDecompressor = new ValueDecompressor32(input);
+    	this.lossyDecompressor = new ValueDecompressor32(input);
+    }
+
+    /**
+     * Returns the next pair in the time series, if available. Expects one value per timestamp unit, use
+     * {@link #decode(BitInput, long[], float[])} for series with arbitrary timestamps.
+     *
+     * @return Pair if there's next value, null if series is done.
+     */
+    public Float readValue() {
+        if (endOfStream || (remaining == 0 && !nextSegment())) {
+        	endOfStream = true;
+            return null;
+        }
+        storedVal = value(position);
+        position++;
+        remaining--;
+        return storedVal;
+    }
+
+    /**
+     * Decodes the points of a series with arbitrary timestamps. The timestamps are read from a stream created by
+     * the TimestampStreamCompressor. At most timestamps.length points are decoded.
+     *
+     * @param timestampInput Compressed timestamps
+     * @param timestamps Receives the timestamps
+     * @param values Receives the values, at least as long as timestamps
+     * @return Amount of decoded points
+     */
+    public int decode(BitInput timestampInput, long[] timestamps, float[] values) {
+    	TimestampDecompressor timestampDecompressor = new TimestampDecompressor(timestampInput.getLong(64),
+    			timestampInput);
+    	int count = 0;
+    	boolean available = timestampDecompressor.readFirst();
+    	while (available && count < timestamps.length) {
+    		if (endOfStream || (remaining == 0 && !nextSegment())) {
+    			endOfStream = true;
+    			break;
+    		}
+    		long timestamp = timestampDecompressor.getTimestamp();
+    		if (position == 0) {
+    			initialTimestamp = timestamp;
+    		}
+    		timestamps[count] = timestamp;
+    		values[count] = value(timestamp - initialTimestamp);
+    		position++;
+    		remaining--;
+    		count++;
+    		available = timestampDecompressor.readNext();
+    	}
+    	return count;
+    }
+
+    private float value(long offset) {
+    	switch (model) {
+    	case HybridEncoder.MODEL_CONSTANT:
+    		return value;
+    	case HybridEncoder.MODEL_LINEAR:
+    		return LinearFunction.get(a, value, offset);
+    	case HybridEncoder.MODEL_LOSSY_XOR:
+    		if (lossyFirst) {
+    			lossyFirst = false;
+    			return Float.intBitsToFloat(lossyDecompressor.readFirst());
+    		}
+    		return Float.intBitsToFloat(lossyDecompressor.nextValue());
+    	default:
+    		if (xorFirst) {
+    			xorFirst = false;
+    			return Float.intBitsToFloat(xorDecompressor.readFirst());
+    		}
+    		return Float.intBitsToFloat(xorDecompressor.nextValue());
+    	}
+    }
+
+    private boolean nextSegment() {
+    	if (!in.readBit()) {
+    		return false;
+    	}
+    	model = (int) in.getLong(HybridEncoder.MODEL_BITS);
+    	remaining = EliasGamma.read(in);
+    	position = 0;
+    	switch (model) {
+    	case HybridEncoder.MODEL_CONSTANT:
+    		value = Float.intBitsToFloat((int) in.getLong(Float.SIZE));
+    		break;
+    	case HybridEncoder.MODEL_LINEAR:
+    		value = Float.intBitsToFloat((int) in.getLong(Float.SIZE));
+    		a = Double.longBitsToDouble(in.getLong(Double.SIZE));
+    		break;
+    	case HybridEncoder.MODEL_XOR:
+    	case HybridEncoder.MODEL_LOSSY_XOR:
+    		break;
+    	default:
+    		throw new IllegalStateException("Unknown model " + model);
+    	}
+    	return true;
+    }
+
+}
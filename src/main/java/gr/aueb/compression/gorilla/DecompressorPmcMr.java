@@ -2,6 +2,8 @@ package gr.aueb.compression.gorilla;
 
 import java.util.List;
 
+import fi.iki.yak.ts.compression.gorilla.BitInput;
+import fi.iki.yak.ts.compression.gorilla.TimestampDecompressor;
 import gr.aueb.compression.gorilla.PmcMR.Constant;
 
 public class DecompressorPmcMr {
@@ -10,14 +12,37 @@ public class DecompressorPmcMr {
     private float storedVal = 0f;
     private boolean endOfStream = false;
     private int currentElement = 0;
-    private int currentTimestampOffset = 0;
-    
+    private int currentPoint = 0;
+
+    // Current constant
+    private boolean started = false;
+    private long initialTimestamp;
+    private long finalTimestamp;
+    private int points;
+
+    // Stream created by the PmcMRCompressor
+    private BitInput in;
+    private ValueDecompressor32 valueDecompressor;
+    private boolean first = true;
+
     public DecompressorPmcMr(List<Constant> constants) {
     	this.constants = constants;
     }
 
     /**
-     * Returns the next pair in the time series, if available.
+     * Reads the constants from a stream created by the PmcMRCompressor
+     *
+     * @param input Compressed constants
+     */
+    public DecompressorPmcMr(BitInput input) {
+    	this.in = input;
+    	this.valueDecompressor = new ValueDecompressor32(input);
+    	this.finalTimestamp = input.getLong(64) - 1;
+    }
+
+    /**
+     * Returns the next value in the time series, if available. Each constant gives the value of its amount of
+     * points, use {@link #decode(BitInput, long[], float[])} to read the values with their timestamps.
      *
      * @return Pair if there's next value, null if series is done.
      */
@@ -29,21 +54,152 @@ public class DecompressorPmcMr {
         return storedVal;
     }
 
+    /**
+     * Gives the remaining constants to the sink without expanding them to values.
+     *
+     * @param sink Receives the constants
+     */
+    public void readConstants(ConstantSegmentSink sink) {
+    	while (!endOfStream && nextConstant()) {
+    		sink.accept(initialTimestamp, finalTimestamp, points, storedVal);
+    	}
+    	endOfStream = true;
+    }
+
+    /**
+     * Aggregates the remaining constants over the time range [from, to]. Reading stops at the first constant
+     * starting after the range.
+     *
+     * @param from First timestamp of the range, inclusive
+     * @param to Last timestamp of the range, inclusive
+     * @return Aggregates of the range
+     * @throws IllegalStateException if a constant only partly in the range has gaps between its points
+     */
+    public SegmentAggregator aggregate(long from, long to) {
+    	SegmentAggregator aggregator = new SegmentAggregator(from, to);
+    	while (!endOfStream && nextConstant() && initialTimestamp <= to) {
+    		aggregator.accept(initialTimestamp, finalTimestamp, points, storedVal);
+    	}
+    	endOfStream = true;
+    	return aggregator;
+    }
+
+    /**
+     * Aggregates the remaining constants over the time range [from, to] with the timestamps of their points, which
+     * are read from a stream created by the TimestampStreamCompressor. The values are not expanded, but every
+     * timestamp up to the range is read.
+     *
+     * @param timestampInput Compressed timestamps
+     * @param from First timestamp of the range, inclusive
+     * @param to Last timestamp of the range, inclusive
+     * @return Aggregates of the range
+     */
+    public SegmentAggregator aggregate(BitInput timestampInput, long from, long to) {
+    	SegmentAggregator aggregator = new SegmentAggregator(from, to);
+    	TimestampDecompressor timestampDecompressor = new TimestampDecompressor(timestampInput.getLong(64),
+    			timestampInput);
+    	boolean available = timestampDecompressor.readFirst();
+    	while (available && !endOfStream && nextConstant() && initialTimestamp <= to) {
+    		long count = 0;
+    		for (int i = 0; i < points && available; i++) {
+    			long timestamp = timestampDecompressor.getTimestamp();
+    			if (timestamp >= from && timestamp <= to) {
+    				count++;
+    			}
+    			available = timestampDecompressor.readNext();
+    		}
+    		aggregator.add(count, storedVal);
+    	}
+    	endOfStream = true;
+    	return aggregator;
+    }
+
+    /**
+     * Decodes the points of a series with arbitrary timestamps. The timestamps are read from a stream created by
+     * the TimestampStreamCompressor and each value is taken from the constant covering the timestamp. At most
+     * timestamps.length points are decoded.
+     *
+     * @param timestampInput Compressed timestamps
+     * @param timestamps Receives the timestamps
+     * @param values Receives the values, at least as long as timestamps
+     * @return Amount of decoded points
+     */
+    public int decode(BitInput timestampInput, long[] timestamps, float[] values) {
+    	TimestampDecompressor timestampDecompressor = new TimestampDecompressor(timestampInput.getLong(64),
+    			timestampInput);
+    	int count = 0;
+    	boolean available = timestampDecompressor.readFirst();
+    	while (available && count < timestamps.length) {
+    		long timestamp = timestampDecompressor.getTimestamp();
+    		if (!seek(timestamp)) {
+    			break;
+    		}
+    		timestamps[count] = timestamp;
+    		values[count] = storedVal;
+    		count++;
+    		available = timestampDecompressor.readNext();
+    	}
+    	return count;
+    }
+
+    /**
+     * Moves to the constant that ends at or after the timestamp
+     *
+     * @return false if there are no more constants
+     */
+    private boolean seek(long timestamp) {
+    	while (!started || finalTimestamp < timestamp) {
+    		if (endOfStream || !nextConstant()) {
+    			endOfStream = true;
+    			return false;
+    		}
+    		started = true;
+    		currentPoint = 0;
+    	}
+    	return true;
+    }
+
     private void next() {
-    	Constant constant = constants.get(currentElement);
-    	if (constant.getFinalTimestamp() >= (constant.getInitialTimestamp() + currentTimestampOffset)) {
-    		storedVal = constant.getValue();
-    		currentTimestampOffset++;
-    	} else {
-    		currentElement++;
-    		if (currentElement < constants.size()) {
-    			constant = constants.get(currentElement);
-    			storedVal = constant.getValue();
-    			currentTimestampOffset = 1;
-    		} else {
+    	if (endOfStream) {
+    		return;
+    	}
+    	if (!started || currentPoint == points) {
+    		if (!nextConstant()) {
     			endOfStream = true;
+    			return;
     		}
+    		started = true;
+    		currentPoint = 0;
     	}
+    	currentPoint++;
 	}
 
-}
\ No newline at end of file
+    private boolean nextConstant() {
+    	if (constants != null) {
+    		if (currentElement >= constants.size()) {
+    			return false;
+    		}
+    		Constant constant = constants.get(currentElement++);
+    		initialTimestamp = constant.getInitialTimestamp();
+    		finalTimestamp = constant.getFinalTimestamp();
+    		points = constant.getPoints();
+    		storedVal = constant.getValue();
+    		return true;
+    	}
+    	if (!in.readBit()) {
+    		return false;
+    	}
+    	initialTimestamp = finalTimestamp + EliasGamma.read(in);
+    	long length = EliasGamma.read(in);
+    	finalTimestamp = initialTimestamp + length - 1;
+    	points = (int) (length - EliasGamma.read(in) + 1);
+    	if (first) {
+    		first = false;
+    		storedVal = Float.intBitsToFloat(valueDecompressor.readFirst());
+    	} else {
+    		storedVal = Float.intBitsToFloat(valueDecompressor.nextValue());
+    	}
+    	return true;
+    }
+
+}
@@ -0,0 +1,150 @@
+package gr.aueb.compression.gorilla;
+
+import fi.iki.yak.ts.compression.gorilla.BitInput;
+import fi.iki.yak.ts.compression.gorilla.TimestampDecompressor;
+import fi.iki.yak.ts.compression.gorilla.ValueDecompressor;
+
+/**
+ * Reads the segments from a stream created by the PolynomialCompressor
+ */
+public class DecompressorPolynomial {
+
+    private float storedVal = 0f;
+    private boolean endOfStream = false;
+    private int currentPoint = 0;
+
+    // Current segment
+    private boolean started = false;
+    private long initialTimestamp;
+    private long finalTimestamp;
+    private int points;
+    private final double[] coefficients;
+
+    private final BitInput in;
+    private final ValueDecompressor[] coefficientDecompressors;
+    private boolean firstSegment = true;
+
+    public DecompressorPolynomial(BitInput input) {
+    	this.in = input;
+    	this.finalTimestamp = input.getLong(64) - 1;
+    	int degree = (int) input.getLong(PolynomialCompressor.DEGREE_BITS);
+    	this.coefficients = new double[degree + 1];
+    	this.coefficientDecompressors = new ValueDecompressor[degree + 1];
+    	for (int i = 0; i < coefficientDecompressors.length; i++) {
+    		coefficientDecompressors[i] = new ValueDecompressor(input);
+    	}
+    }
+
+    /**
+     * Returns the next value in the time series, if available. Expects one value per timestamp unit, use
+     * {@link #decode(BitInput, long[], float[])} for series with arbitrary timestamps.
+     *
+     * @return Pair if there's next value, null if series is done.
+     * @throws IllegalStateException if a segment has gaps between its points
+     */
+    public Float readValue() {
+        next();
+        if(endOfStream) {
+            return null;
+        }
+        return storedVal;
+    }
+
+    /**
+     * Gives the remaining segments to the sink without expanding them to values.
+     *
+     * @param sink Receives the segments
+     */
+    public void readSegments(PolynomialSegmentSink sink) {
+    	while (!endOfStream && nextSegment()) {
+    		sink.accept(initialTimestamp, finalTimestamp, points, coefficients);
+    	}
+    	endOfStream = true;
+    }
+
+    /**
+     * Decodes the points of a series with arbitrary timestamps. The timestamps are read from a stream created by
+     * the TimestampStreamCompressor and each value is taken from the segment covering the timestamp. At most
+     * timestamps.length points are decoded.
+     *
+     * @param timestampInput Compressed timestamps
+     * @param timestamps Receives the timestamps
+     * @param values Receives the values, at least as long as timestamps
+     * @return Amount of decoded points
+     */
+    public int decode(BitInput timestampInput, long[] timestamps, float[] values) {
+    	TimestampDecompressor pointTimestamps = new TimestampDecompressor(timestampInput.getLong(64), timestampInput);
+    	int count = 0;
+    	boolean available = pointTimestamps.readFirst();
+    	while (available && count < timestamps.length) {
+    		long timestamp = pointTimestamps.getTimestamp();
+    		if (!seek(timestamp)) {
+    			break;
+    		}
+    		timestamps[count] = timestamp;
+    		values[count] = PolynomialFunction.get(coefficients, timestamp - initialTimestamp);
+    		count++;
+    		available = pointTimestamps.readNext();
+    	}
+    	return count;
+    }
+
+    /**
+     * Moves to the segment that ends at or after the timestamp
+     *
+     * @return false if there are no more segments
+     */
+    private boolean seek(long timestamp) {
+    	while (!started || finalTimestamp < timestamp) {
+    		if (endOfStream || !nextSegment()) {
+    			endOfStream = true;
+    			return false;
+    		}
+    		started = true;
+    		currentPoint = 0;
+    	}
+    	return true;
+    }
+
+    private void next() {
+    	if (endOfStream) {
+    		return;
+    	}
+    	if (!started || currentPoint == points) {
+    		if (!nextSegment()) {
+    			endOfStream = true;
+    			return;
+    		}
+    		started = true;
+    		currentPoint = 0;
+    		checkGaps();
+    	}
+    	storedVal = PolynomialFunction.get(coefficients, currentPoint);
+    	currentPoint++;
+	}
+
+    private void checkGaps() {
+    	if (finalTimestamp - initialTimestamp + 1 != points) {
+    		throw new IllegalStateException("Segment from " + initialTimestamp + " to " + finalTimestamp + " has "
+    				+ points + " points, decode it with the timestamps of the points");
+    	}
+    }
+
+    private boolean nextSegment() {
+    	if (!in.readBit()) {
+    		return false;
+    	}
+    	initialTimestamp = finalTimestamp + EliasGamma.read(in);
+    	long length = EliasGamma.read(in);
+    	finalTimestamp = initialTimestamp + length - 1;
+    	points = (int) (length - EliasGamma.read(in) + 1);
+    	for (int i = 0; i < coefficients.length; i++) {
+    		long bits = firstSegment ? coefficientDecompressors[i].readFirst()
+    				: coefficientDecompressors[i].nextValue();
+    		coefficients[i] = Double.longBitsToDouble(bits);
+    	}
+    	firstSegment = false;
+    	return true;
+    }
+
+}
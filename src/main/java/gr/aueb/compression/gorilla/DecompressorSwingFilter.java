@@ -2,6 +2,9 @@ package gr.aueb.compression.gorilla;
 
 import java.util.List;
 
+import fi.iki.yak.ts.compression.gorilla.BitInput;
+import fi.iki.yak.ts.compression.gorilla.TimestampDecompressor;
+import fi.iki.yak.ts.compression.gorilla.ValueDecompressor;
 import gr.aueb.compression.gorilla.SwingFilter.SwingSegment;
 
 public class DecompressorSwingFilter {
@@ -10,16 +13,44 @@ public class DecompressorSwingFilter {
     private float storedVal = 0f;
     private boolean endOfStream = false;
     private int currentElement = 0;
-    private int currentTimestampOffset = 0;
+    private int currentPoint = 0;
+
+    // Current segment
+    private boolean started = false;
+    private long initialTimestamp;
+    private long finalTimestamp;
+    private int points;
+    private double a;
+    private double b;
+
+    // Stream created by the SwingFilterCompressor
+    private BitInput in;
+    private ValueDecompressor slopeDecompressor;
+    private ValueDecompressor interceptDecompressor;
+    private boolean firstSegment = true;
 
     public DecompressorSwingFilter(List<SwingSegment> swingSegments) {
     	this.swingSegments = swingSegments;
     }
 
     /**
-     * Returns the next pair in the time series, if available.
+     * Reads the segments from a stream created by the SwingFilterCompressor
+     *
+     * @param input Compressed swing segments
+     */
+    public DecompressorSwingFilter(BitInput input) {
+    	this.in = input;
+    	this.slopeDecompressor = new ValueDecompressor(input);
+    	this.interceptDecompressor = new ValueDecompressor(input);
+    	this.finalTimestamp = input.getLong(64) - 1;
+    }
+
+    /**
+     * Returns the next value in the time series, if available. Expects one value per timestamp unit, use
+     * {@link #decode(BitInput, long[], float[])} for series with arbitrary timestamps.
      *
      * @return Pair if there's next value, null if series is done.
+     * @throws IllegalStateException if a segment has gaps between its points
      */
     public Float readValue() {
         next();
@@ -29,22 +60,171 @@ public class DecompressorSwingFilter {
         return storedVal;
     }
 
-    private void next() {
-    	SwingSegment swingSegment = swingSegments.get(currentElement);
-    	if (swingSegment.getFinalTimestamp() >= (swingSegment.getInitialTimestamp() + currentTimestampOffset)) {
-    		storedVal = swingSegment.getLine().get(swingSegment.getInitialTimestamp() + currentTimestampOffset);
-    		currentTimestampOffset++;
-    	} else {
-    		currentElement++;
-    		if (currentElement < swingSegments.size()) {
-    			swingSegment = swingSegments.get(currentElement);
-    			storedVal = swingSegment.getLine().get(swingSegment.getInitialTimestamp());
+    /**
+     * Gives the remaining segments to the sink without expanding them to values.
+     *
+     * @param sink Receives the segments
+     */
+    public void readSegments(LinearSegmentSink sink) {
+    	while (!endOfStream && nextSegment()) {
+    		sink.accept(initialTimestamp, finalTimestamp, points, a, b);
+    	}
+    	endOfStream = true;
+    }
+
+    /**
+     * Aggregates the remaining segments over the time range [from, to]. Reading stops at the first segment
+     * starting after the range.
+     *
+     * @param from First timestamp of the range, inclusive
+     * @param to Last timestamp of the range, inclusive
+     * @return Aggregates of the range
+     * @throws IllegalStateException if a segment in the range has gaps between its points
+     */
+    public SegmentAggregator aggregate(long from, long to) {
+    	SegmentAggregator aggregator = new SegmentAggregator(from, to);
+    	while (!endOfStream && nextSegment() && initialTimestamp <= to) {
+    		aggregator.accept(initialTimestamp, finalTimestamp, points, a, b);
+    	}
+    	endOfStream = true;
+    	return aggregator;
+    }
+
+    /**
+     * Aggregates the remaining segments over the time range [from, to] with the timestamps of their points, which
+     * are read from a stream created by the TimestampStreamCompressor. The values are not expanded, but every
+     * timestamp up to the range is read.
+     *
+     * @param timestampInput Compressed timestamps
+     * @param from First timestamp of the range, inclusive
+     * @param to Last timestamp of the range, inclusive
+     * @return Aggregates of the range
+     */
+    public SegmentAggregator aggregate(BitInput timestampInput, long from, long to) {
+    	SegmentAggregator aggregator = new SegmentAggregator(from, to);
+    	TimestampDecompressor timestampDecompressor = new TimestampDecompressor(timestampInput.getLong(64),
+    			timestampInput);
+    	boolean available = timestampDecompressor.readFirst();
+    	while (available && !endOfStream && nextSegment() && initialTimestamp <= to) {
+    		long count = 0;
+    		long first = 0;
+    		long last = 0;
+    		long offsetSum = 0;
+    		for (int i = 0; i < points && available; i++) {
+    			long timestamp = timestampDecompressor.getTimestamp();
+    			if (timestamp >= from && timestamp <= to) {
+    				if (count++ == 0) {
+    					first = timestamp;
+    				}
+    				last = timestamp;
+    				offsetSum += timestamp - first;
+    			}
+    			available = timestampDecompressor.readNext();
+    		}
+    		aggregator.add(count, first, last, offsetSum, a, b);
+    	}
+    	endOfStream = true;
+    	return aggregator;
+    }
 
-    			currentTimestampOffset = 1;
-    		} else {
+    /**
+     * Decodes the points of a series with arbitrary timestamps. The timestamps are read from a stream created by
+     * the TimestampStreamCompressor and each value is taken from the segment covering the timestamp. At most
+     * timestamps.length points are decoded.
+     *
+     * @param timestampInput Compressed timestamps
+     * @param timestamps Receives the timestamps
+     * @param values Receives the values, at least as long as timestamps
+     * @return Amount of decoded points
+     */
+    public int decode(BitInput timestampInput, long[] timestamps, float[] values) {
+    	TimestampDecompressor timestampDecompressor = new TimestampDecompressor(timestampInput.getLong(64),
+    			timestampInput);
+    	int count = 0;
+    	boolean available = timestampDecompressor.readFirst();
+    	while (available && count < timestamps.length) {
+    		long timestamp = timestampDecompressor.getTimestamp();
+    		if (!seek(timestamp)) {
+    			break;
+    		}
+    		timestamps[count] = timestamp;
+    		values[count] = LinearFunction.get(a, b, timestamp);
+    		count++;
+    		available = timestampDecompressor.readNext();
+    	}
+    	return count;
+    }
+
+    /**
+     * Moves to the segment that ends at or after the timestamp
+     *
+     * @return false if there are no more segments
+     */
+    private boolean seek(long timestamp) {
+    	while (!started || finalTimestamp < timestamp) {
+    		if (endOfStream || !nextSegment()) {
     			endOfStream = true;
+    			return false;
     		}
+    		started = true;
+    		currentPoint = 0;
+    	}
+    	return true;
+    }
+
+    private void next() {
+    	if (endOfStream) {
+    		return;
     	}
+    	if (!started || currentPoint == points) {
+    		if (!nextSegment()) {
+    			endOfStream = true;
+    			return;
+    		}
+    		started = true;
+    		currentPoint = 0;
+    		checkGaps();
+    	}
+    	storedVal = LinearFunction.get(a, b, initialTimestamp + currentPoint);
+    	currentPoint++;
 	}
 
-}
\ No newline at end of file
+    private void checkGaps() {
+    	if (finalTimestamp - initialTimestamp + 1 != points) {
+    		throw new IllegalStateException("Segment from " + initialTimestamp + " to " + finalTimestamp + " has "
+    				+ points + " points, decode it with the timestamps of the points");
+    	}
+    }
+
+    private boolean nextSegment() {
+    	if (swingSegments != null) {
+    		if (currentElement >= swingSegments.size()) {
+    			return false;
+    		}
+    		SwingSegment swingSegment = swingSegments.get(currentElement++);
+    		initialTimestamp = swingSegment.getInitialTimestamp();
+    		finalTimestamp = swingSegment.getFinalTimestamp();
+    		points = swingSegment.getPoints();
+    		a = swingSegment.getLine().a;
+    		b = swingSegment.getLine().b;
+    		return true;
+    	}
+    	if (!in.readBit()) {
+    		return false;
+    	}
+    	initialTimestamp = finalTimestamp + EliasGamma.read(in);
+    	long length = EliasGamma.read(in);
+    	finalTimestamp = initialTimestamp + length - 1;
+    	points = (int) (length - EliasGamma.read(in) + 1);
+    	if (firstSegment) {
+    		firstSegment = false;
+    		a = Double.longBitsToDouble(slopeDecompressor.readFirst());
+    		b = Double.longBitsToDouble(interceptDecompressor.readFirst());
+    	} else {
+    		a = Double.longBitsToDouble(slopeDecompressor.nextValue());
+    		b = Double.longBitsToDouble(interceptDecompressor.nextValue());
+    	}
+    	return true;
+    }
+
+}
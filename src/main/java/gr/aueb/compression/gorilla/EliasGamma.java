@@ -0,0 +1,44 @@
+package gr.aueb.compression.gorilla;
+
+import fi.iki.yak.ts.compression.gorilla.BitInput;
+import fi.iki.yak.ts.compression.gorilla.BitOutput;
+
+/**
+ * Elias gamma coding of positive integers, a value N is stored as floor(log2 N) zeros followed by N in binary.
+ * Small values take only a few bits, 1 takes a single bit.
+ */
+public final class EliasGamma {
+
+	private EliasGamma() {
+	}
+
+	/**
+	 * @param out Stream to write to
+	 * @param value Value to store, between 1 and 2^31 - 1
+	 */
+	public static void write(BitOutput out, int value) {
+		int n = 31 - Integer.numberOfLeadingZeros(value);
+		// The n leading zeros come for free as the value fits in n + 1 bits
+		out.writeBits(value, 2 * n + 1);
+	}
+
+	/**
+	 * @param value Value to store, between 1 and 2^31 - 1
+	 * @return Amount of bits used to store the value
+	 */
+	public static int size(int value) {
+		return 2 * (31 - Integer.numberOfLeadingZeros(value)) + 1;
+	}
+
+	public static int read(BitInput in) {
+		int n = 0;
+		while (!in.readBit()) {
+			n++;
+		}
+		if (n == 0) {
+			return 1;
+		}
+		return (1 << n) | (int) in.getLong(n);
+	}
+
+}
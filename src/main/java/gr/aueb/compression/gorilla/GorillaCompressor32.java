@@ -0,0 +1,66 @@
+package gr.aueb.compression.gorilla;
+
+import fi.iki.yak.ts.compression.gorilla.BitOutput;
+import fi.iki.yak.ts.compression.gorilla.TimestampCompressor;
+
+/**
+ * Compresses a time series of float values. The timestamps are stored with the same delta-of-delta encoding as the
+ * GorillaCompressor and the values with the 32 bit XOR encoding of the Compressor32, so each block is self-contained.
+ *
+ * Block layout: 64 bits block timestamp, first timestamp as a delta and the first value as is, then the
+ * delta-of-delta and XOR of each following pair, end of stream marker.
+ */
+public class GorillaCompressor32 {
+
+    private boolean first = true;
+
+    public final static int FIRST_DELTA_BITS = TimestampCompressor.FIRST_DELTA_BITS;
+
+    private final BitOutput out;
+
+    private final TimestampCompressor timestampCompressor;
+    private final ValueCompressor32 valueCompressor;
+
+    public GorillaCompressor32(long timestamp, BitOutput output) {
+        out = output;
+        out.writeBits(timestamp, 64);
+        this.timestampCompressor = new TimestampCompressor(timestamp, output);
+        this.valueCompressor = new ValueCompressor32(output);
+    }
+
+    /**
+     * Adds a new int value to the series. Note, values must be inserted in order.
+     *
+     * @param timestamp Timestamp which is inside the allowed time block (default 24 hours with millisecond precision)
+     * @param value next value in the series, or the bits of a float value (Float.floatToRawIntBits)
+     */
+    public void addValue(long timestamp, int value) {
+        if(first) {
+            first = false;
+            timestampCompressor.writeFirst(timestamp);
+            valueCompressor.writeFirst(value);
+            return;
+        }
+        timestampCompressor.compressTimestamp(timestamp);
+        valueCompressor.compressValue(value);
+    }
+
+    /**
+     * Adds a new float value to the series. Note, values must be inserted in order.
+     *
+     * @param timestamp Timestamp which is inside the allowed time block (default 24 hours with millisecond precision)
+     * @param value next floating point value in the series
+     */
+    public void addValue(long timestamp, float value) {
+        addValue(timestamp, Float.floatToRawIntBits(value));
+    }
+
+    /**
+     * Closes the block and writes the remaining stuff to the BitOutput.
+     */
+    public void close() {
+        timestampCompressor.writeEndOfStream();
+        out.skipBit();
+        out.flush();
+    }
+}
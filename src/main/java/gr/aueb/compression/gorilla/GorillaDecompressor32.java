@@ -0,0 +1,77 @@
+package gr.aueb.compression.gorilla;
+
+import fi.iki.yak.ts.compression.gorilla.BitInput;
+import fi.iki.yak.ts.compression.gorilla.TimestampDecompressor;
+
+/**
+ * Decompresses a block created by the GorillaCompressor32. Returns points of timestamp and floating point value.
+ */
+public class GorillaDecompressor32 {
+
+    private long storedTimestamp = 0;
+    private int storedVal = 0;
+    private boolean first = true;
+    private boolean endOfStream = false;
+
+    private final TimestampDecompressor timestampDecompressor;
+    private final ValueDecompressor32 decompressor;
+
+    public GorillaDecompressor32(BitInput input) {
+        this.timestampDecompressor = new TimestampDecompressor(input.getLong(64), input);
+        this.decompressor = new ValueDecompressor32(input);
+    }
+
+    /**
+     * Returns the next point in the time series, if available.
+     *
+     * @return Point if there's next value, null if series is done.
+     */
+    public Point readPoint() {
+        next();
+        if(endOfStream) {
+            return null;
+        }
+        return new Point(storedTimestamp, Float.intBitsToFloat(storedVal));
+    }
+
+    /**
+     * Decompresses the rest of the series to the given arrays, which must be large enough to hold the whole block.
+     *
+     * @param timestamps Receives the timestamps
+     * @param values Receives the values
+     * @return Amount of decompressed points
+     */
+    public int decode(long[] timestamps, float[] values) {
+        int count = 0;
+        for(next(); !endOfStream; next()) {
+            timestamps[count] = storedTimestamp;
+            values[count] = Float.intBitsToFloat(storedVal);
+            count++;
+        }
+        return count;
+    }
+
+    private void next() {
+        if(endOfStream) {
+            return;
+        }
+
+        if(first) {
+            first = false;
+            if(!timestampDecompressor.readFirst()) {
+                endOfStream = true;
+                return;
+            }
+            storedTimestamp = timestampDecompressor.getTimestamp();
+            storedVal = decompressor.readFirst();
+            return;
+        }
+
+        if(!timestampDecompressor.readNext()) {
+            endOfStream = true;
+            return;
+        }
+        storedTimestamp = timestampDecompressor.getTimestamp();
+        storedVal = decompressor.nextValue();
+    }
+}
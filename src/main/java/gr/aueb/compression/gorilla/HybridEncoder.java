@@ -0,0 +1,272 @@
+package gr.aueb.compression.gorilla;
+
+import fi.iki.yak.ts.compression.gorilla.BitOutput;
+
+/**
+ * Multi-model encoder. The points are collected to a buffer and when the buffer is full, a constant (PMC-MR), a
+ * linear (swing filter), an XOR (Compressor32) and a lossy XOR (LossyCompressor32) model are fitted from the start of
+ * the buffer. The model with the fewest bits per covered point is written and the points it does not cover stay in
+ * the buffer for the next segment.
+ *
+ * The constant and linear models cover points as long as every point is within epsilon. The XOR model covers the
+ * whole buffer, a value within epsilon of the previous XOR value is replaced with the previous value, which costs a
+ * single bit. The lossy XOR model covers the whole buffer as well, with the error bound of the LossyCompressor32 set
+ * to the largest power of two not above epsilon.
+ *
+ * Block layout:
+ * <pre>
+ * for each segment: '1', 2 bits model id, Elias gamma coded amount of points, model
+ *   constant: 32 bits value
+ *   linear: 32 bits value of the first point, 64 bits slope per timestamp unit from the first point
+ *   XOR: the values in the Compressor32 format, continuing from the previous XOR segment
+ *   lossy XOR: the values in the Compressor32 format, continuing from the previous lossy XOR segment
+ * '0'
+ * </pre>
+ * The timestamps are not stored, the linear model is evaluated at the distance to the first timestamp of the
+ * segment. Use a TimestampStreamCompressor for series that are not evenly spaced with one unit step.
+ */
+public class HybridEncoder implements SegmentEncoder {
+
+	public static final int MODEL_BITS = 2;
+	public static final int MODEL_CONSTANT = 0;
+	public static final int MODEL_LINEAR = 1;
+	public static final int MODEL_XOR = 2;
+	public static final int MODEL_LOSSY_XOR = 3;
+
+	public static final int DEFAULT_MAX_LENGTH = 128;
+
+	private static final int CONSTANT_BITS = Float.SIZE;
+	private static final int LINEAR_BITS = Float.SIZE + Double.SIZE;
+
+	private final float epsilon;
+	private final BitOutput out;
+
+	// Points waiting for a model
+	private final long[] timestamps;
+	private final float[] values;
+	private int count = 0;
+
+	private final ValueCompressor32 xorCompressor;
+	private final CountingBitOutput counter = new CountingBitOutput();
+	private boolean xorFirst = true;
+	private float xorPrevious;
+
+	private final LossyCompressor32 lossyCompressor;
+	private boolean lossyFirst = true;
+
+	private final PmcMREncoder constantEncoder;
+	private boolean constantFitted;
+	private float constantValue;
+
+	private final SwingFilterEncoder linearEncoder;
+	private boolean linearFitted;
+	private double linearA;
+	private float linearB;
+
+	public HybridEncoder(float epsilon, BitOutput output) {
+		this(epsilon, DEFAULT_MAX_LENGTH, output);
+	}
+
+	/**
+	 * @param epsilon Maximum error
+	 * @param maxLength Size of the buffer, which is also the maximum amount of points in a segment
+	 * @param output Stream to write to
+	 */
+	public HybridEncoder(float epsilon, int maxLength, BitOutput output) {
+		if (maxLength < 1) {
+			throw new IllegalArgumentException("Segments must be allowed to have at least one point");
+		}
+		this.epsilon = epsilon;
+		this.out = output;
+		this.timestamps = new long[maxLength];
+		this.values = new float[maxLength];
+		this.xorCompressor = new ValueCompressor32(output);
+		this.lossyCompressor = new LossyCompressor32(output, Math.getExponent(epsilon));
+		// The midrange is within epsilon of every value as long as max - min <= 2 * epsilon
+		this.constantEncoder = new PmcMREncoder(2 * epsilon, (initialTimestamp, finalTimestamp, points, value) -> {
+			if (!constantFitted) {
+				constantFitted = true;
+				constantValue = value;
+			}
+		});
+		this.linearEncoder = new SwingFilterEncoder(epsilon, (initialTimestamp, finalTimestamp, points, a, b) -> {
+			if (!linearFitted) {
+				linearFitted = true;
+				linearA = a;
+				// The line passes through the first point, which is at offset 0
+				linearB = (float) b;
+			}
+		});
+	}
+
+	@Override
+	public void add(long timestamp, float value) {
+		if (count == timestamps.length) {
+			writeSegment();
+		}
+		timestamps[count] = timestamp;
+		values[count] = value;
+		count++;
+	}
+
+	/**
+	 * Writes the buffered points. The encoder can be reused after closing, the points added after it continue the
+	 * same block, which is ended with {@link #closeBlock()}.
+	 */
+	@Override
+	public void close() {
+		while (count > 0) {
+			writeSegment();
+		}
+	}
+
+	/**
+	 * Writes the buffered points and the end of the block, the encoder can not be used after it.
+	 */
+	public void closeBlock() {
+		close();
+		out.skipBit();
+		out.flush();
+	}
+
+	private void writeSegment() {
+		int constantLength = fitConstant();
+		int linearLength = fitLinear();
+		counter.reset();
+		writeXorValues(new ValueCompressor32(xorCompressor, counter), count);
+
+		int model = MODEL_XOR;
+		int length = count;
+		double bitsPerPoint = (double) (header(count) + counter.getBits()) / count;
+		counter.reset();
+		writeLossyValues(new LossyCompressor32(lossyCompressor, counter), count);
+		if ((double) (header(count) + counter.getBits()) / count < bitsPerPoint) {
+			model = MODEL_LOSSY_XOR;
+			bitsPerPoint = (double) (header(count) + counter.getBits()) / count;
+		}
+		if (constantLength > 0 && (double) (header(constantLength) + CONSTANT_BITS) / constantLength <= bitsPerPoint) {
+			model = MODEL_CONSTANT;
+			length = constantLength;
+			bitsPerPoint = (double) (header(constantLength) + CONSTANT_BITS) / constantLength;
+		}
+		if (linearLength > 0 && (double) (header(linearLength) + LINEAR_BITS) / linearLength < bitsPerPoint) {
+			model = MODEL_LINEAR;
+			length = linearLength;
+		}
+
+		out.writeBit();
+		out.writeBits(model, MODEL_BITS);
+		EliasGamma.write(out, length);
+		switch (model) {
+		case MODEL_CONSTANT:
+			out.writeBits(Float.floatToRawIntBits(constantValue), Float.SIZE);
+			break;
+		case MODEL_LINEAR:
+			out.writeBits(Float.floatToRawIntBits(linearB), Float.SIZE);
+			out.writeBits(Double.doubleToRawLongBits(linearA), Double.SIZE);
+			break;
+		case MODEL_LOSSY_XOR:
+			writeLossyValues(lossyCompressor, length);
+			lossyFirst = false;
+			break;
+		default:
+			xorPrevious = writeXorValues(xorCompressor, length);
+			xorFirst = false;
+			break;
+		}
+
+		count -= length;
+		System.arraycopy(timestamps, length, timestamps, 0, count);
+		System.arraycopy(values, length, values, 0, count);
+	}
+
+	private static int header(int length) {
+		return 1 + MODEL_BITS + EliasGamma.size(length);
+	}
+
+	/**
+	 * @return Amount of points from the start of the buffer covered by a constant, the constant is in constantValue
+	 */
+	private int fitConstant() {
+		constantFitted = false;
+		int length = count;
+		for (int i = 0; i < count; i++) {
+			constantEncoder.add(timestamps[i], values[i]);
+			if (constantFitted) {
+				length = i;
+				break;
+			}
+		}
+		constantEncoder.close();
+		// Guard against the rounding of the midrange
+		for (int i = 0; i < length; i++) {
+			if (Math.abs((double) values[i] - constantValue) > epsilon) {
+				return i;
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * @return Amount of points from the start of the buffer covered by a line, the line is in linearA and linearB
+	 */
+	private int fitLinear() {
+		linearFitted = false;
+		int length = count;
+		for (int i = 0; i < count; i++) {
+			linearEncoder.add(timestamps[i] - timestamps[0], values[i]);
+			if (linearFitted) {
+				length = i;
+				break;
+			}
+		}
+		linearEncoder.close();
+		for (int i = 0; i < length; i++) {
+			float value = LinearFunction.get(linearA, linearB, timestamps[i] - timestamps[0]);
+			if (Math.abs((double) values[i] - value) > epsilon) {
+				return i;
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * Writes the first n buffered values with the XOR model
+	 *
+	 * @return The last written value
+	 */
+	private float writeXorValues(ValueCompressor32 compressor, int n) {
+		boolean first = xorFirst;
+		float previous = xorPrevious;
+		for (int i = 0; i < n; i++) {
+			float value = values[i];
+			if (first) {
+				compressor.writeFirst(Float.floatToRawIntBits(value));
+				first = false;
+			} else {
+				if (Math.abs((double) value - previous) <= epsilon) {
+					value = previous;
+				}
+				compressor.compressValue(Float.floatToRawIntBits(value));
+			}
+			previous = value;
+		}
+		return previous;
+	}
+
+	/**
+	 * Writes the first n buffered values with the lossy XOR model
+	 */
+	private void writeLossyValues(LossyCompressor32 compressor, int n) {
+		boolean first = lossyFirst;
+		for (int i = 0; i < n; i++) {
+			if (first) {
+				compressor.writeFirst(Float.floatToRawIntBits(values[i]));
+				first = false;
+			} else {
+				compressor.compressValue(Float.floatToRawIntBits(values[i]));
+			}
+		}
+	}
+
+}
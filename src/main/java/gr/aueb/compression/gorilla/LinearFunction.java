@@ -18,13 +18,31 @@ public class LinearFunction {
 
     /** Constructors **/
     public LinearFunction(long ts, float vs, long te, float ve) {
-        this.a = (ve - vs) / (te - ts);
-        this.b = vs - a * ts;
+        this.a = slope(ts, vs, te, ve);
+        this.b = intercept(ts, vs, this.a);
+    }
+
+    public LinearFunction(double a, double b) {
+        this.a = a;
+        this.b = b;
     }
 
     /** Public Methods **/
     public float get(long ts) {
-        return (float) (this.a * ts + this.b);
+        return get(this.a, this.b, ts);
+    }
+
+    /** Static Methods, allow using the function without an instance **/
+    public static double slope(long ts, float vs, long te, float ve) {
+        return (ve - vs) / (te - ts);
+    }
+
+    public static double intercept(long ts, float vs, double a) {
+        return vs - a * ts;
+    }
+
+    public static float get(double a, double b, long ts) {
+        return (float) (a * ts + b);
     }
 
     /** Instance Variables **/
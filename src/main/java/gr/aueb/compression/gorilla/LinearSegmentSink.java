@@ -0,0 +1,13 @@
+package gr.aueb.compression.gorilla;
+
+/**
+ * Receives the finished linear segments of a filter, the segment is described by the line value = a * timestamp + b.
+ * The segment covers the given amount of points between its initial and final timestamp, which are the timestamps of
+ * its first and last point.
+ */
+@FunctionalInterface
+public interface LinearSegmentSink {
+
+	void accept(long initialTimestamp, long finalTimestamp, int points, double a, double b);
+
+}
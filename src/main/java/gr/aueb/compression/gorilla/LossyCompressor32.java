@@ -6,6 +6,9 @@ import fi.iki.yak.ts.compression.gorilla.BitOutput;
  * Implements the time series compression as described in the Facebook's Gorilla Paper. Value compression
  * is for floating points only.
  *
+ * Lossy version of the Compressor32 with an error bound, the first value is stored as is. The stream has the same
+ * format as the one of the Compressor32, so it is read with the Decompressor32.
+ *
  * @author Michael Burman
  */
 public class LossyCompressor32 {
@@ -15,30 +18,94 @@ public class LossyCompressor32 {
     private int storedVal = 0;
     private boolean first = true;
     private int size;
+    private int points = -1;
+    private int count = 0;
     private int cases[];
     private float trailingDiff;
     private float leadingDiff;
 
     private BitOutput out;
-    private int logOfError;
+    private final int logOfError;
+    private final boolean relative;
+    private final double error;
+
+    private static final int MANTISSA_BITS = 23;
+    private static final int[] LOW_BITS_MASK = new int[MANTISSA_BITS + 1];
+
+    static {
+        for(int i = 0; i < LOW_BITS_MASK.length; i++) {
+            LOW_BITS_MASK[i] = (1 << i) - 1;
+        }
+    }
 
+    /**
+     * Every value is stored with an absolute error below 2^logOfError.
+     *
+     * @param output Stream to write to
+     * @param logOfError Base 2 logarithm of the absolute error bound
+     */
     public LossyCompressor32(BitOutput output, int logOfError) {
+        this(output, logOfError, false);
+    }
+
+    /**
+     * @param output Stream to write to
+     * @param logOfError Base 2 logarithm of the error bound
+     * @param relative If true, the error of a value is below 2^logOfError * |value|, otherwise below 2^logOfError
+     */
+    public LossyCompressor32(BitOutput output, int logOfError, boolean relative) {
+        this(output, logOfError, relative, -1);
+    }
+
+    /**
+     * Creates a compressor for a framed block of the given amount of values, see
+     * {@link Compressor32#Compressor32(BitOutput, int)}. The block is read with
+     * {@link Decompressor32#Decompressor32(fi.iki.yak.ts.compression.gorilla.BitInput, boolean)}.
+     *
+     * @param output Stream to write to
+     * @param logOfError Base 2 logarithm of the error bound
+     * @param relative If true, the error of a value is below 2^logOfError * |value|, otherwise below 2^logOfError
+     * @param points Amount of values that are added before close, negative for a block with the end of stream marker
+     */
+    public LossyCompressor32(BitOutput output, int logOfError, boolean relative, int points) {
         this.out = output;
         this.size = 0;
         this.logOfError = logOfError;
+        this.relative = relative;
+        this.error = Math.scalb(1d, logOfError);
         int cases[] = {0, 0, 0};
         this.cases = cases;
         this.trailingDiff = 0;
         this.leadingDiff = 0;
+        if(points >= 0) {
+            this.points = points;
+            out.writeBits(points, 32);
+            size = 32;
+        }
+    }
+
+    /**
+     * Creates a compressor that continues from the state of another one, but writes to a different stream. Can be
+     * used to find out the cost of values without touching the original stream.
+     *
+     * @param other Compressor to copy the state from
+     * @param output Stream to write to
+     */
+    public LossyCompressor32(LossyCompressor32 other, BitOutput output) {
+        this(output, other.logOfError, other.relative);
+        this.storedLeadingZeros = other.storedLeadingZeros;
+        this.storedTrailingZeros = other.storedTrailingZeros;
+        this.storedVal = other.storedVal;
+        this.first = other.first;
     }
 
     /**
      * Adds a new long value to the series. Note, values must be inserted in order.
      *
-     * @param timestamp Timestamp which is inside the allowed time block (default 24 hours with millisecond precision)
      * @param value next floating point value in the series
      */
     public void addValue(int value) {
+        countValue();
         if(first) {
             writeFirst(value);
         } else {
@@ -49,10 +116,10 @@ public class LossyCompressor32 {
     /**
      * Adds a new double value to the series. Note, values must be inserted in order.
      *
-     * @param timestamp Timestamp which is inside the allowed time block (default 24 hours with millisecond precision)
      * @param value next floating point value in the series
      */
     public void addValue(float value) {
+        countValue();
         if(first) {
             writeFirst(Float.floatToRawIntBits(value));
         } else {
@@ -60,39 +127,67 @@ public class LossyCompressor32 {
         }
     }
 
-    private void writeFirst(int value) {
+    void writeFirst(int value) {
     	first = false;
         storedVal = value;
         out.writeBits(storedVal, 32);
         size += 32;
     }
 
+    private void countValue() {
+        if(count == points) {
+            throw new IllegalStateException("Block is full, it was created for " + points + " values");
+        }
+        count++;
+    }
+
     /**
      * Closes the block and writes the remaining stuff to the BitOutput.
      */
     public void close() {
-    	addValue(Float.NaN);
+        if(points < 0) {
+            addValue(Float.NaN);
+        } else if(count != points) {
+            throw new IllegalStateException("Block has " + count + " values, it was created for " + points);
+        }
         out.skipBit();
         out.flush();
     }
 
-    private void compressValue(int value) {
+    void compressValue(int value) {
     	// if values is within error wrt the previous value, use the previous value
-    	if (Math.abs(Float.intBitsToFloat(value) - Float.intBitsToFloat(storedVal)) < Math.pow(2, this.logOfError)) {
+    	double current = Float.intBitsToFloat(value);
+    	double bound = relative ? error * Math.abs(current) : error;
+    	if (Math.abs(current - Float.intBitsToFloat(storedVal)) < bound) {
     		// Write 0
         	cases[0] += 1;
             out.skipBit();
             size += 1;
             return;
     	}
-    	
-        // TODO Fix already compiled into a big method
-    	int integerDigits = (value << 1 >>> 24) - 127;
-    	int space = 23 + this.logOfError - integerDigits;
 
+    	// Replace the mantissa bits below the error bound with the bits of the previous value to get trailing zeros
+    	// to the XOR. The value changes less than 2^space ulps, which is below the bound.
+    	int exponent = value << 1 >>> 24;
+    	int space;
+    	if (exponent == 0xFF) {
+    		// Infinity and NaN (the end of stream marker) are stored as is
+    		space = 0;
+    	} else if (relative) {
+    		// Subnormals have no implicit leading one, the relative bound would not hold
+    		space = exponent == 0 ? 0 : MANTISSA_BITS + logOfError;
+    	} else {
+    		// Subnormals have the same ulp as the smallest normal exponent
+    		int integerDigits = Math.max(exponent, 1) - 127;
+    		space = MANTISSA_BITS + logOfError - integerDigits;
+    	}
+    	// Only the mantissa can be changed, changing the exponent would break the bound
+    	if (space > MANTISSA_BITS) {
+    		space = MANTISSA_BITS;
+    	}
     	if (space > 0) {
-    		value = value >> space << space;
-        	value = value | (storedVal & (2^space - 1));
+    		int mask = LOW_BITS_MASK[space];
+    		value = (value & ~mask) | (storedVal & mask);
     	}
 
     	int xor = storedVal ^ value;
@@ -121,7 +216,7 @@ public class LossyCompressor32 {
             	this.leadingDiff += leadingZeros - storedLeadingZeros;
                 writeExistingLeading(xor);
             } else {
-            	cases[2] += 2;
+            	cases[2] += 1;
                 writeNewLeading(xor, leadingZeros, trailingZeros);
             }
         }
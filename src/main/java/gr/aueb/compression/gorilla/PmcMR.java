@@ -10,40 +10,20 @@ public class PmcMR {
 	public List<Constant> filter(Collection<Point> points, float epsilon) {
 
 		List<Constant> constants = new ArrayList<>();
-		Constant currentConstant = null;
-		
-		float max = Float.MIN_VALUE;
-		float min = Float.MAX_VALUE;
-		
+
+		PmcMREncoder encoder = new PmcMREncoder(epsilon, (initialTimestamp, finalTimestamp, count, value) -> {
+			Constant constant = new Constant();
+			constant.setInitialTimestamp(initialTimestamp);
+			constant.setFinalTimestamp(finalTimestamp);
+			constant.setPoints(count);
+			constant.setValue(value);
+			constants.add(constant);
+		});
 		for (Point point : points) {
-			
-			if (point.getValue() > max) {
-				max = point.getValue();
-			}
-			if (point.getValue() < min) {
-				min = point.getValue();
-			}
-			
-			if (max - min <= epsilon && currentConstant != null) {
-				currentConstant.setFinalTimestamp(point.getTimestamp());
-				currentConstant.setValue(max - ((max - min) / 2));
-			} else {
-				if (currentConstant != null) {
-					constants.add(currentConstant);	
-				}
-				max = point.getValue();
-				min = point.getValue();
-				currentConstant = new Constant();
-				currentConstant.setInitialTimestamp(point.getTimestamp());
-				currentConstant.setFinalTimestamp(point.getTimestamp());
-				currentConstant.setValue(point.getValue());
-			}
-			
+			encoder.add(point.getTimestamp(), point.getValue());
 		}
-		if (currentConstant != null) {
-			constants.add(currentConstant);	
-		}
-		
+		encoder.close();
+
 		return constants;
 	}
 	
@@ -51,6 +31,7 @@ public class PmcMR {
 		
 		private long initialTimestamp;
 		private long finalTimestamp;
+		private int points;
 		private float value;
 		
 		public void setFinalTimestamp(long finalTimestamp) {
@@ -61,6 +42,10 @@ public class PmcMR {
 			this.initialTimestamp = initialTimestamp;
 		}
 		
+		public void setPoints(int points) {
+			this.points = points;
+		}
+		
 		public void setValue(float value) {
 			this.value = value;
 		}
@@ -73,6 +58,13 @@ public class PmcMR {
 			return initialTimestamp;
 		}
 		
+		/**
+		 * @return Amount of points covered by the constant
+		 */
+		public int getPoints() {
+			return points;
+		}
+		
 		public float getValue() {
 			return value;
 		}
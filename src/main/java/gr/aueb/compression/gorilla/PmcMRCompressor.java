@@ -0,0 +1,64 @@
+package gr.aueb.compression.gorilla;
+
+import fi.iki.yak.ts.compression.gorilla.BitOutput;
+
+/**
+ * Stores PMC-MR constants to a bit stream. Can be used directly as the sink of a {@link PmcMREncoder}.
+ *
+ * Block layout:
+ * <pre>
+ * 64 bits block timestamp
+ * for each constant: '1', gap to the previous constant, length, skipped timestamps, value
+ * '0'
+ * </pre>
+ * The gap (initial timestamp - final timestamp of the previous constant, for the first constant the block timestamp
+ * - 1 is used), the length (final timestamp - initial timestamp + 1) and the skipped timestamps (length - amount of
+ * points + 1) are Elias gamma coded, so contiguous constants pay a single bit for the gap and constants with a point
+ * at every timestamp a single bit for the skipped timestamps. The values are XORed against the previous value as in
+ * Compressor32.
+ */
+public class PmcMRCompressor implements ConstantSegmentSink {
+
+	private final BitOutput out;
+	private final ValueCompressor32 valueCompressor;
+
+	private boolean first = true;
+	private long previousFinalTimestamp;
+
+	public PmcMRCompressor(long blockTimestamp, BitOutput output) {
+		this.out = output;
+		this.valueCompressor = new ValueCompressor32(output);
+		this.previousFinalTimestamp = blockTimestamp - 1;
+		out.writeBits(blockTimestamp, 64);
+	}
+
+	@Override
+	public void accept(long initialTimestamp, long finalTimestamp, int points, float value) {
+		long gap = initialTimestamp - previousFinalTimestamp;
+		long length = finalTimestamp - initialTimestamp + 1;
+		if (gap < 1 || gap > Integer.MAX_VALUE || length < 1 || length > Integer.MAX_VALUE
+				|| points < 1 || points > length) {
+			throw new IllegalArgumentException("Constants must be in increasing time order, inside the block");
+		}
+		out.writeBit();
+		EliasGamma.write(out, (int) gap);
+		EliasGamma.write(out, (int) length);
+		EliasGamma.write(out, (int) (length - points + 1));
+		if (first) {
+			first = false;
+			valueCompressor.writeFirst(Float.floatToRawIntBits(value));
+		} else {
+			valueCompressor.compressValue(Float.floatToRawIntBits(value));
+		}
+		previousFinalTimestamp = finalTimestamp;
+	}
+
+	/**
+	 * Closes the block and writes the remaining stuff to the BitOutput.
+	 */
+	public void close() {
+		out.skipBit();
+		out.flush();
+	}
+
+}
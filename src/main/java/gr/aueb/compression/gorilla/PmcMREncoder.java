@@ -0,0 +1,59 @@
+package gr.aueb.compression.gorilla;
+
+/**
+ * Incremental version of {@link PmcMR}. Points are added one at a time and each constant is given to the sink as
+ * soon as the next point breaks the error bound. Only the state of the current constant is kept.
+ */
+public class PmcMREncoder implements SegmentEncoder {
+
+	private final float epsilon;
+	private final ConstantSegmentSink sink;
+
+	private boolean started = false;
+	private long initialTimestamp;
+	private long finalTimestamp;
+	private int points;
+	private float value;
+	private float max;
+	private float min;
+
+	public PmcMREncoder(float epsilon, ConstantSegmentSink sink) {
+		this.epsilon = epsilon;
+		this.sink = sink;
+	}
+
+	@Override
+	public void add(long timestamp, float value) {
+		if (started) {
+			if (value > max) {
+				max = value;
+			}
+			if (value < min) {
+				min = value;
+			}
+			if (max - min <= epsilon) {
+				this.finalTimestamp = timestamp;
+				this.points++;
+				this.value = max - ((max - min) / 2);
+				return;
+			}
+			sink.accept(initialTimestamp, finalTimestamp, points, this.value);
+		}
+		started = true;
+		max = value;
+		min = value;
+		this.initialTimestamp = timestamp;
+		this.finalTimestamp = timestamp;
+		this.points = 1;
+		this.value = value;
+	}
+
+	@Override
+	public void close() {
+		if (started) {
+			sink.accept(initialTimestamp, finalTimestamp, points, value);
+			started = false;
+		}
+	}
+
+}
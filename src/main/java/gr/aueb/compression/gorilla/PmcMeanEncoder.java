@@ -0,0 +1,63 @@
+package gr.aueb.compression.gorilla;
+
+/**
+ * PMC-Mean filter. Like {@link PmcMREncoder}, but each constant is the mean of the values of the segment instead of
+ * the midrange. A segment grows as long as the minimum and the maximum value are within epsilon of the mean.
+ */
+public class PmcMeanEncoder implements SegmentEncoder {
+
+	private final float epsilon;
+	private final ConstantSegmentSink sink;
+
+	private boolean started = false;
+	private long initialTimestamp;
+	private long finalTimestamp;
+	private double sum;
+	private int count;
+	private float max;
+	private float min;
+
+	public PmcMeanEncoder(float epsilon, ConstantSegmentSink sink) {
+		this.epsilon = epsilon;
+		this.sink = sink;
+	}
+
+	@Override
+	public void add(long timestamp, float value) {
+		if (started) {
+			float newMax = Math.max(max, value);
+			float newMin = Math.min(min, value);
+			float mean = (float) ((sum + value) / (count + 1));
+			// Compared with the float mean, which is the value the decompressor returns
+			if ((double) newMax - mean <= epsilon && (double) mean - newMin <= epsilon) {
+				max = newMax;
+				min = newMin;
+				sum += value;
+				count++;
+				finalTimestamp = timestamp;
+				return;
+			}
+			sink.accept(initialTimestamp, finalTimestamp, count, mean());
+		}
+		started = true;
+		max = value;
+		min = value;
+		sum = value;
+		count = 1;
+		initialTimestamp = timestamp;
+		finalTimestamp = timestamp;
+	}
+
+	@Override
+	public void close() {
+		if (started) {
+			sink.accept(initialTimestamp, finalTimestamp, count, mean());
+			started = false;
+		}
+	}
+
+	private float mean() {
+		return (float) (sum / count);
+	}
+
+}
@@ -0,0 +1,79 @@
+package gr.aueb.compression.gorilla;
+
+import fi.iki.yak.ts.compression.gorilla.BitOutput;
+import fi.iki.yak.ts.compression.gorilla.ValueCompressor;
+
+/**
+ * Stores polynomial segments to a bit stream. Can be used directly as the sink of a {@link PolynomialFilterEncoder}.
+ *
+ * Block layout:
+ * <pre>
+ * 64 bits block timestamp
+ * 4 bits degree
+ * for each segment: '1', gap to the previous segment, length, skipped timestamps, degree + 1 coefficients
+ * '0'
+ * </pre>
+ * As in the {@link SwingFilterCompressor}, the gap, the length and the skipped timestamps are Elias gamma coded and
+ * each coefficient is XORed against the same coefficient of the previous segment.
+ */
+public class PolynomialCompressor implements PolynomialSegmentSink {
+
+	public static final int DEGREE_BITS = 4;
+
+	private final BitOutput out;
+	private final ValueCompressor[] coefficientCompressors;
+
+	private boolean first = true;
+	private long previousFinalTimestamp;
+
+	public PolynomialCompressor(long blockTimestamp, int degree, BitOutput output) {
+		if (degree < 0 || degree > PolynomialFilterEncoder.MAX_DEGREE) {
+			throw new IllegalArgumentException("Degree must be between 0 and " + PolynomialFilterEncoder.MAX_DEGREE);
+		}
+		this.out = output;
+		this.coefficientCompressors = new ValueCompressor[degree + 1];
+		for (int i = 0; i < coefficientCompressors.length; i++) {
+			coefficientCompressors[i] = new ValueCompressor(output);
+		}
+		this.previousFinalTimestamp = blockTimestamp - 1;
+		out.writeBits(blockTimestamp, 64);
+		out.writeBits(degree, DEGREE_BITS);
+	}
+
+	@Override
+	public void accept(long initialTimestamp, long finalTimestamp, int points, double[] coefficients) {
+		if (coefficients.length != coefficientCompressors.length) {
+			throw new IllegalArgumentException("Expected " + coefficientCompressors.length + " coefficients");
+		}
+		long gap = initialTimestamp - previousFinalTimestamp;
+		long length = finalTimestamp - initialTimestamp + 1;
+		if (gap < 1 || gap > Integer.MAX_VALUE || length < 1 || length > Integer.MAX_VALUE
+				|| points < 1 || points > length) {
+			throw new IllegalArgumentException("Segments must be in increasing time order, inside the block");
+		}
+		out.writeBit();
+		EliasGamma.write(out, (int) gap);
+		EliasGamma.write(out, (int) length);
+		EliasGamma.write(out, (int) (length - points + 1));
+		if (first) {
+			first = false;
+			for (int i = 0; i < coefficients.length; i++) {
+				coefficientCompressors[i].writeFirst(Double.doubleToRawLongBits(coefficients[i]));
+			}
+		} else {
+			for (int i = 0; i < coefficients.length; i++) {
+				coefficientCompressors[i].compressValue(Double.doubleToRawLongBits(coefficients[i]));
+			}
+		}
+		previousFinalTimestamp = finalTimestamp;
+	}
+
+	/**
+	 * Closes the block and writes the remaining stuff to the BitOutput.
+	 */
+	public void close() {
+		out.skipBit();
+		out.flush();
+	}
+
+}
@@ -0,0 +1,192 @@
+package gr.aueb.compression.gorilla;
+
+import java.util.Arrays;
+
+/**
+ * Fits polynomials of a bounded degree to the series. The polynomial of the current segment is kept as long as it
+ * predicts the new points within epsilon, otherwise the segment is refitted with least squares. If the refitted
+ * polynomial is not within epsilon of every point of the segment, the previous polynomial is given to the sink and a
+ * new segment is started.
+ *
+ * The points of the current segment are needed for refitting, so the length of a segment is capped. The error of
+ * each point is checked with {@link PolynomialFunction#get(double[], long)}, the same evaluation the decompressor
+ * uses.
+ */
+public class PolynomialFilterEncoder implements SegmentEncoder {
+
+	public static final int MAX_DEGREE = 15;
+	public static final int DEFAULT_MAX_LENGTH = 256;
+
+	private final float epsilon;
+	private final int degree;
+	private final PolynomialSegmentSink sink;
+
+	// Points of the current segment
+	private final long[] offsets;
+	private final float[] values;
+	private int count = 0;
+	private long initialTimestamp;
+	private long lastTimestamp;
+
+	private double[] coefficients;
+	private double[] candidate;
+
+	// Least squares work area
+	private final double[][] matrix;
+	private final double[] powers;
+
+	public PolynomialFilterEncoder(int degree, float epsilon, PolynomialSegmentSink sink) {
+		this(degree, epsilon, DEFAULT_MAX_LENGTH, sink);
+	}
+
+	/**
+	 * @param degree Highest degree of the polynomials, between 0 and MAX_DEGREE
+	 * @param epsilon Maximum error
+	 * @param maxLength Maximum amount of points in a segment
+	 * @param sink Receives the segments
+	 */
+	public PolynomialFilterEncoder(int degree, float epsilon, int maxLength, PolynomialSegmentSink sink) {
+		if (degree < 0 || degree > MAX_DEGREE) {
+			throw new IllegalArgumentException("Degree must be between 0 and " + MAX_DEGREE);
+		}
+		if (maxLength < 1) {
+			throw new IllegalArgumentException("Segments must be allowed to have at least one point");
+		}
+		this.epsilon = epsilon;
+		this.degree = degree;
+		this.sink = sink;
+		this.offsets = new long[maxLength];
+		this.values = new float[maxLength];
+		this.coefficients = new double[degree + 1];
+		this.candidate = new double[degree + 1];
+		this.matrix = new double[degree + 1][degree + 2];
+		this.powers = new double[2 * degree + 1];
+	}
+
+	public int getDegree() {
+		return degree;
+	}
+
+	@Override
+	public void add(long timestamp, float value) {
+		if (count > 0 && count < offsets.length) {
+			long offset = timestamp - initialTimestamp;
+			offsets[count] = offset;
+			values[count] = value;
+			if (withinBound(coefficients, offset, value)) {
+				count++;
+				lastTimestamp = timestamp;
+				return;
+			}
+			if (fit(count + 1) && allWithinBound(count + 1)) {
+				double[] previous = coefficients;
+				coefficients = candidate;
+				candidate = previous;
+				count++;
+				lastTimestamp = timestamp;
+				return;
+			}
+		}
+		if (count > 0) {
+			sink.accept(initialTimestamp, lastTimestamp, count, coefficients);
+		}
+		initialTimestamp = timestamp;
+		lastTimestamp = timestamp;
+		offsets[0] = 0;
+		values[0] = value;
+		count = 1;
+		Arrays.fill(coefficients, 0);
+		coefficients[0] = value;
+	}
+
+	@Override
+	public void close() {
+		if (count > 0) {
+			sink.accept(initialTimestamp, lastTimestamp, count, coefficients);
+			count = 0;
+		}
+	}
+
+	private boolean withinBound(double[] polynomial, long offset, float value) {
+		return Math.abs((double) PolynomialFunction.get(polynomial, offset) - value) <= epsilon;
+	}
+
+	private boolean allWithinBound(int n) {
+		for (int i = 0; i < n; i++) {
+			if (!withinBound(candidate, offsets[i], values[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Least squares fit of the first n points to candidate. The offsets are scaled to [0, 1] for the normal equations
+	 * and the coefficients are scaled back afterwards.
+	 *
+	 * @return false if the equations could not be solved
+	 */
+	private boolean fit(int n) {
+		int d = Math.min(degree, n - 1);
+		int size = d + 1;
+		double scale = offsets[n - 1];
+
+		Arrays.fill(powers, 0);
+		for (int i = 0; i < size; i++) {
+			Arrays.fill(matrix[i], 0);
+		}
+		for (int p = 0; p < n; p++) {
+			double u = offsets[p] / scale;
+			double power = 1;
+			for (int k = 0; k <= 2 * d; k++) {
+				powers[k] += power;
+				if (k < size) {
+					matrix[k][size] += power * values[p];
+				}
+				power *= u;
+			}
+		}
+		for (int row = 0; row < size; row++) {
+			for (int column = 0; column < size; column++) {
+				matrix[row][column] = powers[row + column];
+			}
+		}
+
+		// Gaussian elimination with partial pivoting
+		for (int column = 0; column < size; column++) {
+			int pivot = column;
+			for (int row = column + 1; row < size; row++) {
+				if (Math.abs(matrix[row][column]) > Math.abs(matrix[pivot][column])) {
+					pivot = row;
+				}
+			}
+			if (Math.abs(matrix[pivot][column]) < 1e-300) {
+				return false;
+			}
+			double[] tmp = matrix[pivot];
+			matrix[pivot] = matrix[column];
+			matrix[column] = tmp;
+			for (int row = column + 1; row < size; row++) {
+				double factor = matrix[row][column] / matrix[column][column];
+				for (int k = column; k <= size; k++) {
+					matrix[row][k] -= factor * matrix[column][k];
+				}
+			}
+		}
+		Arrays.fill(candidate, 0);
+		for (int row = size - 1; row >= 0; row--) {
+			double sum = matrix[row][size];
+			for (int k = row + 1; k < size; k++) {
+				sum -= matrix[row][k] * candidate[k];
+			}
+			candidate[row] = sum / matrix[row][row];
+		}
+		double factor = 1;
+		for (int k = 1; k < size; k++) {
+			factor *= scale;
+			candidate[k] /= factor;
+		}
+		return true;
+	}
+
+}
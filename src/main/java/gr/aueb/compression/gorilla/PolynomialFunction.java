@@ -0,0 +1,21 @@
+package gr.aueb.compression.gorilla;
+
+/**
+ * Polynomial of a segment, value = c[0] + c[1] * offset + c[2] * offset^2 + ..., where offset is the distance to the
+ * initial timestamp of the segment.
+ */
+public class PolynomialFunction {
+
+	private PolynomialFunction() {
+	}
+
+	public static float get(double[] coefficients, long offset) {
+		double t = offset;
+		double value = coefficients[coefficients.length - 1];
+		for (int i = coefficients.length - 2; i >= 0; i--) {
+			value = value * t + coefficients[i];
+		}
+		return (float) value;
+	}
+
+}
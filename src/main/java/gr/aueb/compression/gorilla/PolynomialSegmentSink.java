@@ -0,0 +1,13 @@
+package gr.aueb.compression.gorilla;
+
+/**
+ * Receives the finished polynomial segments of a filter, see {@link PolynomialFunction} for the coefficients. The
+ * segment covers the given amount of points between its initial and final timestamp, which are the timestamps of its
+ * first and last point. The coefficient array may be reused by the caller after the call returns.
+ */
+@FunctionalInterface
+public interface PolynomialSegmentSink {
+
+	void accept(long initialTimestamp, long finalTimestamp, int points, double[] coefficients);
+
+}
@@ -0,0 +1,140 @@
+package gr.aueb.compression.gorilla;
+
+/**
+ * Computes count, sum, mean, min and max of the decompressed values in the time range [from, to] directly from the
+ * constants of PMC-MR and the linear segments of the swing filter. Each segment is handled in closed form, so the
+ * cost is O(segments) instead of O(points).
+ *
+ * The timestamps of the points are not stored with the segments, only their amount. A segment with a point at every
+ * timestamp between its initial and final timestamp is aggregated exactly. A constant that lies within the range as
+ * a whole is aggregated exactly as well, any other segment with gaps between its points throws an
+ * IllegalStateException, as the points in the range are not known. Such series are aggregated with their timestamps
+ * by the aggregate methods of the decompressors that take a timestamp stream. The sum of a linear segment is computed
+ * from the line and may differ from the sum of the float values returned by the decompressor by the float rounding of
+ * each value.
+ */
+public class SegmentAggregator implements ConstantSegmentSink, LinearSegmentSink {
+
+	private final long from;
+	private final long to;
+
+	private long count = 0;
+	private double sum = 0;
+	private float min = Float.POSITIVE_INFINITY;
+	private float max = Float.NEGATIVE_INFINITY;
+
+	/**
+	 * @param from First timestamp of the range, inclusive
+	 * @param to Last timestamp of the range, inclusive
+	 */
+	public SegmentAggregator(long from, long to) {
+		this.from = from;
+		this.to = to;
+	}
+
+	@Override
+	public void accept(long initialTimestamp, long finalTimestamp, int points, float value) {
+		if (initialTimestamp >= from && finalTimestamp <= to) {
+			add(points, value);
+			return;
+		}
+		long first = Math.max(initialTimestamp, from);
+		long last = Math.min(finalTimestamp, to);
+		if (first > last) {
+			return;
+		}
+		checkGaps(initialTimestamp, finalTimestamp, points);
+		add(last - first + 1, value);
+	}
+
+	@Override
+	public void accept(long initialTimestamp, long finalTimestamp, int points, double a, double b) {
+		long first = Math.max(initialTimestamp, from);
+		long last = Math.min(finalTimestamp, to);
+		if (first > last) {
+			return;
+		}
+		checkGaps(initialTimestamp, finalTimestamp, points);
+		long n = last - first + 1;
+		// Sum of an arithmetic progression
+		add(n, first, last, n * (n - 1) / 2, a, b);
+	}
+
+	private static void checkGaps(long initialTimestamp, long finalTimestamp, int points) {
+		if (finalTimestamp - initialTimestamp + 1 != points) {
+			throw new IllegalStateException("Segment from " + initialTimestamp + " to " + finalTimestamp + " has "
+					+ points + " points, the points in the range are known only from their timestamps");
+		}
+	}
+
+	/**
+	 * Adds count points of a constant in the range
+	 */
+	void add(long count, float value) {
+		if (count == 0) {
+			return;
+		}
+		this.count += count;
+		sum += count * (double) value;
+		min = Math.min(min, value);
+		max = Math.max(max, value);
+	}
+
+	/**
+	 * Adds count points of a line in the range
+	 *
+	 * @param first Timestamp of the first point in the range
+	 * @param last Timestamp of the last point in the range
+	 * @param offsetSum Sum of the distances of the points in the range to the first one
+	 */
+	void add(long count, long first, long last, long offsetSum, double a, double b) {
+		if (count == 0) {
+			return;
+		}
+		this.count += count;
+		sum += count * (a * first + b) + a * offsetSum;
+		// The line is monotonic, the extremes are at the ends of the range
+		float firstValue = LinearFunction.get(a, b, first);
+		float lastValue = LinearFunction.get(a, b, last);
+		min = Math.min(min, Math.min(firstValue, lastValue));
+		max = Math.max(max, Math.max(firstValue, lastValue));
+	}
+
+	public long getFrom() {
+		return from;
+	}
+
+	public long getTo() {
+		return to;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public double getSum() {
+		return sum;
+	}
+
+	/**
+	 * @return Mean of the values in the range, NaN if the range has no values
+	 */
+	public double getMean() {
+		return count == 0 ? Double.NaN : sum / count;
+	}
+
+	/**
+	 * @return Smallest value in the range, positive infinity if the range has no values
+	 */
+	public float getMin() {
+		return min;
+	}
+
+	/**
+	 * @return Largest value in the range, negative infinity if the range has no values
+	 */
+	public float getMax() {
+		return max;
+	}
+
+}
@@ -0,0 +1,22 @@
+package gr.aueb.compression.gorilla;
+
+/**
+ * Streaming encoder of a model based lossy filter. Points are added one at a time and each finished segment is
+ * given to the sink of the encoder, so the encoders can be swapped without changing the code feeding them.
+ */
+public interface SegmentEncoder {
+
+	/**
+	 * Adds the next point, timestamps must be increasing.
+	 *
+	 * @param timestamp Timestamp of the point
+	 * @param value Value of the point
+	 */
+	void add(long timestamp, float value);
+
+	/**
+	 * Gives the last, unfinished, segment to the sink. The encoder can be reused after closing.
+	 */
+	void close();
+
+}
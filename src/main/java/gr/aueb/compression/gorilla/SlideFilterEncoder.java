@@ -0,0 +1,173 @@
+package gr.aueb.compression.gorilla;
+
+import java.util.Arrays;
+
+/**
+ * Slide filter. Unlike the {@link SwingFilterEncoder}, the line of a segment does not have to pass through the first
+ * point of the segment, which gives longer segments on noisy data.
+ *
+ * Each point (t, x) allows the lines passing between (t, x - epsilon) and (t, x + epsilon). The encoder keeps the
+ * steepest (upper) and the flattest (lower) line allowed by all the points of the segment. A point outside of the
+ * lines, with the tolerance, ends the segment and the line halfway between the upper and the lower line is given to
+ * the sink. The new upper line passes through (t, x + epsilon) and touches the upper convex hull of the
+ * (t, x - epsilon) points, the lower line is found from the lower convex hull of the (t, x + epsilon) points. Only the
+ * hulls are kept, which are usually a small fraction of the points of the segment.
+ */
+public class SlideFilterEncoder implements SegmentEncoder {
+
+	private static final int INITIAL_HULL_SIZE = 16;
+
+	private final float epsilon;
+	private final LinearSegmentSink sink;
+
+	private boolean started = false;
+	private long initialTimestamp;
+	private float initialValue;
+	private long lastTimestamp;
+	private int points;
+
+	// Lines are relative to the initial timestamp, value = a * (timestamp - initialTimestamp) + b
+	private boolean bounded = false;
+	private double upperA;
+	private double upperB;
+	private double lowerA;
+	private double lowerB;
+
+	// Upper convex hull of the (t, x - epsilon) points
+	private double[] floorHullT = new double[INITIAL_HULL_SIZE];
+	private double[] floorHullV = new double[INITIAL_HULL_SIZE];
+	private int floorHullSize;
+
+	// Lower convex hull of the (t, x + epsilon) points
+	private double[] ceilingHullT = new double[INITIAL_HULL_SIZE];
+	private double[] ceilingHullV = new double[INITIAL_HULL_SIZE];
+	private int ceilingHullSize;
+
+	public SlideFilterEncoder(float epsilon, LinearSegmentSink sink) {
+		this.epsilon = epsilon;
+		this.sink = sink;
+	}
+
+	@Override
+	public void add(long timestamp, float value) {
+		if (!started) {
+			start(timestamp, value);
+			return;
+		}
+		double t = timestamp - initialTimestamp;
+		double tolerance = tolerance(value);
+		double floor = (double) value - tolerance;
+		double ceiling = (double) value + tolerance;
+		if (!bounded) {
+			upperA = (ceiling - floorHullV[0]) / t;
+			upperB = floorHullV[0];
+			lowerA = (floor - ceilingHullV[0]) / t;
+			lowerB = ceilingHullV[0];
+			bounded = true;
+		} else {
+			double upper = upperA * t + upperB;
+			double lower = lowerA * t + lowerB;
+			if (floor > upper || ceiling < lower) {
+				emit();
+				start(timestamp, value);
+				return;
+			}
+			if (ceiling < upper) {
+				// Flattest line from the new ceiling to the floor hull
+				double a = Double.POSITIVE_INFINITY;
+				for (int i = 0; i < floorHullSize; i++) {
+					a = Math.min(a, (ceiling - floorHullV[i]) / (t - floorHullT[i]));
+				}
+				upperA = a;
+				upperB = ceiling - a * t;
+			}
+			if (floor > lower) {
+				// Steepest line from the new floor to the ceiling hull
+				double a = Double.NEGATIVE_INFINITY;
+				for (int i = 0; i < ceilingHullSize; i++) {
+					a = Math.max(a, (floor - ceilingHullV[i]) / (t - ceilingHullT[i]));
+				}
+				lowerA = a;
+				lowerB = floor - a * t;
+			}
+		}
+		addToHulls(t, floor, ceiling);
+		lastTimestamp = timestamp;
+		points++;
+	}
+
+	@Override
+	public void close() {
+		if (started) {
+			emit();
+			started = false;
+			bounded = false;
+		}
+	}
+
+	private void start(long timestamp, float value) {
+		started = true;
+		bounded = false;
+		initialTimestamp = timestamp;
+		initialValue = value;
+		lastTimestamp = timestamp;
+		points = 1;
+		floorHullSize = 0;
+		ceilingHullSize = 0;
+		double tolerance = tolerance(value);
+		addToHulls(0, (double) value - tolerance, (double) value + tolerance);
+	}
+
+	/**
+	 * The decompressed values are rounded to float, so the lines are kept one float ulp inside the error bound
+	 */
+	private double tolerance(float value) {
+		return Math.max(0, epsilon - Math.ulp(Math.abs(value) + epsilon));
+	}
+
+	private void addToHulls(double t, double floor, double ceiling) {
+		while (floorHullSize >= 2 && cross(floorHullT, floorHullV, floorHullSize, t, floor) >= 0) {
+			floorHullSize--;
+		}
+		while (ceilingHullSize >= 2 && cross(ceilingHullT, ceilingHullV, ceilingHullSize, t, ceiling) <= 0) {
+			ceilingHullSize--;
+		}
+		if (floorHullSize == floorHullT.length) {
+			floorHullT = Arrays.copyOf(floorHullT, floorHullSize * 2);
+			floorHullV = Arrays.copyOf(floorHullV, floorHullSize * 2);
+		}
+		if (ceilingHullSize == ceilingHullT.length) {
+			ceilingHullT = Arrays.copyOf(ceilingHullT, ceilingHullSize * 2);
+			ceilingHullV = Arrays.copyOf(ceilingHullV, ceilingHullSize * 2);
+		}
+		floorHullT[floorHullSize] = t;
+		floorHullV[floorHullSize++] = floor;
+		ceilingHullT[ceilingHullSize] = t;
+		ceilingHullV[ceilingHullSize++] = ceiling;
+	}
+
+	/**
+	 * Cross product of the last two hull points and the new point, positive for a counterclockwise turn
+	 */
+	private static double cross(double[] hullT, double[] hullV, int size, double t, double v) {
+		double t1 = hullT[size - 2];
+		double v1 = hullV[size - 2];
+		double t2 = hullT[size - 1];
+		double v2 = hullV[size - 1];
+		return (t2 - t1) * (v - v1) - (v2 - v1) * (t - t1);
+	}
+
+	private void emit() {
+		double a;
+		double b;
+		if (bounded) {
+			a = (upperA + lowerA) / 2;
+			b = (upperB + lowerB) / 2;
+		} else {
+			a = 0;
+			b = initialValue;
+		}
+		sink.accept(initialTimestamp, lastTimestamp, points, a, b - a * initialTimestamp);
+	}
+
+}
@@ -12,48 +12,13 @@ public class SwingFilter {
 
 		List<SwingSegment> swingSegments = new ArrayList<>();
 
-		Point first = null;
-		LinearFunction uiOld = null;
-		LinearFunction liOld = null;
-		Point last = null;
-
+		SwingFilterEncoder encoder = new SwingFilterEncoder(epsilon,
+				(initialTimestamp, finalTimestamp, count, a, b) -> swingSegments.add(
+						new SwingSegment(initialTimestamp, finalTimestamp, count, new LinearFunction(a, b))));
 		for (Point point : points) {
-			last = point;
-			if (first == null) {
-				first = point;
-			}
-			else {
-				if (uiOld != null && liOld !=null && (uiOld.get(point.getTimestamp()) < point.getValue() || liOld.get(point.getTimestamp()) > point.getValue())) {
-					LinearFunction line = new LinearFunction(first.getTimestamp(), first.getValue(), point.getTimestamp(), (uiOld.get(point.getTimestamp()) + liOld.get(point.getTimestamp())) / 2);
-//					System.out.println("need to start new line: " + line.toString() + " : " + first.getTimestamp() + " " + (point.getTimestamp() - 1));
-					swingSegments.add(new SwingSegment(first.getTimestamp(), point.getTimestamp() - 1, line));
-					uiOld = null;
-					liOld = null;
-					first = point;
-				} else {
-					LinearFunction uiNew = new LinearFunction(first.getTimestamp(), first.getValue(), point.getTimestamp(), point.getValue() + epsilon);
-					LinearFunction liNew = new LinearFunction(first.getTimestamp(), first.getValue(), point.getTimestamp(), point.getValue() - epsilon);
-
-					if (uiOld == null || uiOld.get(point.getTimestamp()) > uiNew.get(point.getTimestamp())) {
-						uiOld = uiNew;
-//						System.out.println("resetting upper: " + uiOld);
-					}
-					if (liOld == null || liOld.get(point.getTimestamp()) < liNew.get(point.getTimestamp())) {
-						liOld = liNew;
-//						System.out.println("resetting lower: " + liOld);
-					}
-				}
-			}
-		}
-
-		if (uiOld != null && liOld !=null) {
-//			System.out.println("need to start new line");
-			LinearFunction line = new LinearFunction(first.getTimestamp(), first.getValue(), last.getTimestamp(), (uiOld.get(last.getTimestamp()) + liOld.get(last.getTimestamp())) / 2);
-			swingSegments.add(new SwingSegment(first.getTimestamp(), last.getTimestamp(), line));
-		} else {
-			LinearFunction line = new LinearFunction(first.getTimestamp(), first.getValue(), first.getTimestamp() + 1, first.getValue());
-			swingSegments.add(new SwingSegment(first.getTimestamp(), first.getTimestamp(), line));
+			encoder.add(point.getTimestamp(), point.getValue());
 		}
+		encoder.close();
 
 		return swingSegments;
 	}
@@ -63,11 +28,20 @@ public class SwingFilter {
 
 		private long initialTimestamp;
 		private long finalTimestamp;
+		private int points;
 		private LinearFunction line;
 
+		/**
+		 * Creates a segment with a point at every timestamp between the initial and the final timestamp
+		 */
 		public SwingSegment(long initialTimestamp, long finalTimestamp, LinearFunction line) {
+			this(initialTimestamp, finalTimestamp, (int) (finalTimestamp - initialTimestamp + 1), line);
+		}
+
+		public SwingSegment(long initialTimestamp, long finalTimestamp, int points, LinearFunction line) {
 			this.initialTimestamp = initialTimestamp;
 			this.finalTimestamp = finalTimestamp;
+			this.points = points;
 			this.line = line;
 		}
 
@@ -79,6 +53,13 @@ public class SwingFilter {
 			return initialTimestamp;
 		}
 
+		/**
+		 * @return Amount of points covered by the segment
+		 */
+		public int getPoints() {
+			return points;
+		}
+
 		public LinearFunction getLine() {
 			return line;
 		}
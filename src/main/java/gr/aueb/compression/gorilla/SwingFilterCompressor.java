@@ -0,0 +1,69 @@
+package gr.aueb.compression.gorilla;
+
+import fi.iki.yak.ts.compression.gorilla.BitOutput;
+import fi.iki.yak.ts.compression.gorilla.ValueCompressor;
+
+/**
+ * Stores swing segments to a bit stream. Can be used directly as the sink of a {@link SwingFilterEncoder}.
+ *
+ * Block layout:
+ * <pre>
+ * 64 bits block timestamp
+ * for each segment: '1', gap to the previous segment, length, skipped timestamps, slope, intercept
+ * '0'
+ * </pre>
+ * The gap (initial timestamp - final timestamp of the previous segment, for the first segment the block timestamp
+ * - 1 is used), the length (final timestamp - initial timestamp + 1) and the skipped timestamps (length - amount of
+ * points + 1) are coded with {@link EliasGamma}, so each segment keeps its amount of points and the timestamp of its
+ * last point. The slope and the intercept are XORed against the previous segment's slope and intercept as in the
+ * Gorilla value compression.
+ */
+public class SwingFilterCompressor implements LinearSegmentSink {
+
+	private final BitOutput out;
+	private final ValueCompressor slopeCompressor;
+	private final ValueCompressor interceptCompressor;
+
+	private boolean first = true;
+	private long previousFinalTimestamp;
+
+	public SwingFilterCompressor(long blockTimestamp, BitOutput output) {
+		this.out = output;
+		this.slopeCompressor = new ValueCompressor(output);
+		this.interceptCompressor = new ValueCompressor(output);
+		this.previousFinalTimestamp = blockTimestamp - 1;
+		out.writeBits(blockTimestamp, 64);
+	}
+
+	@Override
+	public void accept(long initialTimestamp, long finalTimestamp, int points, double a, double b) {
+		long gap = initialTimestamp - previousFinalTimestamp;
+		long length = finalTimestamp - initialTimestamp + 1;
+		if (gap < 1 || gap > Integer.MAX_VALUE || length < 1 || length > Integer.MAX_VALUE
+				|| points < 1 || points > length) {
+			throw new IllegalArgumentException("Segments must be in increasing time order, inside the block");
+		}
+		out.writeBit();
+		EliasGamma.write(out, (int) gap);
+		EliasGamma.write(out, (int) length);
+		EliasGamma.write(out, (int) (length - points + 1));
+		if (first) {
+			first = false;
+			slopeCompressor.writeFirst(Double.doubleToRawLongBits(a));
+			interceptCompressor.writeFirst(Double.doubleToRawLongBits(b));
+		} else {
+			slopeCompressor.compressValue(Double.doubleToRawLongBits(a));
+			interceptCompressor.compressValue(Double.doubleToRawLongBits(b));
+		}
+		previousFinalTimestamp = finalTimestamp;
+	}
+
+	/**
+	 * Closes the block and writes the remaining stuff to the BitOutput.
+	 */
+	public void close() {
+		out.skipBit();
+		out.flush();
+	}
+
+}
@@ -0,0 +1,103 @@
+package gr.aueb.compression.gorilla;
+
+/**
+ * Incremental version of the {@link SwingFilter}. Points are added one at a time and each segment is given to the
+ * sink as soon as the next point breaks the error bound. Only the state of the current segment is kept, so the
+ * encoder runs in constant memory and does not allocate per point.
+ *
+ * A segment ends at the timestamp of its last point, so the timestamps do not need to be evenly spaced.
+ */
+public class SwingFilterEncoder implements SegmentEncoder {
+
+	private final float epsilon;
+	private final LinearSegmentSink sink;
+
+	private boolean started = false;
+	private long initialTimestamp;
+	private float initialValue;
+	private long lastTimestamp;
+	private int points;
+
+	// Upper and lower lines, both pass through the first point of the segment
+	private boolean bounded = false;
+	private double upperA;
+	private double upperB;
+	private double lowerA;
+	private double lowerB;
+
+	public SwingFilterEncoder(float epsilon, LinearSegmentSink sink) {
+		this.epsilon = epsilon;
+		this.sink = sink;
+	}
+
+	@Override
+	public void add(long timestamp, float value) {
+		if (!started) {
+			start(timestamp, value);
+			return;
+		}
+		if (bounded) {
+			float upper = LinearFunction.get(upperA, upperB, timestamp);
+			float lower = LinearFunction.get(lowerA, lowerB, timestamp);
+			if (upper < value || lower > value) {
+				emit(timestamp, (upper + lower) / 2, lastTimestamp);
+				start(timestamp, value);
+				return;
+			}
+		}
+
+		double newUpperA = LinearFunction.slope(initialTimestamp, initialValue, timestamp, value + epsilon);
+		double newUpperB = LinearFunction.intercept(initialTimestamp, initialValue, newUpperA);
+		double newLowerA = LinearFunction.slope(initialTimestamp, initialValue, timestamp, value - epsilon);
+		double newLowerB = LinearFunction.intercept(initialTimestamp, initialValue, newLowerA);
+
+		if (!bounded || LinearFunction.get(upperA, upperB, timestamp)
+				> LinearFunction.get(newUpperA, newUpperB, timestamp)) {
+			upperA = newUpperA;
+			upperB = newUpperB;
+		}
+		if (!bounded || LinearFunction.get(lowerA, lowerB, timestamp)
+				< LinearFunction.get(newLowerA, newLowerB, timestamp)) {
+			lowerA = newLowerA;
+			lowerB = newLowerB;
+		}
+		bounded = true;
+		lastTimestamp = timestamp;
+		points++;
+	}
+
+	@Override
+	public void close() {
+		if (!started) {
+			return;
+		}
+		if (bounded) {
+			float upper = LinearFunction.get(upperA, upperB, lastTimestamp);
+			float lower = LinearFunction.get(lowerA, lowerB, lastTimestamp);
+			emit(lastTimestamp, (upper + lower) / 2, lastTimestamp);
+		} else {
+			emit(initialTimestamp + 1, initialValue, initialTimestamp);
+		}
+		started = false;
+		bounded = false;
+	}
+
+	private void start(long timestamp, float value) {
+		started = true;
+		bounded = false;
+		initialTimestamp = timestamp;
+		initialValue = value;
+		lastTimestamp = timestamp;
+		points = 1;
+	}
+
+	/**
+	 * Emits the segment with the line passing through the first point of the segment and (timestamp, value)
+	 */
+	private void emit(long timestamp, float value, long finalTimestamp) {
+		double a = LinearFunction.slope(initialTimestamp, initialValue, timestamp, value);
+		double b = LinearFunction.intercept(initialTimestamp, initialValue, a);
+		sink.accept(initialTimestamp, finalTimestamp, points, a, b);
+	}
+
+}
@@ -0,0 +1,48 @@
+package gr.aueb.compression.gorilla;
+
+import fi.iki.yak.ts.compression.gorilla.BitOutput;
+import fi.iki.yak.ts.compression.gorilla.TimestampCompressor;
+
+/**
+ * Stores only the timestamps of a series, in the same format as the timestamps of the GorillaCompressor. Used next
+ * to the segment streams of the lossy filters, which do not keep the timestamps of the individual points.
+ *
+ * Block layout: 64 bits block timestamp, first timestamp as a delta, delta-of-deltas, end of stream marker.
+ */
+public class TimestampStreamCompressor {
+
+	private final BitOutput out;
+	private final TimestampCompressor timestampCompressor;
+
+	private boolean first = true;
+
+	public TimestampStreamCompressor(long blockTimestamp, BitOutput output) {
+		this.out = output;
+		this.timestampCompressor = new TimestampCompressor(blockTimestamp, output);
+		out.writeBits(blockTimestamp, 64);
+	}
+
+	/**
+	 * Adds the next timestamp, timestamps must be increasing and inside the block.
+	 *
+	 * @param timestamp Timestamp of the point
+	 */
+	public void addTimestamp(long timestamp) {
+		if (first) {
+			first = false;
+			timestampCompressor.writeFirst(timestamp);
+		} else {
+			timestampCompressor.compressTimestamp(timestamp);
+		}
+	}
+
+	/**
+	 * Closes the block and writes the remaining stuff to the BitOutput.
+	 */
+	public void close() {
+		timestampCompressor.writeEndOfStream();
+		out.skipBit();
+		out.flush();
+	}
+
+}
@@ -0,0 +1,101 @@
+package gr.aueb.compression.gorilla;
+
+import fi.iki.yak.ts.compression.gorilla.BitOutput;
+
+/**
+ * ValueCompressor for 32 bit values, uses the same XOR encoding as Compressor32. Supply with int presentation of the
+ * value, in case of floats use Float.floatToRawIntBits(value)
+ */
+public class ValueCompressor32 {
+
+    private int storedLeadingZeros = Integer.MAX_VALUE;
+    private int storedTrailingZeros = 0;
+    private int storedVal = 0;
+
+    private final BitOutput out;
+
+    public ValueCompressor32(BitOutput out) {
+        this.out = out;
+    }
+
+    /**
+     * Creates a compressor that continues from the state of another one, but writes to a different stream. Can be
+     * used to find out the cost of values without touching the original stream.
+     *
+     * @param other Compressor to copy the state from
+     * @param out Stream to write to
+     */
+    public ValueCompressor32(ValueCompressor32 other, BitOutput out) {
+        this.out = out;
+        this.storedLeadingZeros = other.storedLeadingZeros;
+        this.storedTrailingZeros = other.storedTrailingZeros;
+        this.storedVal = other.storedVal;
+    }
+
+    public void writeFirst(int value) {
+        storedVal = value;
+        out.writeBits(value, 32);
+    }
+
+    public void compressValue(int value) {
+        int xor = storedVal ^ value;
+
+        if(xor == 0) {
+            // Write 0
+            out.skipBit();
+        } else {
+            int leadingZeros = Integer.numberOfLeadingZeros(xor);
+            int trailingZeros = Integer.numberOfTrailingZeros(xor);
+
+            // Check overflow of leading? Can't be 32!
+            if(leadingZeros >= 16) {
+                leadingZeros = 15;
+            }
+
+            // Store bit '1'
+            out.writeBit();
+
+            if(leadingZeros >= storedLeadingZeros && trailingZeros >= storedTrailingZeros) {
+                writeExistingLeading(xor);
+            } else {
+                writeNewLeading(xor, leadingZeros, trailingZeros);
+            }
+        }
+
+        storedVal = value;
+    }
+
+    /**
+     * If there at least as many leading zeros and as many trailing zeros as previous value, control bit = 0 (type a)
+     * store the meaningful XORed value
+     *
+     * @param xor XOR between previous value and current
+     */
+    private void writeExistingLeading(int xor) {
+        out.skipBit();
+        int significantBits = 32 - storedLeadingZeros - storedTrailingZeros;
+        out.writeBits(xor >>> storedTrailingZeros, significantBits);
+    }
+
+    /**
+     * store the length of the number of leading zeros in the next 4 bits
+     * store length of the meaningful XORed value in the next 5 bits,
+     * store the meaningful bits of the XORed value
+     * (type b)
+     *
+     * @param xor XOR between previous value and current
+     * @param leadingZeros New leading zeros
+     * @param trailingZeros New trailing zeros
+     */
+    private void writeNewLeading(int xor, int leadingZeros, int trailingZeros) {
+        out.writeBit();
+        out.writeBits(leadingZeros, 4); // Number of leading zeros in the next 4 bits
+
+        int significantBits = 32 - leadingZeros - trailingZeros;
+        out.writeBits(significantBits, 5); // Length of meaningful bits in the next 5 bits, 32 is stored as 0
+        out.writeBits(xor >>> trailingZeros, significantBits); // Store the meaningful bits of XOR
+
+        storedLeadingZeros = leadingZeros;
+        storedTrailingZeros = trailingZeros;
+    }
+}
@@ -0,0 +1,43 @@
+package gr.aueb.compression.gorilla;
+
+import fi.iki.yak.ts.compression.gorilla.BitInput;
+
+/**
+ * Value decompressor for values stored by the ValueCompressor32
+ */
+public class ValueDecompressor32 {
+
+    private int storedLeadingZeros = Integer.MAX_VALUE;
+    private int storedTrailingZeros = 0;
+    private int storedVal = 0;
+
+    private final BitInput in;
+
+    public ValueDecompressor32(BitInput input) {
+        this.in = input;
+    }
+
+    public int readFirst() {
+        storedVal = (int) in.getLong(32);
+        return storedVal;
+    }
+
+    public int nextValue() {
+        if (in.readBit()) {
+            if (in.readBit()) {
+                // New leading and trailing zeros
+                storedLeadingZeros = (int) in.getLong(4);
+
+                byte significantBits = (byte) in.getLong(5);
+                if(significantBits == 0) {
+                    significantBits = 32;
+                }
+                storedTrailingZeros = 32 - significantBits - storedLeadingZeros;
+            }
+            int value = (int) in.getLong(32 - storedLeadingZeros - storedTrailingZeros);
+            value <<= storedTrailingZeros;
+            storedVal = storedVal ^ value;
+        }
+        return storedVal;
+    }
+}
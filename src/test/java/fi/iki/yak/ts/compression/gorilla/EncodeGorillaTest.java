@@ -1,19 +1,34 @@
 package fi.iki.yak.ts.compression.gorilla;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.Month;
 import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Spliterator;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.stream.LongStream;
 
 import org.junit.jupiter.api.Test;
 
 import fi.iki.yak.ts.compression.gorilla.predictors.DifferentialFCM;
+import fi.iki.yak.ts.compression.gorilla.predictors.LastValuePredictor;
 
 /**
  * These are generic tests to test that input matches the output after compression + decompression cycle, using
@@ -461,6 +476,157 @@ public class EncodeGorillaTest {
         assertNull(d.readPair());
     }
 
+    /**
+     * ByteBufferBitOutput writes whole words, but the stored bytes must stay identical to the big endian bit stream
+     * (the same bit stream LongArrayOutput stores).
+     */
+    @Test
+    void testByteBufferStreamCompatibility() throws Exception {
+        int amountOfPoints = 10000;
+        long blockStart = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS)
+                .toInstant(ZoneOffset.UTC).toEpochMilli();
+
+        ByteBufferBitOutput output = new ByteBufferBitOutput();
+        LongArrayOutput arrayOutput = new LongArrayOutput();
+        GorillaCompressor c = new GorillaCompressor(blockStart, output);
+        GorillaCompressor ac = new GorillaCompressor(blockStart, arrayOutput);
+
+        long[] timestamps = new long[amountOfPoints];
+        double[] values = new double[amountOfPoints];
+        for(int i = 0; i < amountOfPoints; i++) {
+            timestamps[i] = blockStart + i * 60 + ThreadLocalRandom.current().nextInt(10);
+            values[i] = i * Math.random();
+            c.addValue(timestamps[i], values[i]);
+            ac.addValue(timestamps[i], values[i]);
+        }
+        c.close();
+        ac.close();
+
+        ByteBuffer byteBuffer = output.getByteBuffer();
+        byteBuffer.flip();
+        byte[] bytes = new byte[byteBuffer.remaining()];
+        byteBuffer.duplicate().get(bytes);
+
+        long[] longs = arrayOutput.getLongArray();
+        ByteBuffer expected = ByteBuffer.allocate(longs.length * Long.BYTES);
+        expected.asLongBuffer().put(longs);
+        for(int i = 0; i < bytes.length; i++) {
+            assertEquals(expected.get(i), bytes[i], "Byte did not match at position " + i);
+        }
+
+        // Heap buffer with a different byte order must still be read as big endian
+        ByteBufferBitInput input = new ByteBufferBitInput(ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN));
+        GorillaDecompressor d = new GorillaDecompressor(input);
+        for(int i = 0; i < amountOfPoints; i++) {
+            Pair pair = d.readPair();
+            assertEquals(timestamps[i], pair.getTimestamp(), "Expected timestamp did not match at point " + i);
+            assertEquals(values[i], pair.getDoubleValue());
+        }
+        assertNull(d.readPair());
+    }
+
+    /**
+     * LongArrayAccumulatorOutput must produce exactly the same stream as LongArrayOutput
+     */
+    @Test
+    void testAccumulatorOutputMatchesLongArrayOutput() throws Exception {
+        int amountOfPoints = 100000;
+        long blockStart = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS)
+                .toInstant(ZoneOffset.UTC).toEpochMilli();
+
+        LongArrayOutput output = new LongArrayOutput();
+        LongArrayAccumulatorOutput accumulatorOutput = new LongArrayAccumulatorOutput();
+        GorillaCompressor c = new GorillaCompressor(blockStart, output);
+        GorillaCompressor ac = new GorillaCompressor(blockStart, accumulatorOutput);
+
+        long now = blockStart;
+        for(int i = 0; i < amountOfPoints; i++) {
+            now += ThreadLocalRandom.current().nextInt(1, 5000);
+            long value = (i % 3 == 0) ? ThreadLocalRandom.current().nextLong() : Double.doubleToRawLongBits(i * Math.random());
+            c.addValue(now, value);
+            ac.addValue(now, value);
+        }
+        c.close();
+        ac.close();
+
+        long[] expected = output.getLongArray();
+        long[] actual = accumulatorOutput.getLongArray();
+        assertEquals(expected.length, actual.length);
+        for(int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], actual[i], "Word did not match at position " + i);
+        }
+    }
+
+    /**
+     * Interleaved timestamp / value streams should pass through compression without Pair objects
+     */
+    @Test
+    void testLongStreamEncoding() throws Exception {
+        int amountOfPoints = 10000;
+        long blockStart = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS)
+                .toInstant(ZoneOffset.UTC).toEpochMilli();
+
+        long[] interleaved = new long[amountOfPoints * 2];
+        for(int i = 0; i < amountOfPoints; i++) {
+            interleaved[2*i] = blockStart + 60 + i*60;
+            interleaved[2*i + 1] = Double.doubleToRawLongBits(i * Math.random());
+        }
+
+        LongArrayOutput output = new LongArrayOutput();
+        GorillaCompressor c = new GorillaCompressor(blockStart, output);
+        c.compressLongStream(LongStream.of(interleaved));
+        c.close();
+
+        GorillaDecompressor d = new GorillaDecompressor(new LongArrayInput(output.getLongArray()));
+        long[] decompressed = d.longStream().toArray();
+        assertArrayEquals(interleaved, decompressed);
+        assertNull(d.readPair());
+
+        // Spliterator can be consumed one long at a time as well
+        GorillaDecompressor d2 = new GorillaDecompressor(new LongArrayInput(output.getLongArray()));
+        Spliterator.OfLong spliterator = d2.spliterator();
+        long[] holder = new long[1];
+        for(int i = 0; i < interleaved.length; i++) {
+            assertTrue(spliterator.tryAdvance((long l) -> holder[0] = l));
+            assertEquals(interleaved[i], holder[0], "Value did not match at position " + i);
+        }
+        assertFalse(spliterator.tryAdvance((long l) -> holder[0] = l));
+    }
+
+    @Test
+    void testIncompleteStreamIsRejected() throws Exception {
+        GorillaCompressor c = new GorillaCompressor(0, new LongArrayOutput());
+        assertThrows(IllegalArgumentException.class, () -> c.compressLongStream(LongStream.of(1L, 2L, 3L)));
+    }
+
+    @Test
+    void testDecodeToConsumer() throws Exception {
+        int amountOfPoints = 10000;
+        long blockStart = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS)
+                .toInstant(ZoneOffset.UTC).toEpochMilli();
+
+        long[] timestamps = new long[amountOfPoints];
+        double[] values = new double[amountOfPoints];
+
+        LongArrayOutput output = new LongArrayOutput();
+        GorillaCompressor c = new GorillaCompressor(blockStart, output);
+        for(int i = 0; i < amountOfPoints; i++) {
+            timestamps[i] = blockStart + 60 + i*60;
+            values[i] = i * Math.random();
+            c.addValue(timestamps[i], values[i]);
+        }
+        c.close();
+
+        int[] index = new int[1];
+        int count = GorillaDecompressor.decode(new LongArrayInput(output.getLongArray()), (timestamp, value) -> {
+            assertEquals(timestamps[index[0]], timestamp, "Expected timestamp did not match at point " + index[0]);
+            assertEquals(values[index[0]], Double.longBitsToDouble(value));
+            index[0]++;
+        });
+        assertEquals(amountOfPoints, count);
+        assertEquals(amountOfPoints, index[0]);
+    }
+
     /**
      * Although not intended usage, an empty block should not cause errors
      */
@@ -588,4 +754,659 @@ public class EncodeGorillaTest {
         assertNull(d.readPair());
     }
 
+    @Test
+    void testLossyDoubleCompression() throws Exception {
+        int amountOfPoints = 10000;
+        long blockStart = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS)
+                .toInstant(ZoneOffset.UTC).toEpochMilli();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        // High resolution telemetry, a random walk with plenty of noise in the low bits
+        long[] timestamps = new long[amountOfPoints];
+        double[] values = new double[amountOfPoints];
+        double value = 100;
+        for(int i = 0; i < amountOfPoints; i++) {
+            timestamps[i] = blockStart + 60 + i * 1000;
+            value += random.nextGaussian() * 0.01;
+            values[i] = value;
+        }
+        values[amountOfPoints / 2] = Double.NaN;
+        values[amountOfPoints / 2 + 1] = Double.POSITIVE_INFINITY;
+
+        for(double maxError : new double[] { 1e-3, 1e-6, 0.5 }) {
+            for(boolean dfcm : new boolean[] { false, true }) {
+                LongArrayOutput lossless = new LongArrayOutput();
+                GorillaCompressor lc = dfcm ? new GorillaCompressor(blockStart, lossless, new DifferentialFCM(1024))
+                        : new GorillaCompressor(blockStart, lossless);
+                LongArrayOutput output = new LongArrayOutput();
+                GorillaCompressor c = new GorillaCompressor(blockStart, output,
+                        dfcm ? new DifferentialFCM(1024) : new LastValuePredictor(),
+                        maxError);
+                for(int i = 0; i < amountOfPoints; i++) {
+                    lc.addValue(timestamps[i], values[i]);
+                    c.addValue(timestamps[i], values[i]);
+                }
+                lc.close();
+                c.close();
+
+                long[] compressed = output.getLongArray();
+                assertTrue(compressed.length < lossless.getLongArray().length);
+
+                LongArrayInput input = new LongArrayInput(compressed);
+                GorillaDecompressor d = dfcm ? new GorillaDecompressor(input, new DifferentialFCM(1024))
+                        : new GorillaDecompressor(input);
+                for(int i = 0; i < amountOfPoints; i++) {
+                    Pair pair = d.readPair();
+                    assertEquals(timestamps[i], pair.getTimestamp());
+                    if(Double.isNaN(values[i]) || Double.isInfinite(values[i])) {
+                        assertEquals(values[i], pair.getDoubleValue());
+                    } else {
+                        assertTrue(Math.abs(values[i] - pair.getDoubleValue()) < maxError,
+                                "Value " + values[i] + " decompressed as " + pair.getDoubleValue());
+                    }
+                }
+                assertNull(d.readPair());
+            }
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> new GorillaCompressor(blockStart, new LongArrayOutput(),
+                new DifferentialFCM(16), 0));
+    }
+
+    private static final long CODEC_BLOCK_START = 1500000000000L;
+    private static final long CODEC_SEED = 20170212L;
+
+    private static final double[] SPECIAL_VALUES = { 0.0, -0.0, Double.NaN, Double.POSITIVE_INFINITY,
+            Double.MIN_VALUE, -Double.MAX_VALUE };
+
+    /**
+     * Few decimals with repeating values and some noise in the low bits, special values and random bit patterns.
+     */
+    private static long[] decimalValues(Random random, int amountOfPoints) {
+        long[] values = new long[amountOfPoints];
+        for(int i = 0; i < amountOfPoints; i++) {
+            double value = Math.round(random.nextGaussian() * 100) / 10.0;
+            if(random.nextInt(10) == 0) {
+                value = random.nextDouble();
+            } else if(random.nextInt(100) == 0) {
+                value = SPECIAL_VALUES[random.nextInt(SPECIAL_VALUES.length)];
+            }
+            values[i] = random.nextInt(200) == 0 ? random.nextLong() : Double.doubleToRawLongBits(value);
+        }
+        return values;
+    }
+
+    /**
+     * Compresses the values at one second intervals with the value codec to both BitOutput implementations and
+     * checks that the decompressed points match.
+     *
+     * @return Compressed block of the LongArrayOutput
+     */
+    private static long[] assertValueCodec(long[] values, Function<BitOutput, ValueEncoder> encoder,
+                                           Function<BitInput, ValueDecoder> decoder) {
+        long[] compressed = null;
+        for(boolean longArray : new boolean[] { false, true }) {
+            BitOutput output = longArray ? new LongArrayOutput() : new ByteBufferBitOutput();
+            GorillaCompressor c = new GorillaCompressor(CODEC_BLOCK_START, output, encoder.apply(output));
+            for(int i = 0; i < values.length; i++) {
+                c.addValue(CODEC_BLOCK_START + 60 + i * 1000L, values[i]);
+            }
+            c.close();
+
+            BitInput input;
+            if(longArray) {
+                compressed = ((LongArrayOutput) output).getLongArray();
+                input = new LongArrayInput(compressed);
+            } else {
+                ByteBuffer byteBuffer = ((ByteBufferBitOutput) output).getByteBuffer();
+                byteBuffer.flip();
+                input = new ByteBufferBitInput(byteBuffer);
+            }
+            GorillaDecompressor d = new GorillaDecompressor(input, decoder.apply(input));
+            for(int i = 0; i < values.length; i++) {
+                Pair pair = d.readPair();
+                assertEquals(CODEC_BLOCK_START + 60 + i * 1000L, pair.getTimestamp(),
+                        "Expected timestamp did not match at point " + i);
+                assertEquals(values[i], pair.getLongValue(), "Value " + Double.longBitsToDouble(values[i])
+                        + " (" + values[i] + ") did not match at point " + i);
+            }
+            assertNull(d.readPair());
+        }
+        return compressed;
+    }
+
+    @Test
+    void testChimpValueCompression() throws Exception {
+        long[] values = decimalValues(new Random(CODEC_SEED), 20000);
+        assertValueCodec(values, ChimpValueCompressor::new, ChimpValueDecompressor::new);
+        assertValueCodec(values, Chimp128ValueCompressor::new, Chimp128ValueDecompressor::new);
+    }
+
+    @Test
+    void testPatasCompression() throws Exception {
+        int amountOfPoints = 20000;
+        long blockStart = CODEC_BLOCK_START;
+        Random random = new Random(CODEC_SEED);
+
+        long[] timestamps = new long[amountOfPoints];
+        long[] values = decimalValues(random, amountOfPoints);
+        long timestamp = blockStart - 1000;
+        for(int i = 0; i < amountOfPoints; i++) {
+            // Timestamps may go backwards and jump, there is no delta window
+            timestamp += random.nextInt(10) == 0 ? random.nextLong() >> 23 : 1000;
+            timestamps[i] = timestamp;
+        }
+
+        PatasCompressor c = new PatasCompressor(blockStart, 16);
+        for(int i = 0; i < amountOfPoints; i++) {
+            c.addValue(timestamps[i], values[i]);
+        }
+        c.close();
+
+        // Block in the middle of a larger buffer
+        ByteBuffer block = c.getByteBuffer();
+        block.flip();
+        ByteBuffer bb = ByteBuffer.allocateDirect(block.remaining() + 16);
+        bb.position(16);
+        bb.put(block);
+        bb.position(16);
+
+        PatasDecompressor d = new PatasDecompressor(bb);
+        assertEquals(blockStart, d.getBlockTimestamp());
+        assertEquals(amountOfPoints, d.size());
+
+        long[] decodedTimestamps = new long[amountOfPoints];
+        long[] decodedValues = new long[amountOfPoints];
+        assertEquals(amountOfPoints, d.decode(decodedTimestamps, decodedValues));
+        assertArrayEquals(timestamps, decodedTimestamps);
+        assertArrayEquals(values, decodedValues);
+
+        double[] decodedDoubles = new double[amountOfPoints];
+        d.decode(decodedTimestamps, decodedDoubles);
+        for(int i = 0; i < amountOfPoints; i++) {
+            assertEquals(values[i], Double.doubleToRawLongBits(decodedDoubles[i]));
+        }
+
+        int[] index = { 0 };
+        PatasDecompressor.decode(bb, (t, v) -> {
+            assertEquals(timestamps[index[0]], t);
+            assertEquals(values[index[0]++], v);
+        });
+        assertEquals(amountOfPoints, index[0]);
+        assertEquals(16, bb.position());
+
+        // Empty, one point and all equal blocks
+        long value = Double.doubleToRawLongBits(21.5);
+        for(int points : new int[] { 0, 1, 1000 }) {
+            PatasCompressor small = new PatasCompressor(blockStart);
+            for(int i = 0; i < points; i++) {
+                small.addValue(blockStart + i, value);
+            }
+            small.close();
+            ByteBuffer smallBuffer = small.getByteBuffer();
+            smallBuffer.flip();
+            long[] smallTimestamps = new long[points];
+            long[] smallValues = new long[points];
+            assertEquals(points, new PatasDecompressor(smallBuffer).decode(smallTimestamps, smallValues));
+            for(int i = 0; i < points; i++) {
+                assertEquals(blockStart + i, smallTimestamps[i]);
+                assertEquals(value, smallValues[i]);
+            }
+        }
+    }
+
+    @Test
+    void testElfValueCompression() throws Exception {
+        int amountOfPoints = 20000;
+        Random random = new Random(CODEC_SEED);
+
+        // Decimals of varying precision and magnitude, values without a short decimal presentation and specials
+        long[] values = new long[amountOfPoints];
+        double[] special = { 0.0, -0.0, Double.NaN, Double.POSITIVE_INFINITY, Double.MIN_VALUE, -Double.MAX_VALUE,
+                Double.MIN_NORMAL, 1e-300, 123456789012345.6, 0.1, 100, 1e15, 9.999999999999999e22 };
+        for(int i = 0; i < amountOfPoints; i++) {
+            int decimals = random.nextInt(8);
+            double value = Double.parseDouble(String.format(Locale.ROOT, "%." + decimals + "f",
+                    random.nextGaussian() * Math.pow(10, random.nextInt(9) - 3)));
+            if(random.nextInt(10) == 0) {
+                value = random.nextDouble();
+            } else if(random.nextInt(20) == 0) {
+                value = special[random.nextInt(special.length)];
+            }
+            values[i] = Double.doubleToRawLongBits(value);
+        }
+
+        assertValueCodec(values, ElfValueCompressor::new, ElfValueDecompressor::new);
+        assertValueCodec(values, out -> new ElfValueCompressor(out, new DifferentialFCM(1024)),
+                in -> new ElfValueDecompressor(in, new DifferentialFCM(1024)));
+    }
+
+    @Test
+    void testIntegerValueCompression() throws Exception {
+        int amountOfPoints = 20000;
+        Random random = new Random(CODEC_SEED);
+
+        // Counter with a steady rate, resets and an occasional jump over the whole long range
+        long[] values = new long[amountOfPoints];
+        long counter = 1000;
+        for(int i = 0; i < amountOfPoints; i++) {
+            counter += 3 + random.nextInt(3);
+            if(random.nextInt(1000) == 0) {
+                counter = random.nextInt(3) == 0 ? 0 : random.nextBoolean() ? Long.MAX_VALUE : Long.MIN_VALUE;
+            }
+            values[i] = counter;
+        }
+
+        long[] xor = assertValueCodec(values, ValueCompressor::new, ValueDecompressor::new);
+        for(boolean deltaOfDelta : new boolean[] { false, true }) {
+            long[] compressed = assertValueCodec(values, out -> new IntegerValueCompressor(out, deltaOfDelta),
+                    IntegerValueDecompressor::new);
+            assertTrue(compressed.length * 2 < xor.length);
+        }
+    }
+
+    @Test
+    void testDictionaryValueCompression() throws Exception {
+        int amountOfPoints = 20000;
+        Random random = new Random(CODEC_SEED);
+
+        // Status series switching between a few states with runs, the last quarter has random values
+        double[] states = new double[] { 0.0, 1.0, 2.5, -1.0, 404.0, Double.NaN };
+        long[] values = new long[amountOfPoints];
+        double state = states[0];
+        for(int i = 0; i < amountOfPoints; i++) {
+            if(random.nextInt(10) == 0) {
+                state = states[random.nextInt(states.length)];
+            }
+            values[i] = Double.doubleToRawLongBits(i < amountOfPoints * 3 / 4 ? state : random.nextDouble());
+        }
+
+        for(int maxSize : new int[] { DictionaryValueCompressor.DEFAULT_MAX_SIZE, 4 }) {
+            for(int points : new int[] { amountOfPoints * 3 / 4, amountOfPoints }) {
+                long[] block = Arrays.copyOf(values, points);
+                long[] xor = assertValueCodec(block, ValueCompressor::new, ValueDecompressor::new);
+                long[] compressed = assertValueCodec(block, out -> new DictionaryValueCompressor(out, maxSize),
+                        in -> new DictionaryValueDecompressor(in, maxSize));
+                if(points < amountOfPoints && maxSize >= states.length) {
+                    assertTrue(compressed.length * Long.SIZE < points * 4);
+                    assertTrue(compressed.length < xor.length);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testValueCodecEdgeCases() throws Exception {
+        long value = Double.doubleToRawLongBits(21.5);
+        long[] constant = new long[1000];
+        Arrays.fill(constant, value);
+        long[][] vectors = {
+                { value },
+                constant,
+                // Deltas and delta-of-deltas of the IntegerValueCompressor wrap around
+                { 0, Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE, -1, Long.MIN_VALUE, 1, Long.MIN_VALUE,
+                        Long.MAX_VALUE, Long.MAX_VALUE, Long.MIN_VALUE }
+        };
+        List<Function<BitOutput, ValueEncoder>> encoders = Arrays.asList(ValueCompressor::new,
+                ChimpValueCompressor::new, Chimp128ValueCompressor::new, ElfValueCompressor::new,
+                out -> new IntegerValueCompressor(out, false), IntegerValueCompressor::new,
+                DictionaryValueCompressor::new);
+        List<Function<BitInput, ValueDecoder>> decoders = Arrays.asList(ValueDecompressor::new,
+                ChimpValueDecompressor::new, Chimp128ValueDecompressor::new, ElfValueDecompressor::new,
+                IntegerValueDecompressor::new, IntegerValueDecompressor::new, DictionaryValueDecompressor::new);
+        for(long[] vector : vectors) {
+            for(int i = 0; i < encoders.size(); i++) {
+                assertValueCodec(vector, encoders.get(i), decoders.get(i));
+            }
+        }
+
+        // Dictionary filled exactly to its size, and one more distinct value that switches to the XOR encoding
+        long[] full = new long[200];
+        for(int i = 0; i < full.length; i++) {
+            full[i] = (i * 7) % 4 + 1;
+        }
+        long[] overflow = Arrays.copyOf(full, full.length + 3);
+        overflow[full.length] = 5;
+        overflow[full.length + 1] = 1;
+        overflow[full.length + 2] = 5;
+        long[] fullBlock = assertValueCodec(full, out -> new DictionaryValueCompressor(out, 4),
+                in -> new DictionaryValueDecompressor(in, 4));
+        assertValueCodec(overflow, out -> new DictionaryValueCompressor(out, 4),
+                in -> new DictionaryValueDecompressor(in, 4));
+        long[] xorBlock = assertValueCodec(full, out -> new DictionaryValueCompressor(out, 3),
+                in -> new DictionaryValueDecompressor(in, 3));
+        assertTrue(fullBlock.length < xorBlock.length);
+    }
+
+    @Test
+    void testFramedBlock() throws Exception {
+        int amountOfPoints = 10000;
+        long blockStart = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS)
+                .toInstant(ZoneOffset.UTC).toEpochMilli();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        // NaN is a value as any other in a framed block, the first delta uses all of its 27 bits
+        long[] timestamps = new long[amountOfPoints];
+        long[] values = new long[amountOfPoints];
+        timestamps[0] = blockStart + (1 << GorillaCompressor.FIRST_DELTA_BITS) - 1;
+        for(int i = 0; i < amountOfPoints; i++) {
+            if(i > 0) {
+                timestamps[i] = timestamps[i - 1] + 1 + random.nextInt(2000);
+            }
+            double value = random.nextInt(10) == 0 ? Double.NaN : random.nextDouble();
+            values[i] = Double.doubleToRawLongBits(value);
+        }
+
+        for(int points : new int[] { 0, 1, amountOfPoints }) {
+            LongArrayOutput output = new LongArrayOutput();
+            GorillaCompressor c = new GorillaCompressor(blockStart, points, output);
+            for(int i = 0; i < points; i++) {
+                c.addValue(timestamps[i], values[i]);
+            }
+            assertThrows(IllegalStateException.class, () -> c.addValue(timestamps[0], values[0]));
+            c.close();
+
+            GorillaDecompressor d = new GorillaDecompressor(new LongArrayInput(output.getLongArray()), true);
+            assertEquals(points, d.size());
+            for(int i = 0; i < points / 2; i++) {
+                Pair pair = d.readPair();
+                assertEquals(timestamps[i], pair.getTimestamp(), "Expected timestamp did not match at point " + i);
+                assertEquals(values[i], pair.getLongValue(), "Value did not match at point " + i);
+            }
+
+            int remaining = d.size();
+            assertEquals(points - points / 2, remaining);
+            long[] decodedTimestamps = new long[remaining];
+            long[] decodedValues = new long[remaining];
+            assertEquals(remaining, d.decode(decodedTimestamps, decodedValues));
+            assertArrayEquals(Arrays.copyOfRange(timestamps, points / 2, points), decodedTimestamps);
+            assertArrayEquals(Arrays.copyOfRange(values, points / 2, points), decodedValues);
+            assertNull(d.readPair());
+        }
+
+        GorillaCompressor c = new GorillaCompressor(blockStart, 2, new LongArrayOutput());
+        c.addValue(timestamps[0], values[0]);
+        assertThrows(IllegalStateException.class, c::close);
+    }
+
+    @Test
+    void testBlockContainer() throws Exception {
+        int amountOfPoints = 5000;
+        long blockStart = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS)
+                .toInstant(ZoneOffset.UTC).toEpochMilli();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        long[] timestamps = new long[amountOfPoints];
+        long[] values = new long[amountOfPoints];
+        for(int i = 0; i < amountOfPoints; i++) {
+            timestamps[i] = blockStart + 60 + i * 1000 + random.nextInt(10);
+            values[i] = Double.doubleToRawLongBits(random.nextInt(1000) / 10d);
+        }
+
+        // All the blocks are stored one after another and scanned without knowing the codecs
+        int[] codecs = new int[] { BlockEncoder.CODEC_GORILLA, BlockEncoder.CODEC_CHIMP, BlockEncoder.CODEC_CHIMP128,
+                BlockEncoder.CODEC_ELF, BlockEncoder.CODEC_INTEGER, BlockEncoder.CODEC_DICTIONARY,
+                BlockEncoder.CODEC_PATAS, BlockEncoder.CODEC_ALP, BlockEncoder.CODEC_VALUES };
+        ByteBuffer store = ByteBuffer.allocate(4 * 1024 * 1024);
+        for(int codec : codecs) {
+            for(int points : new int[] { -1, amountOfPoints }) {
+                BlockEncoder encoder = new BlockEncoder(codec, blockStart, points);
+                for(int i = 0; i < amountOfPoints; i++) {
+                    encoder.addValue(timestamps[i], values[i]);
+                }
+                encoder.close();
+                ByteBuffer block = encoder.getByteBuffer();
+                block.flip();
+                store.put(block);
+            }
+        }
+        BlockEncoder lossy = new BlockEncoder(BlockEncoder.CODEC_GORILLA, blockStart, -1,
+                BlockEncoder.PREDICTOR_DIFFERENTIAL_FCM, 256, 0.5);
+        for(int i = 0; i < amountOfPoints; i++) {
+            lossy.addValue(timestamps[i], values[i]);
+        }
+        lossy.close();
+        ByteBuffer lossyBlock = lossy.getByteBuffer();
+        lossyBlock.flip();
+        store.put(lossyBlock);
+        store.flip();
+
+        for(int codec : codecs) {
+            for(int j = 0; j < 2; j++) {
+                BlockDecoder decoder = new BlockDecoder(store);
+                assertEquals(codec, decoder.getCodec());
+                assertEquals(amountOfPoints, decoder.size());
+                assertEquals(timestamps[0], decoder.getFirstTimestamp());
+                assertEquals(timestamps[amountOfPoints - 1], decoder.getLastTimestamp());
+                assertFalse(decoder.isLossy());
+
+                long[] decodedTimestamps = new long[decoder.size()];
+                long[] decodedValues = new long[decoder.size()];
+                assertEquals(amountOfPoints, decoder.decode(decodedTimestamps, decodedValues));
+                for(int i = 0; i < amountOfPoints; i++) {
+                    assertEquals(timestamps[i], decodedTimestamps[i],
+                            "Timestamp did not match at point " + i + " with codec " + codec);
+                    assertEquals(values[i], decodedValues[i], "Value did not match at point " + i + " with codec "
+                            + codec);
+                }
+                store.position(store.position() + decoder.length());
+            }
+        }
+
+        BlockDecoder decoder = new BlockDecoder(store);
+        assertTrue(decoder.isLossy());
+        assertEquals(BlockEncoder.PREDICTOR_DIFFERENTIAL_FCM, decoder.getPredictor());
+        int[] index = new int[1];
+        assertEquals(amountOfPoints, decoder.decode((timestamp, value) -> {
+            assertEquals(timestamps[index[0]], timestamp);
+            assertEquals(Double.longBitsToDouble(values[index[0]++]), Double.longBitsToDouble(value), 0.5);
+        }));
+        assertEquals(store.limit(), store.position() + decoder.length());
+
+        // Corruption of the block or the header is detected
+        store.rewind();
+        store.put(BlockEncoder.HEADER_BYTES + 100, (byte) (store.get(BlockEncoder.HEADER_BYTES + 100) ^ 0x10));
+        assertThrows(IllegalArgumentException.class, () -> new BlockDecoder(store));
+        store.put(BlockEncoder.HEADER_BYTES + 100, (byte) (store.get(BlockEncoder.HEADER_BYTES + 100) ^ 0x10));
+        new BlockDecoder(store);
+        store.put(12, (byte) 1);
+        assertThrows(IllegalArgumentException.class, () -> new BlockDecoder(store));
+    }
+
+    @Test
+    void testSegmentFile() throws Exception {
+        int amountOfSeries = 50;
+        int blocksPerSeries = 4;
+        int pointsPerBlock = 360;
+        long blockStart = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS)
+                .toInstant(ZoneOffset.UTC).toEpochMilli();
+        long blockLength = ChronoUnit.HOURS.getDuration().toMillis();
+
+        // Even series are stored in containers, odd ones as plain GorillaCompressor blocks
+        Path path = Files.createTempFile("segment", ".gseg");
+        Files.delete(path);
+        try {
+            try(SegmentWriter writer = new SegmentWriter(path)) {
+                for(int block = 0; block < blocksPerSeries; block++) {
+                    for(int series = amountOfSeries - 1; series >= 0; series--) {
+                        long start = blockStart + block * blockLength;
+                        if(series % 2 == 0) {
+                            BlockEncoder encoder = new BlockEncoder(BlockEncoder.CODEC_GORILLA, start, pointsPerBlock);
+                            for(int i = 0; i < pointsPerBlock; i++) {
+                                encoder.addValue(start + i * 10000, (double) series * i);
+                            }
+                            encoder.close();
+                            ByteBuffer container = encoder.getByteBuffer();
+                            container.flip();
+                            writer.append(series, container);
+                        } else {
+                            ByteBufferBitOutput output = new ByteBufferBitOutput();
+                            GorillaCompressor c = new GorillaCompressor(start, output);
+                            for(int i = 0; i < pointsPerBlock; i++) {
+                                c.addValue(start + i * 10000, (double) series * i);
+                            }
+                            c.close();
+                            ByteBuffer compressed = output.getByteBuffer();
+                            compressed.flip();
+                            writer.append(series, start, start + (pointsPerBlock - 1) * 10000, compressed);
+                        }
+                    }
+                }
+                long start = blockStart + (blocksPerSeries - 1) * blockLength;
+                assertThrows(IllegalArgumentException.class,
+                        () -> writer.append(0, start, start + 1, ByteBuffer.allocate(1)));
+                assertEquals(amountOfSeries * blocksPerSeries, writer.size());
+            }
+
+            try(SegmentReader reader = new SegmentReader(path)) {
+                assertEquals(amountOfSeries * blocksPerSeries, reader.size());
+                for(int series = 0; series < amountOfSeries; series++) {
+                    for(int block = 0; block < blocksPerSeries; block++) {
+                        long start = blockStart + block * blockLength;
+                        long timestamp = start + 100 * 10000;
+                        int index = reader.indexOf(series, timestamp);
+                        assertEquals(series * blocksPerSeries + block, index);
+                        assertEquals(series, reader.getSeriesId(index));
+                        assertEquals(start, reader.getFirstTimestamp(index));
+
+                        if(series % 2 == 0) {
+                            BlockDecoder decoder = new BlockDecoder(reader.getBlock(series, start));
+                            assertEquals(pointsPerBlock, decoder.size());
+                            long[] timestamps = new long[pointsPerBlock];
+                            long[] values = new long[pointsPerBlock];
+                            decoder.decode(timestamps, values);
+                            assertEquals(start + 10000, timestamps[1]);
+                            assertEquals((double) series, Double.longBitsToDouble(values[1]));
+                        } else {
+                            GorillaDecompressor d = new GorillaDecompressor(reader.getBitInput(index));
+                            for(int i = 0; i < pointsPerBlock; i++) {
+                                Pair pair = d.readPair();
+                                assertEquals(start + i * 10000, pair.getTimestamp());
+                                assertEquals((double) series * i, pair.getDoubleValue());
+                            }
+                            assertNull(d.readPair());
+                        }
+                    }
+                    // Between the blocks and after the last one
+                    assertNull(reader.getBlock(series, blockStart + blockLength - 1));
+                    assertEquals(-1, reader.indexOf(series, blockStart + blocksPerSeries * blockLength));
+
+                    List<ByteBuffer> blocks = reader.getBlocks(series, blockStart + blockLength - 1,
+                            blockStart + 2 * blockLength);
+                    assertEquals(2, blocks.size());
+                }
+                assertEquals(-1, reader.indexOf(amountOfSeries, blockStart));
+                assertTrue(reader.getBlocks(-1, Long.MIN_VALUE, Long.MAX_VALUE).isEmpty());
+            }
+
+            // A corrupted index is detected
+            byte[] bytes = Files.readAllBytes(path);
+            bytes[bytes.length - SegmentWriter.FOOTER_BYTES - 1] ^= 0x01;
+            Files.write(path, bytes);
+            assertThrows(IOException.class, () -> new SegmentReader(path));
+
+            // The segment including its index fits exactly in the maximum size, a byte more does not
+            Files.delete(path);
+            try(SegmentWriter writer = new SegmentWriter(path,
+                    SegmentWriter.MAX_SIZE - SegmentWriter.FOOTER_BYTES - SegmentWriter.ENTRY_BYTES - 10)) {
+                writer.append(0, blockStart, blockStart, ByteBuffer.allocate(10));
+                assertThrows(IOException.class, () -> writer.append(1, blockStart, blockStart, ByteBuffer.allocate(1)));
+                assertEquals(1, writer.size());
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    void testBlockCompaction() throws Exception {
+        int amountOfSeries = 20;
+        int blocksPerSeries = 30;
+        int pointsPerBlock = 10;
+        long blockStart = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS)
+                .toInstant(ZoneOffset.UTC).toEpochMilli();
+        int[] codecs = new int[] { BlockEncoder.CODEC_GORILLA, BlockEncoder.CODEC_CHIMP, BlockEncoder.CODEC_PATAS,
+                BlockEncoder.CODEC_ALP };
+
+        // Ten minute blocks, with a gap over the longest time range of a merged block in the middle of each series.
+        // The codec changes at the last block and the first block is not a container.
+        Path source = Files.createTempFile("segment", ".gseg");
+        Path target = Files.createTempFile("compacted", ".gseg");
+        Files.delete(source);
+        Files.delete(target);
+        try {
+            long[][] timestamps = new long[amountOfSeries][blocksPerSeries * pointsPerBlock];
+            long[][] values = new long[amountOfSeries][blocksPerSeries * pointsPerBlock];
+            try(SegmentWriter writer = new SegmentWriter(source)) {
+                for(int series = 0; series < amountOfSeries; series++) {
+                    for(int block = 0; block < blocksPerSeries; block++) {
+                        long start = blockStart + block * 600000L + (block >= blocksPerSeries / 2 ? 1L << 27 : 0);
+                        int codec = codecs[(block == blocksPerSeries - 1 ? series + 1 : series) % codecs.length];
+                        for(int i = 0; i < pointsPerBlock; i++) {
+                            timestamps[series][block * pointsPerBlock + i] = start + i * 60000;
+                            values[series][block * pointsPerBlock + i] = Double.doubleToRawLongBits(series + i / 10d);
+                        }
+
+                        if(block == 0) {
+                            ByteBufferBitOutput output = new ByteBufferBitOutput();
+                            GorillaCompressor c = new GorillaCompressor(start, output);
+                            for(int i = 0; i < pointsPerBlock; i++) {
+                                c.addValue(timestamps[series][i], values[series][i]);
+                            }
+                            c.close();
+                            ByteBuffer compressed = output.getByteBuffer();
+                            compressed.flip();
+                            writer.append(series, start, timestamps[series][pointsPerBlock - 1], compressed);
+                            continue;
+                        }
+                        BlockEncoder encoder = new BlockEncoder(codec, start);
+                        for(int i = 0; i < pointsPerBlock; i++) {
+                            encoder.addValue(timestamps[series][block * pointsPerBlock + i],
+                                    values[series][block * pointsPerBlock + i]);
+                        }
+                        encoder.close();
+                        ByteBuffer container = encoder.getByteBuffer();
+                        container.flip();
+                        writer.append(series, container);
+                    }
+                }
+            }
+
+            try(BlockCompactor compactor = new BlockCompactor(3, 100, BlockCompactor.MAX_SPAN)) {
+                // Raw block, two merged blocks before the gap, two after it and the block of another codec
+                assertEquals(amountOfSeries * 6, compactor.compact(source, target).get().intValue());
+            }
+            assertTrue(Files.size(target) < Files.size(source));
+
+            try(SegmentReader reader = new SegmentReader(target)) {
+                for(int series = 0; series < amountOfSeries; series++) {
+                    List<ByteBuffer> blocks = reader.getBlocks(series, Long.MIN_VALUE, Long.MAX_VALUE);
+                    assertEquals(6, blocks.size());
+
+                    GorillaDecompressor d = new GorillaDecompressor(new ByteBufferBitInput(blocks.get(0)));
+                    for(int i = 0; i < pointsPerBlock; i++) {
+                        assertEquals(timestamps[series][i], d.readPair().getTimestamp());
+                    }
+                    int index = pointsPerBlock;
+                    for(ByteBuffer block : blocks.subList(1, blocks.size())) {
+                        BlockDecoder decoder = new BlockDecoder(block);
+                        assertTrue(decoder.getLastTimestamp() - decoder.getFirstTimestamp() <= BlockCompactor.MAX_SPAN);
+                        long[] decodedTimestamps = new long[decoder.size()];
+                        long[] decodedValues = new long[decoder.size()];
+                        decoder.decode(decodedTimestamps, decodedValues);
+                        for(int i = 0; i < decoder.size(); i++, index++) {
+                            assertEquals(timestamps[series][index], decodedTimestamps[i],
+                                    "Timestamp did not match at point " + index + " of series " + series);
+                            assertEquals(values[series][index], decodedValues[i],
+                                    "Value did not match at point " + index + " of series " + series);
+                        }
+                    }
+                    assertEquals(blocksPerSeries * pointsPerBlock, index);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(source);
+            Files.deleteIfExists(target);
+        }
+    }
 }
@@ -1,7 +1,9 @@
 package fi.iki.yak.ts.compression.gorilla;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.nio.ByteBuffer;
 import java.time.LocalDateTime;
@@ -472,6 +474,57 @@ public class EncodeTest {
         assertNull(d.readPair());
     }
 
+    @Test
+    void testDecodeToConsumer() throws Exception {
+        int amountOfPoints = 10000;
+        double[] values = new double[amountOfPoints];
+
+        ByteBufferBitOutput output = new ByteBufferBitOutput();
+        Compressor c = new Compressor(output);
+        for(int i = 0; i < amountOfPoints; i++) {
+            values[i] = i * Math.random();
+            c.addValue(values[i]);
+        }
+        c.close();
+
+        ByteBuffer byteBuffer = output.getByteBuffer();
+        byteBuffer.flip();
+
+        int[] index = new int[1];
+        int count = Decompressor.decode(new ByteBufferBitInput(byteBuffer), (i, value) -> {
+            assertEquals(index[0], i);
+            assertEquals(values[index[0]], Double.longBitsToDouble(value));
+            index[0]++;
+        });
+        assertEquals(amountOfPoints, count);
+    }
+
+    @Test
+    void testCursorDecoding() throws Exception {
+        int amountOfPoints = 10000;
+        double[] values = new double[amountOfPoints];
+
+        ByteBufferBitOutput output = new ByteBufferBitOutput();
+        Compressor c = new Compressor(output);
+        for(int i = 0; i < amountOfPoints; i++) {
+            values[i] = i * Math.random();
+            c.addValue(values[i]);
+        }
+        c.close();
+
+        ByteBuffer byteBuffer = output.getByteBuffer();
+        byteBuffer.flip();
+
+        Decompressor d = new Decompressor(new ByteBufferBitInput(byteBuffer));
+        for(int i = 0; i < amountOfPoints; i++) {
+            assertTrue(d.advance());
+            assertEquals(values[i], d.currentDouble());
+            assertEquals(Double.doubleToRawLongBits(values[i]), d.currentBits());
+        }
+        assertFalse(d.advance());
+        assertNull(d.readPair());
+    }
+
     /**
      * Although not intended usage, an empty block should not cause errors
      */
@@ -536,4 +589,89 @@ public class EncodeTest {
         }
         assertNull(d.readPair());
     }
+
+    @Test
+    void testAlpCompression() throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double[] special = { 0.0, -0.0, Double.NaN, Double.POSITIVE_INFINITY, Double.MIN_VALUE, -Double.MAX_VALUE,
+                1e300, 0.1, 4503599627370497.0 };
+
+        for(int amountOfValues : new int[] { 0, 1, 1023, 1024, 5000 }) {
+            double[] values = new double[amountOfValues];
+            for(int i = 0; i < amountOfValues; i++) {
+                // Vectors of decimals, of constants and of random doubles, each with a few special values
+                switch((i / AlpCompressor.VECTOR_SIZE) % 3) {
+                    case 0:
+                        values[i] = Math.round(random.nextGaussian() * 100000) / 100.0;
+                        break;
+                    case 1:
+                        values[i] = 12.5;
+                        break;
+                    default:
+                        values[i] = random.nextDouble();
+                }
+                if(random.nextInt(50) == 0) {
+                    values[i] = special[random.nextInt(special.length)];
+                }
+            }
+
+            AlpCompressor c = new AlpCompressor(16);
+            for(double value : values) {
+                c.addValue(value);
+            }
+            c.close();
+
+            // Block in the middle of a larger buffer
+            ByteBuffer block = c.getByteBuffer();
+            block.flip();
+            ByteBuffer bb = ByteBuffer.allocateDirect(block.remaining() + 16);
+            bb.position(16);
+            bb.put(block);
+            bb.position(16);
+
+            double[] decoded = AlpDecompressor.decode(bb);
+            assertEquals(amountOfValues, decoded.length);
+            for(int i = 0; i < amountOfValues; i++) {
+                assertEquals(Double.doubleToRawLongBits(values[i]), Double.doubleToRawLongBits(decoded[i]),
+                        "Value did not match at " + i);
+            }
+            assertEquals(16, bb.position());
+        }
+    }
+
+    @Test
+    void testFramedValues() throws Exception {
+        int amountOfPoints = 10000;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        double[] values = new double[amountOfPoints];
+        for(int i = 0; i < amountOfPoints; i++) {
+            values[i] = random.nextInt(10) == 0 ? Double.NaN : random.nextInt(100) / 10d;
+        }
+
+        ByteBufferBitOutput output = new ByteBufferBitOutput();
+        Compressor c = new Compressor(output, amountOfPoints);
+        Arrays.stream(values).forEach(c::addValue);
+        c.close();
+
+        ByteBuffer byteBuffer = output.getByteBuffer();
+        byteBuffer.flip();
+        Decompressor d = new Decompressor(new ByteBufferBitInput(byteBuffer.duplicate()), true);
+        assertEquals(amountOfPoints, d.size());
+        double[] decoded = new double[d.size()];
+        assertEquals(amountOfPoints, d.decode(decoded));
+        for(int i = 0; i < amountOfPoints; i++) {
+            assertEquals(Double.doubleToRawLongBits(values[i]), Double.doubleToRawLongBits(decoded[i]),
+                    "Value did not match at point " + i);
+        }
+        assertFalse(d.advance());
+
+        d = new Decompressor(new ByteBufferBitInput(byteBuffer.duplicate()), true);
+        for(int i = 0; i < amountOfPoints; i++) {
+            assertTrue(d.advance());
+            assertEquals(Double.doubleToRawLongBits(values[i]), d.currentBits(), "Value did not match at point " + i);
+        }
+        assertFalse(d.advance());
+        assertEquals(0, d.size());
+    }
 }
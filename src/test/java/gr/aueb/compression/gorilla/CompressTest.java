@@ -1,7 +1,10 @@
 package gr.aueb.compression.gorilla;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -10,15 +13,36 @@ import java.io.InputStreamReader;
 import java.io.Reader;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
 import java.util.zip.GZIPInputStream;
 
 import org.junit.jupiter.api.Test;
 
+import fi.iki.yak.ts.compression.gorilla.AlpCompressor;
+import fi.iki.yak.ts.compression.gorilla.AlpDecompressor;
 import fi.iki.yak.ts.compression.gorilla.ByteBufferBitInput;
 import fi.iki.yak.ts.compression.gorilla.ByteBufferBitOutput;
+import fi.iki.yak.ts.compression.gorilla.Chimp128ValueCompressor;
+import fi.iki.yak.ts.compression.gorilla.Chimp128ValueDecompressor;
+import fi.iki.yak.ts.compression.gorilla.ChimpValueCompressor;
+import fi.iki.yak.ts.compression.gorilla.ChimpValueDecompressor;
 import fi.iki.yak.ts.compression.gorilla.Compressor;
+import fi.iki.yak.ts.compression.gorilla.ElfValueCompressor;
+import fi.iki.yak.ts.compression.gorilla.ElfValueDecompressor;
+import fi.iki.yak.ts.compression.gorilla.GorillaCompressor;
+import fi.iki.yak.ts.compression.gorilla.GorillaDecompressor;
+import fi.iki.yak.ts.compression.gorilla.LongArrayInput;
+import fi.iki.yak.ts.compression.gorilla.LongArrayOutput;
+import fi.iki.yak.ts.compression.gorilla.PatasCompressor;
+import fi.iki.yak.ts.compression.gorilla.PatasDecompressor;
+import fi.iki.yak.ts.compression.gorilla.ValueCompressor;
+import fi.iki.yak.ts.compression.gorilla.ValueDecoder;
+import fi.iki.yak.ts.compression.gorilla.ValueDecompressor;
+import fi.iki.yak.ts.compression.gorilla.ValueEncoder;
 import gr.aueb.compression.gorilla.PmcMR.Constant;
 import gr.aueb.compression.gorilla.SwingFilter.SwingSegment;
 
@@ -496,6 +520,741 @@ public class CompressTest {
 
 	}
 
+	@Test
+	public void testSwingFilterEncoderForBaselTemp() throws IOException {
+		for (int logOfError = -4; logOfError < 4; logOfError++) {
+			String filename = "/basel-temp.csv.gz";
+			TimeseriesFileReader timeseriesFileReader = new TimeseriesFileReader(this.getClass().getResourceAsStream(filename));
+			List<Point> points = new ArrayList<>();
+			List<SwingSegment> segments = new ArrayList<>();
+			SwingFilter swingFilter = new SwingFilter();
+			SwingFilterEncoder encoder = new SwingFilterEncoder((float) Math.pow(2, logOfError),
+					(initialTimestamp, finalTimestamp, count, a, b) -> segments.add(swingFilter.new SwingSegment(initialTimestamp, finalTimestamp, count, new LinearFunction(a, b))));
+			Collection<Double> values;
+			int timestamp = 0;
+			// The whole file is a single unbounded stream for the encoder
+			while ((values = timeseriesFileReader.nextBlock()) != null) {
+				for (Double value : values) {
+					points.add(new Point(timestamp, value.floatValue()));
+					encoder.add(timestamp++, value.floatValue());
+				}
+			}
+			int segmentsBeforeClose = segments.size();
+			encoder.close();
+			assertEquals(segmentsBeforeClose + 1, segments.size(), "Finished segments should be emitted before close");
+
+			int currentSegment = 0;
+			for (Point point : points) {
+				while (segments.get(currentSegment).getFinalTimestamp() < point.getTimestamp()) {
+					currentSegment++;
+				}
+				SwingSegment segment = segments.get(currentSegment);
+				assertEquals(point.getValue(), segment.getLine().get(point.getTimestamp()), Math.pow(2, logOfError), "Value did not match");
+			}
+		}
+	}
+
+	@Test
+	public void testSwingFilterCompressorForBaselDatasets() throws IOException {
+		for (String filename : new String[] {"/basel-temp.csv.gz", "/basel-wind-speed.csv.gz"}) {
+			for (int logOfError = -10; logOfError < 10; logOfError += 3) {
+				TimeseriesFileReader timeseriesFileReader = new TimeseriesFileReader(this.getClass().getResourceAsStream(filename));
+				Collection<Double> values;
+				int timestamp = 0;
+				long totalSize = 0;
+				float totalBlocks = 0;
+				while ((values = timeseriesFileReader.nextBlock()) != null) {
+					Collection<Point> points = new ArrayList<>();
+					for (Double value : values) {
+						points.add(new Point(timestamp++, value.floatValue()));
+					}
+					float epsilon = (float) Math.pow(2, logOfError);
+					List<SwingSegment> segments = new SwingFilter().filter(points, epsilon);
+
+					ByteBufferBitOutput output = new ByteBufferBitOutput();
+					SwingFilterCompressor compressor = new SwingFilterCompressor(points.iterator().next().getTimestamp(), output);
+					SwingFilterEncoder encoder = new SwingFilterEncoder(epsilon, compressor);
+					points.forEach(point -> encoder.add(point.getTimestamp(), point.getValue()));
+					encoder.close();
+					compressor.close();
+
+					ByteBuffer byteBuffer = output.getByteBuffer();
+					byteBuffer.flip();
+					totalSize += byteBuffer.remaining() * Byte.SIZE;
+					totalBlocks += 1;
+
+					DecompressorSwingFilter expected = new DecompressorSwingFilter(segments);
+					DecompressorSwingFilter d = new DecompressorSwingFilter(new ByteBufferBitInput(byteBuffer));
+					for (int i = 0; i < values.size(); i++) {
+						assertEquals(expected.readValue(), d.readValue(), "Value did not match");
+					}
+					assertNull(d.readValue());
+				}
+				System.out.println(String.format("SwingFilterCompressor %s - error: %f, Size : %d, Bits/value: %.2f",
+						filename, Math.pow(2, logOfError), totalSize, totalSize / (totalBlocks * TimeseriesFileReader.DEFAULT_BLOCK_SIZE)));
+			}
+		}
+	}
+
+	@Test
+	public void testPmcMRCompressorForBaselDatasets() throws IOException {
+		for (String filename : new String[] {"/basel-temp.csv.gz", "/basel-wind-speed.csv.gz"}) {
+			for (int logOfError = -10; logOfError < 10; logOfError += 3) {
+				TimeseriesFileReader timeseriesFileReader = new TimeseriesFileReader(this.getClass().getResourceAsStream(filename));
+				Collection<Double> values;
+				int timestamp = 0;
+				long totalSize = 0;
+				long listSize = 0;
+				float totalBlocks = 0;
+				while ((values = timeseriesFileReader.nextBlock()) != null) {
+					Collection<Point> points = new ArrayList<>();
+					for (Double value : values) {
+						points.add(new Point(timestamp++, value.floatValue()));
+					}
+					float epsilon = (float) Math.pow(2, logOfError);
+					List<Constant> constants = new PmcMR().filter(points, epsilon);
+
+					ByteBufferBitOutput output = new ByteBufferBitOutput();
+					PmcMRCompressor compressor = new PmcMRCompressor(points.iterator().next().getTimestamp(), output);
+					PmcMREncoder encoder = new PmcMREncoder(epsilon, compressor);
+					points.forEach(point -> encoder.add(point.getTimestamp(), point.getValue()));
+					encoder.close();
+					compressor.close();
+
+					ByteBuffer byteBuffer = output.getByteBuffer();
+					byteBuffer.flip();
+					totalSize += byteBuffer.remaining() * Byte.SIZE;
+					listSize += constants.size() * 2 * 32;
+					totalBlocks += 1;
+
+					DecompressorPmcMr expected = new DecompressorPmcMr(constants);
+					DecompressorPmcMr d = new DecompressorPmcMr(new ByteBufferBitInput(byteBuffer));
+					for (Double value : values) {
+						Float decompressedValue = d.readValue();
+						assertEquals(expected.readValue(), decompressedValue, "Value did not match");
+						assertEquals(value.doubleValue(), decompressedValue, epsilon, "Value out of bounds");
+					}
+					assertNull(d.readValue());
+				}
+				System.out.println(String.format("PmcMRCompressor %s - error: %f, Size : %d, Bits/value: %.2f (constants as two ints: %.2f)",
+						filename, Math.pow(2, logOfError), totalSize, totalSize / (totalBlocks * TimeseriesFileReader.DEFAULT_BLOCK_SIZE),
+						listSize / (totalBlocks * TimeseriesFileReader.DEFAULT_BLOCK_SIZE)));
+			}
+		}
+	}
+
+	@Test
+	public void testSegmentAggregationForBaselTemp() throws IOException {
+		TimeseriesFileReader timeseriesFileReader = new TimeseriesFileReader(this.getClass().getResourceAsStream("/basel-temp.csv.gz"));
+		Collection<Double> values = timeseriesFileReader.nextBlock();
+		Collection<Point> points = new ArrayList<>();
+		int timestamp = 0;
+		for (Double value : values) {
+			points.add(new Point(timestamp++, value.floatValue()));
+		}
+		float epsilon = 0.5f;
+		List<Constant> constants = new PmcMR().filter(points, epsilon);
+		List<SwingSegment> segments = new SwingFilter().filter(points, epsilon);
+
+		// A day, partial segments at both ends, the whole block and a range past the end
+		long[][] ranges = {{100, 123}, {37, 1001}, {0, timestamp - 1}, {timestamp, timestamp + 10}};
+		for (long[] range : ranges) {
+			SegmentAggregator pmcMr = new DecompressorPmcMr(constants).aggregate(range[0], range[1]);
+			assertAggregate(new DecompressorPmcMr(constants)::readValue, range[0], range[1], pmcMr);
+			SegmentAggregator swing = new DecompressorSwingFilter(segments).aggregate(range[0], range[1]);
+			assertAggregate(new DecompressorSwingFilter(segments)::readValue, range[0], range[1], swing);
+		}
+	}
+
+	@Test
+	public void testSegmentAggregationWithGaps() {
+		List<Point> points = Arrays.asList(new Point(0, 5), new Point(1, 5), new Point(2, 5), new Point(100, 5));
+		List<Constant> constants = new PmcMR().filter(points, 0.5f);
+		assertEquals(1, constants.size());
+		assertEquals(4, constants.get(0).getPoints());
+
+		// A constant within the range is aggregated exactly, the points of a partial one are not known
+		SegmentAggregator aggregator = new DecompressorPmcMr(constants).aggregate(0, 200);
+		assertEquals(4, aggregator.getCount());
+		assertEquals(20.0, aggregator.getSum());
+		assertThrows(IllegalStateException.class, () -> new DecompressorPmcMr(constants).aggregate(0, 50));
+		DecompressorPmcMr d = new DecompressorPmcMr(constants);
+		for (int i = 0; i < points.size(); i++) {
+			assertEquals(Float.valueOf(5), d.readValue());
+		}
+		assertNull(d.readValue());
+
+		// The points of a line are needed for its sum and its values
+		List<SwingSegment> segments = new SwingFilter().filter(points, 0.5f);
+		assertThrows(IllegalStateException.class, () -> new DecompressorSwingFilter(segments).aggregate(0, 200));
+		assertThrows(IllegalStateException.class, () -> new DecompressorSwingFilter(segments).readValue());
+	}
+
+	private void assertAggregate(Supplier<Float> values, long from, long to, SegmentAggregator aggregator) {
+		long count = 0;
+		double sum = 0;
+		float min = Float.POSITIVE_INFINITY;
+		float max = Float.NEGATIVE_INFINITY;
+		Float value;
+		for (long timestamp = 0; (value = values.get()) != null && timestamp <= to; timestamp++) {
+			if (timestamp >= from) {
+				count++;
+				sum += value;
+				min = Math.min(min, value);
+				max = Math.max(max, value);
+			}
+		}
+		assertEquals(count, aggregator.getCount());
+		assertEquals(sum, aggregator.getSum(), 1e-4 * Math.max(1, Math.abs(sum)));
+		assertEquals(min, aggregator.getMin());
+		assertEquals(max, aggregator.getMax());
+		if (count == 0) {
+			assertTrue(Double.isNaN(aggregator.getMean()));
+		} else {
+			assertEquals(sum / count, aggregator.getMean(), 1e-4 * Math.max(1, Math.abs(sum / count)));
+		}
+	}
+
+	private void assertAggregate(long[] timestamps, float[] values, long from, long to, SegmentAggregator aggregator) {
+		long count = 0;
+		double sum = 0;
+		float min = Float.POSITIVE_INFINITY;
+		float max = Float.NEGATIVE_INFINITY;
+		for (int i = 0; i < timestamps.length; i++) {
+			if (timestamps[i] >= from && timestamps[i] <= to) {
+				count++;
+				sum += values[i];
+				min = Math.min(min, values[i]);
+				max = Math.max(max, values[i]);
+			}
+		}
+		assertEquals(count, aggregator.getCount());
+		assertEquals(sum, aggregator.getSum(), 1e-4 * Math.max(1, Math.abs(sum)));
+		assertEquals(min, aggregator.getMin());
+		assertEquals(max, aggregator.getMax());
+		if (count == 0) {
+			assertTrue(Double.isNaN(aggregator.getMean()));
+		} else {
+			assertEquals(sum / count, aggregator.getMean(), 1e-4 * Math.max(1, Math.abs(sum / count)));
+		}
+	}
+
+	@Test
+	public void testSegmentAggregationWithIrregularTimestamps() throws IOException {
+		TimeseriesFileReader timeseriesFileReader = new TimeseriesFileReader(this.getClass().getResourceAsStream("/basel-temp.csv.gz"));
+		Random random = new Random(1);
+		long blockTimestamp = 1_500_000_000_000L;
+		List<Point> points = new ArrayList<>();
+		long timestamp = blockTimestamp;
+		for (Double value : timeseriesFileReader.nextBlock()) {
+			timestamp += random.nextInt(10) == 0 ? 60_000 + random.nextInt(60_000) : 1_000 + random.nextInt(50);
+			points.add(new Point(timestamp, value.floatValue()));
+		}
+		float epsilon = 0.5f;
+
+		ByteBufferBitOutput timestampOutput = new ByteBufferBitOutput();
+		TimestampStreamCompressor timestampCompressor = new TimestampStreamCompressor(blockTimestamp, timestampOutput);
+		ByteBufferBitOutput pmcMrOutput = new ByteBufferBitOutput();
+		PmcMRCompressor pmcMrCompressor = new PmcMRCompressor(blockTimestamp, pmcMrOutput);
+		PmcMREncoder pmcMrEncoder = new PmcMREncoder(epsilon, pmcMrCompressor);
+		ByteBufferBitOutput swingOutput = new ByteBufferBitOutput();
+		SwingFilterCompressor swingCompressor = new SwingFilterCompressor(blockTimestamp, swingOutput);
+		SwingFilterEncoder swingEncoder = new SwingFilterEncoder(epsilon, swingCompressor);
+		for (Point point : points) {
+			timestampCompressor.addTimestamp(point.getTimestamp());
+			pmcMrEncoder.add(point.getTimestamp(), point.getValue());
+			swingEncoder.add(point.getTimestamp(), point.getValue());
+		}
+		timestampCompressor.close();
+		pmcMrEncoder.close();
+		pmcMrCompressor.close();
+		swingEncoder.close();
+		swingCompressor.close();
+		ByteBuffer timestampBuffer = timestampOutput.getByteBuffer();
+		timestampBuffer.flip();
+		ByteBuffer pmcMrBuffer = pmcMrOutput.getByteBuffer();
+		pmcMrBuffer.flip();
+		ByteBuffer swingBuffer = swingOutput.getByteBuffer();
+		swingBuffer.flip();
+
+		long[] timestamps = new long[points.size()];
+		float[] pmcMrValues = new float[points.size()];
+		float[] swingValues = new float[points.size()];
+		new DecompressorPmcMr(new ByteBufferBitInput(pmcMrBuffer.duplicate()))
+				.decode(new ByteBufferBitInput(timestampBuffer.duplicate()), timestamps, pmcMrValues);
+		new DecompressorSwingFilter(new ByteBufferBitInput(swingBuffer.duplicate()))
+				.decode(new ByteBufferBitInput(timestampBuffer.duplicate()), timestamps, swingValues);
+
+		// Ranges between the points, partial segments at both ends, the whole block and a range past the end
+		long last = timestamps[timestamps.length - 1];
+		long[][] ranges = {{timestamps[100] + 1, timestamps[124] - 1}, {timestamps[37], timestamps[901] + 500},
+				{Long.MIN_VALUE, Long.MAX_VALUE}, {last + 1, last + 1000}};
+		for (long[] range : ranges) {
+			assertAggregate(timestamps, pmcMrValues, range[0], range[1],
+					new DecompressorPmcMr(new ByteBufferBitInput(pmcMrBuffer.duplicate()))
+							.aggregate(new ByteBufferBitInput(timestampBuffer.duplicate()), range[0], range[1]));
+			assertAggregate(timestamps, swingValues, range[0], range[1],
+					new DecompressorSwingFilter(new ByteBufferBitInput(swingBuffer.duplicate()))
+							.aggregate(new ByteBufferBitInput(timestampBuffer.duplicate()), range[0], range[1]));
+		}
+
+		// A constant with points at 0, 1, 2 and 100 has three of them in [0, 50]
+		List<Constant> constants = new PmcMR().filter(
+				Arrays.asList(new Point(0, 5), new Point(1, 5), new Point(2, 5), new Point(100, 5)), 0.5f);
+		timestampOutput = new ByteBufferBitOutput();
+		timestampCompressor = new TimestampStreamCompressor(0, timestampOutput);
+		for (long t : new long[] {0, 1, 2, 100}) {
+			timestampCompressor.addTimestamp(t);
+		}
+		timestampCompressor.close();
+		timestampBuffer = timestampOutput.getByteBuffer();
+		timestampBuffer.flip();
+		SegmentAggregator aggregator = new DecompressorPmcMr(constants).aggregate(new ByteBufferBitInput(timestampBuffer), 0, 50);
+		assertEquals(3, aggregator.getCount());
+		assertEquals(15.0, aggregator.getSum());
+	}
+
+	@Test
+	public void testLossyFiltersWithIrregularTimestamps() throws IOException {
+		TimeseriesFileReader timeseriesFileReader = new TimeseriesFileReader(this.getClass().getResourceAsStream("/basel-temp.csv.gz"));
+		Random random = new Random(1);
+		long blockTimestamp = 1_500_000_000_000L;
+		Collection<Double> values;
+		while ((values = timeseriesFileReader.nextBlock()) != null) {
+			long[] timestamps = new long[values.size()];
+			long timestamp = blockTimestamp;
+			for (int i = 0; i < timestamps.length; i++) {
+				// Milliseconds with jitter and an occasional long gap
+				timestamp += random.nextInt(10) == 0 ? 60_000 + random.nextInt(60_000) : 1_000 + random.nextInt(50);
+				timestamps[i] = timestamp;
+			}
+			for (int logOfError = -4; logOfError < 4; logOfError += 2) {
+				float epsilon = (float) Math.pow(2, logOfError);
+				ByteBufferBitOutput timestampOutput = new ByteBufferBitOutput();
+				ByteBufferBitOutput pmcMrOutput = new ByteBufferBitOutput();
+				ByteBufferBitOutput swingOutput = new ByteBufferBitOutput();
+				TimestampStreamCompressor timestampCompressor = new TimestampStreamCompressor(blockTimestamp, timestampOutput);
+				PmcMRCompressor pmcMrCompressor = new PmcMRCompressor(blockTimestamp, pmcMrOutput);
+				PmcMREncoder pmcMrEncoder = new PmcMREncoder(epsilon, pmcMrCompressor);
+				SwingFilterCompressor swingCompressor = new SwingFilterCompressor(blockTimestamp, swingOutput);
+				SwingFilterEncoder swingEncoder = new SwingFilterEncoder(epsilon, swingCompressor);
+				int i = 0;
+				for (Double value : values) {
+					timestampCompressor.addTimestamp(timestamps[i]);
+					pmcMrEncoder.add(timestamps[i], value.floatValue());
+					swingEncoder.add(timestamps[i], value.floatValue());
+					i++;
+				}
+				timestampCompressor.close();
+				pmcMrEncoder.close();
+				pmcMrCompressor.close();
+				swingEncoder.close();
+				swingCompressor.close();
+
+				ByteBuffer timestampBuffer = timestampOutput.getByteBuffer();
+				timestampBuffer.flip();
+				ByteBuffer pmcMrBuffer = pmcMrOutput.getByteBuffer();
+				pmcMrBuffer.flip();
+				ByteBuffer swingBuffer = swingOutput.getByteBuffer();
+				swingBuffer.flip();
+
+				long[] decodedTimestamps = new long[timestamps.length];
+				float[] pmcMrValues = new float[timestamps.length];
+				float[] swingValues = new float[timestamps.length];
+				assertEquals(timestamps.length, new DecompressorPmcMr(new ByteBufferBitInput(pmcMrBuffer))
+						.decode(new ByteBufferBitInput(timestampBuffer.duplicate()), decodedTimestamps, pmcMrValues));
+				assertArrayEquals(timestamps, decodedTimestamps);
+				assertEquals(timestamps.length, new DecompressorSwingFilter(new ByteBufferBitInput(swingBuffer))
+						.decode(new ByteBufferBitInput(timestampBuffer.duplicate()), decodedTimestamps, swingValues));
+				assertArrayEquals(timestamps, decodedTimestamps);
+				i = 0;
+				for (Double value : values) {
+					assertEquals(value, pmcMrValues[i], epsilon, "PMC-MR value out of bounds");
+					assertEquals(value, swingValues[i], epsilon, "Swing value out of bounds");
+					i++;
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testSegmentEndsWithIrregularTimestamps() throws IOException {
+		TimeseriesFileReader timeseriesFileReader = new TimeseriesFileReader(this.getClass().getResourceAsStream("/basel-temp.csv.gz"));
+		Random random = new Random(1);
+		long blockTimestamp = 1_500_000_000_000L;
+		List<Point> points = new ArrayList<>();
+		long timestamp = blockTimestamp;
+		for (Double value : timeseriesFileReader.nextBlock()) {
+			timestamp += random.nextInt(10) == 0 ? 60_000 + random.nextInt(60_000) : 1_000 + random.nextInt(50);
+			points.add(new Point(timestamp, value.floatValue()));
+		}
+		float epsilon = 0.25f;
+
+		List<String> expected = new ArrayList<>();
+		for (SwingSegment segment : new SwingFilter().filter(points, epsilon)) {
+			expected.add(segment.getInitialTimestamp() + "-" + segment.getFinalTimestamp() + " (" + segment.getPoints() + "): " + segment.getLine().a + ", " + segment.getLine().b);
+		}
+		ByteBufferBitOutput swingOutput = new ByteBufferBitOutput();
+		SwingFilterCompressor swingCompressor = new SwingFilterCompressor(blockTimestamp, swingOutput);
+		SwingFilterEncoder swingEncoder = new SwingFilterEncoder(epsilon, swingCompressor);
+		points.forEach(point -> swingEncoder.add(point.getTimestamp(), point.getValue()));
+		swingEncoder.close();
+		swingCompressor.close();
+		ByteBuffer swingBuffer = swingOutput.getByteBuffer();
+		swingBuffer.flip();
+		List<String> actual = new ArrayList<>();
+		new DecompressorSwingFilter(new ByteBufferBitInput(swingBuffer)).readSegments(
+				(initialTimestamp, finalTimestamp, count, a, b) -> actual.add(initialTimestamp + "-" + finalTimestamp + " (" + count + "): " + a + ", " + b));
+		assertTrue(expected.size() > 1);
+		assertEquals(expected, actual);
+
+		expected.clear();
+		actual.clear();
+		ByteBufferBitOutput polynomialOutput = new ByteBufferBitOutput();
+		PolynomialCompressor polynomialCompressor = new PolynomialCompressor(blockTimestamp, 2, polynomialOutput);
+		PolynomialFilterEncoder polynomialEncoder = new PolynomialFilterEncoder(2, epsilon, (initialTimestamp, finalTimestamp, count, coefficients) -> {
+			expected.add(initialTimestamp + "-" + finalTimestamp + " (" + count + "): " + Arrays.toString(coefficients));
+			polynomialCompressor.accept(initialTimestamp, finalTimestamp, count, coefficients);
+		});
+		points.forEach(point -> polynomialEncoder.add(point.getTimestamp(), point.getValue()));
+		polynomialEncoder.close();
+		polynomialCompressor.close();
+		ByteBuffer polynomialBuffer = polynomialOutput.getByteBuffer();
+		polynomialBuffer.flip();
+		new DecompressorPolynomial(new ByteBufferBitInput(polynomialBuffer)).readSegments(
+				(initialTimestamp, finalTimestamp, count, coefficients) -> actual.add(initialTimestamp + "-" + finalTimestamp + " (" + count + "): " + Arrays.toString(coefficients)));
+		assertTrue(expected.size() > 1);
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testModelFiltersForBaselDatasets() throws IOException {
+		String[] filters = {"PMC-MR", "PMC-Mean", "Swing", "Slide", "Polynomial-2", "Polynomial-3"};
+		for (String filename : new String[] {"/basel-temp.csv.gz", "/basel-wind-speed.csv.gz"}) {
+			for (int logOfError = -4; logOfError < 6; logOfError += 3) {
+				float epsilon = (float) Math.pow(2, logOfError);
+				for (String filter : filters) {
+					TimeseriesFileReader timeseriesFileReader = new TimeseriesFileReader(this.getClass().getResourceAsStream(filename));
+					Collection<Double> values;
+					int timestamp = 0;
+					long totalSize = 0;
+					float totalBlocks = 0;
+					double maxPrecisionError = 0;
+					while ((values = timeseriesFileReader.nextBlock()) != null) {
+						long blockTimestamp = timestamp;
+						ByteBufferBitOutput output = new ByteBufferBitOutput();
+						SegmentEncoder encoder;
+						Runnable compressorClose;
+						switch (filter) {
+						case "PMC-MR":
+						case "PMC-Mean":
+							PmcMRCompressor constantCompressor = new PmcMRCompressor(blockTimestamp, output);
+							encoder = filter.equals("PMC-MR") ? new PmcMREncoder(epsilon, constantCompressor) : new PmcMeanEncoder(epsilon, constantCompressor);
+							compressorClose = constantCompressor::close;
+							break;
+						case "Swing":
+						case "Slide":
+							SwingFilterCompressor linearCompressor = new SwingFilterCompressor(blockTimestamp, output);
+							encoder = filter.equals("Swing") ? new SwingFilterEncoder(epsilon, linearCompressor) : new SlideFilterEncoder(epsilon, linearCompressor);
+							compressorClose = linearCompressor::close;
+							break;
+						default:
+							int degree = Integer.parseInt(filter.substring(filter.indexOf('-') + 1));
+							PolynomialCompressor polynomialCompressor = new PolynomialCompressor(blockTimestamp, degree, output);
+							encoder = new PolynomialFilterEncoder(degree, epsilon, polynomialCompressor);
+							compressorClose = polynomialCompressor::close;
+							break;
+						}
+						for (Double value : values) {
+							encoder.add(timestamp++, value.floatValue());
+						}
+						encoder.close();
+						compressorClose.run();
+
+						ByteBuffer byteBuffer = output.getByteBuffer();
+						byteBuffer.flip();
+						totalSize += byteBuffer.remaining() * Byte.SIZE;
+						totalBlocks += 1;
+
+						Supplier<Float> decompressor;
+						if (filter.startsWith("PMC")) {
+							decompressor = new DecompressorPmcMr(new ByteBufferBitInput(byteBuffer))::readValue;
+						} else if (filter.startsWith("Polynomial")) {
+							decompressor = new DecompressorPolynomial(new ByteBufferBitInput(byteBuffer))::readValue;
+						} else {
+							decompressor = new DecompressorSwingFilter(new ByteBufferBitInput(byteBuffer))::readValue;
+						}
+						for (Double value : values) {
+							float decompressedValue = decompressor.get();
+							double precisionError = Math.abs(value.floatValue() - (double) decompressedValue);
+							maxPrecisionError = Math.max(precisionError, maxPrecisionError);
+							assertTrue(precisionError <= epsilon, filter + " value out of bounds " + precisionError);
+						}
+						assertNull(decompressor.get());
+					}
+					System.out.println(String.format("%s %s - error: %f, Size : %d, Bits/value: %.2f, max error: %f",
+							filter, filename, epsilon, totalSize, totalSize / (totalBlocks * TimeseriesFileReader.DEFAULT_BLOCK_SIZE), maxPrecisionError));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testHybridEncoderForBaselDatasets() throws IOException {
+		for (String filename : new String[] {"/basel-temp.csv.gz", "/basel-wind-speed.csv.gz"}) {
+			for (int logOfError = -10; logOfError < 6; logOfError += 3) {
+				float epsilon = (float) Math.pow(2, logOfError);
+				TimeseriesFileReader timeseriesFileReader = new TimeseriesFileReader(this.getClass().getResourceAsStream(filename));
+				Collection<Double> values;
+				int timestamp = 0;
+				long totalSize = 0;
+				float totalBlocks = 0;
+				double maxPrecisionError = 0;
+				while ((values = timeseriesFileReader.nextBlock()) != null) {
+					ByteBufferBitOutput output = new ByteBufferBitOutput();
+					HybridEncoder encoder = new HybridEncoder(epsilon, output);
+					for (Double value : values) {
+						encoder.add(timestamp++, value.floatValue());
+					}
+					encoder.closeBlock();
+
+					ByteBuffer byteBuffer = output.getByteBuffer();
+					byteBuffer.flip();
+					totalSize += byteBuffer.remaining() * Byte.SIZE;
+					totalBlocks += 1;
+
+					DecompressorHybrid d = new DecompressorHybrid(new ByteBufferBitInput(byteBuffer));
+					for (Double value : values) {
+						double precisionError = Math.abs(value.floatValue() - (double) d.readValue());
+						maxPrecisionError = Math.max(precisionError, maxPrecisionError);
+						assertTrue(precisionError <= epsilon, "Value out of bounds " + precisionError);
+					}
+					assertNull(d.readValue());
+				}
+				System.out.println(String.format("Hybrid %s - error: %f, Size : %d, Bits/value: %.2f, max error: %f",
+						filename, epsilon, totalSize, totalSize / (totalBlocks * TimeseriesFileReader.DEFAULT_BLOCK_SIZE), maxPrecisionError));
+			}
+		}
+	}
+
+	@Test
+	public void testHybridEncoderReusedAfterClose() throws IOException {
+		TimeseriesFileReader timeseriesFileReader = new TimeseriesFileReader(this.getClass().getResourceAsStream("/basel-wind-speed.csv.gz"));
+		List<Double> values = new ArrayList<>(timeseriesFileReader.nextBlock());
+		float epsilon = 0.25f;
+		ByteBufferBitOutput output = new ByteBufferBitOutput();
+		HybridEncoder encoder = new HybridEncoder(epsilon, output);
+		int timestamp = 0;
+		for (Double value : values) {
+			encoder.add(timestamp, value.floatValue());
+			// Closing gives the buffered points as segments and the block continues
+			if (++timestamp % 500 == 0) {
+				encoder.close();
+			}
+		}
+		encoder.closeBlock();
+
+		ByteBuffer byteBuffer = output.getByteBuffer();
+		byteBuffer.flip();
+		DecompressorHybrid d = new DecompressorHybrid(new ByteBufferBitInput(byteBuffer));
+		for (Double value : values) {
+			assertEquals(value, d.readValue(), epsilon, "Value out of bounds");
+		}
+		assertNull(d.readValue());
+	}
+
+	@Test
+	public void testLossy32ErrorBoundForBaselDatasets() throws IOException {
+		for (String filename : new String[] {"/basel-temp.csv.gz", "/basel-wind-speed.csv.gz"}) {
+			for (boolean relative : new boolean[] {false, true}) {
+				for (int logOfError = relative ? -20 : -10; logOfError < (relative ? -1 : 10); logOfError += 3) {
+					double error = Math.pow(2, logOfError);
+					TimeseriesFileReader timeseriesFileReader = new TimeseriesFileReader(this.getClass().getResourceAsStream(filename));
+					Collection<Double> values;
+					long totalSize = 0;
+					float totalBlocks = 0;
+					while ((values = timeseriesFileReader.nextBlock()) != null) {
+						ByteBufferBitOutput output = new ByteBufferBitOutput();
+						LossyCompressor32 compressor = new LossyCompressor32(output, logOfError, relative);
+						values.forEach(value -> compressor.addValue(value.floatValue()));
+						compressor.close();
+						totalSize += compressor.getSize();
+						totalBlocks += 1;
+
+						ByteBuffer byteBuffer = output.getByteBuffer();
+						byteBuffer.flip();
+						Decompressor32 d = new Decompressor32(new ByteBufferBitInput(byteBuffer));
+						for (Double value : values) {
+							float original = value.floatValue();
+							double bound = relative ? error * Math.abs(original) : error;
+							float decompressed = d.readValue().getFloatValue();
+							if (bound == 0) {
+								assertEquals(original, decompressed);
+							} else {
+								assertTrue(Math.abs((double) original - decompressed) < bound, "Value out of bounds");
+							}
+						}
+						assertNull(d.readValue());
+					}
+					System.out.println(String.format("Lossy32 %s - %s error: %f, Bits/value: %.2f", filename,
+							relative ? "relative" : "absolute", error, totalSize / (totalBlocks * TimeseriesFileReader.DEFAULT_BLOCK_SIZE)));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testGorillaCompressor32ForBaselDatasets() throws IOException {
+		for (String filename : new String[] {"/basel-temp.csv.gz", "/basel-wind-speed.csv.gz"}) {
+			TimeseriesFileReader timeseriesFileReader = new TimeseriesFileReader(this.getClass().getResourceAsStream(filename));
+			Collection<Double> values;
+			long blockTimestamp = 1500000000000L;
+			long totalSize = 0;
+			long totalSize64 = 0;
+			float totalBlocks = 0;
+			while ((values = timeseriesFileReader.nextBlock()) != null) {
+				ByteBufferBitOutput output = new ByteBufferBitOutput();
+				GorillaCompressor32 compressor = new GorillaCompressor32(blockTimestamp, output);
+				ByteBufferBitOutput output64 = new ByteBufferBitOutput();
+				GorillaCompressor compressor64 = new GorillaCompressor(blockTimestamp, output64);
+				long timestamp = blockTimestamp;
+				for (Double value : values) {
+					timestamp += 3_600_000;
+					compressor.addValue(timestamp, value.floatValue());
+					compressor64.addValue(timestamp, value.doubleValue());
+				}
+				compressor.close();
+				compressor64.close();
+
+				ByteBuffer byteBuffer = output.getByteBuffer();
+				byteBuffer.flip();
+				totalSize += byteBuffer.remaining() * Byte.SIZE;
+				totalSize64 += output64.getByteBuffer().position() * Byte.SIZE;
+				totalBlocks += 1;
+
+				GorillaDecompressor32 d = new GorillaDecompressor32(new ByteBufferBitInput(byteBuffer));
+				timestamp = blockTimestamp;
+				for (Double value : values) {
+					timestamp += 3_600_000;
+					Point point = d.readPoint();
+					assertEquals(timestamp, point.getTimestamp(), "Timestamp did not match");
+					assertEquals(value.floatValue(), point.getValue(), "Value did not match");
+				}
+				assertNull(d.readPoint());
+				blockTimestamp = timestamp;
+			}
+			System.out.println(String.format("Gorilla32 %s - Bits/point: %.2f, Gorilla64 bits/point: %.2f", filename,
+					totalSize / (totalBlocks * TimeseriesFileReader.DEFAULT_BLOCK_SIZE),
+					totalSize64 / (totalBlocks * TimeseriesFileReader.DEFAULT_BLOCK_SIZE)));
+		}
+	}
+
+	@Test
+	public void testChimpForBaselDatasets() throws IOException {
+		for (String filename : new String[] {"/basel-temp.csv.gz", "/basel-wind-speed.csv.gz"}) {
+			for (String codec : new String[] {"Gorilla", "Elf", "Chimp", "Chimp128"}) {
+				TimeseriesFileReader timeseriesFileReader = new TimeseriesFileReader(this.getClass().getResourceAsStream(filename));
+				Collection<Double> values;
+				long blockTimestamp = 1500000000000L;
+				long totalSize = 0;
+				float totalBlocks = 0;
+				while ((values = timeseriesFileReader.nextBlock()) != null) {
+					LongArrayOutput output = new LongArrayOutput();
+					ValueEncoder valueCompressor = "Gorilla".equals(codec) ? new ValueCompressor(output)
+							: "Elf".equals(codec) ? new ElfValueCompressor(output)
+							: "Chimp".equals(codec) ? new ChimpValueCompressor(output) : new Chimp128ValueCompressor(output);
+					GorillaCompressor compressor = new GorillaCompressor(blockTimestamp, output, valueCompressor);
+					long timestamp = blockTimestamp;
+					for (Double value : values) {
+						timestamp += 3_600_000;
+						compressor.addValue(timestamp, value.doubleValue());
+					}
+					compressor.close();
+					long[] compressed = output.getLongArray();
+					totalSize += compressed.length * Long.SIZE;
+					totalBlocks += 1;
+
+					LongArrayInput input = new LongArrayInput(compressed);
+					ValueDecoder valueDecompressor = "Gorilla".equals(codec) ? new ValueDecompressor(input)
+							: "Elf".equals(codec) ? new ElfValueDecompressor(input)
+							: "Chimp".equals(codec) ? new ChimpValueDecompressor(input) : new Chimp128ValueDecompressor(input);
+					GorillaDecompressor d = new GorillaDecompressor(input, valueDecompressor);
+					for (Double value : values) {
+						assertEquals(value.doubleValue(), d.readPair().getDoubleValue(), "Value did not match");
+					}
+					assertNull(d.readPair());
+					blockTimestamp = timestamp;
+				}
+				System.out.println(String.format("%s %s - Bits/point: %.2f", codec, filename,
+						totalSize / (totalBlocks * TimeseriesFileReader.DEFAULT_BLOCK_SIZE)));
+			}
+		}
+	}
+
+	@Test
+	public void testPatasForBaselDatasets() throws IOException {
+		for (String filename : new String[] {"/basel-temp.csv.gz", "/basel-wind-speed.csv.gz"}) {
+			TimeseriesFileReader timeseriesFileReader = new TimeseriesFileReader(this.getClass().getResourceAsStream(filename));
+			Collection<Double> values;
+			long blockTimestamp = 1500000000000L;
+			long totalSize = 0;
+			float totalBlocks = 0;
+			while ((values = timeseriesFileReader.nextBlock()) != null) {
+				PatasCompressor compressor = new PatasCompressor(blockTimestamp, values.size());
+				long timestamp = blockTimestamp;
+				for (Double value : values) {
+					timestamp += 3_600_000;
+					compressor.addValue(timestamp, value.doubleValue());
+				}
+				compressor.close();
+				ByteBuffer byteBuffer = compressor.getByteBuffer();
+				byteBuffer.flip();
+				totalSize += byteBuffer.remaining() * Byte.SIZE;
+				totalBlocks += 1;
+
+				long[] timestamps = new long[values.size()];
+				double[] decoded = new double[values.size()];
+				assertEquals(values.size(), new PatasDecompressor(byteBuffer).decode(timestamps, decoded));
+				int i = 0;
+				for (Double value : values) {
+					assertEquals(blockTimestamp + (i + 1) * 3_600_000L, timestamps[i], "Timestamp did not match");
+					assertEquals(value.doubleValue(), decoded[i++], "Value did not match");
+				}
+				blockTimestamp = timestamp;
+			}
+			System.out.println(String.format("Patas %s - Bits/point: %.2f", filename,
+					totalSize / (totalBlocks * TimeseriesFileReader.DEFAULT_BLOCK_SIZE)));
+		}
+	}
+
+	@Test
+	public void testAlpForBaselDatasets() throws IOException {
+		for (String filename : new String[] {"/basel-temp.csv.gz", "/basel-wind-speed.csv.gz"}) {
+			TimeseriesFileReader timeseriesFileReader = new TimeseriesFileReader(this.getClass().getResourceAsStream(filename));
+			Collection<Double> values;
+			long totalSize = 0;
+			float totalBlocks = 0;
+			while ((values = timeseriesFileReader.nextBlock()) != null) {
+				AlpCompressor compressor = new AlpCompressor(values.size());
+				values.forEach(value -> compressor.addValue(value));
+				compressor.close();
+				ByteBuffer byteBuffer = compressor.getByteBuffer();
+				byteBuffer.flip();
+				totalSize += byteBuffer.remaining() * Byte.SIZE;
+				totalBlocks += 1;
+
+				double[] decoded = AlpDecompressor.decode(byteBuffer);
+				assertEquals(values.size(), decoded.length);
+				int i = 0;
+				for (Double value : values) {
+					assertEquals(value.doubleValue(), decoded[i++], "Value did not match");
+				}
+			}
+			System.out.println(String.format("ALP %s - Bits/value: %.2f", filename,
+					totalSize / (totalBlocks * TimeseriesFileReader.DEFAULT_BLOCK_SIZE)));
+		}
+	}
+
 	@Test
 	public void testSwingFilterSimple() throws IOException {
 		for (int logOfError = -10; logOfError < -9; logOfError++) {
@@ -1,7 +1,11 @@
 package gr.aueb.compression.gorilla;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.nio.ByteBuffer;
 import java.util.Arrays;
@@ -9,6 +13,8 @@ import java.util.concurrent.ThreadLocalRandom;
 
 import org.junit.jupiter.api.Test;
 
+import fi.iki.yak.ts.compression.gorilla.BlockDecoder;
+import fi.iki.yak.ts.compression.gorilla.BlockEncoder;
 import fi.iki.yak.ts.compression.gorilla.ByteBufferBitInput;
 import fi.iki.yak.ts.compression.gorilla.ByteBufferBitOutput;
 
@@ -405,6 +411,57 @@ public class Encode32Test {
         assertNull(d.readValue());
     }
 
+    @Test
+    void testDecodeToConsumer() throws Exception {
+        int amountOfPoints = 10000;
+        float[] values = new float[amountOfPoints];
+
+        ByteBufferBitOutput output = new ByteBufferBitOutput();
+        Compressor32 c = new Compressor32(output);
+        for(int i = 0; i < amountOfPoints; i++) {
+            values[i] = (float) (i * Math.random());
+            c.addValue(values[i]);
+        }
+        c.close();
+
+        ByteBuffer byteBuffer = output.getByteBuffer();
+        byteBuffer.flip();
+
+        int[] index = new int[1];
+        int count = Decompressor32.decode(new ByteBufferBitInput(byteBuffer), (i, value) -> {
+            assertEquals(index[0], i);
+            assertEquals(values[index[0]], Float.intBitsToFloat((int) value));
+            index[0]++;
+        });
+        assertEquals(amountOfPoints, count);
+    }
+
+    @Test
+    void testCursorDecoding() throws Exception {
+        int amountOfPoints = 10000;
+        float[] values = new float[amountOfPoints];
+
+        ByteBufferBitOutput output = new ByteBufferBitOutput();
+        Compressor32 c = new Compressor32(output);
+        for(int i = 0; i < amountOfPoints; i++) {
+            values[i] = (float) (i * Math.random());
+            c.addValue(values[i]);
+        }
+        c.close();
+
+        ByteBuffer byteBuffer = output.getByteBuffer();
+        byteBuffer.flip();
+
+        Decompressor32 d = new Decompressor32(new ByteBufferBitInput(byteBuffer));
+        for(int i = 0; i < amountOfPoints; i++) {
+            assertTrue(d.advance());
+            assertEquals(values[i], d.currentFloat());
+            assertEquals(Float.floatToRawIntBits(values[i]), d.currentBits());
+        }
+        assertFalse(d.advance());
+        assertNull(d.readValue());
+    }
+
     /**
      * Although not intended usage, an empty block should not cause errors
      */
@@ -463,4 +520,233 @@ public class Encode32Test {
         }
         assertNull(d.readValue());
     }
+
+    @Test
+    void testLossyErrorBoundOnRandomValues() throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for(int run = 0; run < 100; run++) {
+            boolean relative = random.nextBoolean();
+            int logOfError = relative ? random.nextInt(-23, 0) : random.nextInt(-30, 30);
+            double error = Math.scalb(1d, logOfError);
+
+            // Random walk over varying magnitudes, with some special values in between
+            float[] values = new float[1000];
+            double scale = Math.scalb(1d, random.nextInt(-40, 40));
+            double current = random.nextGaussian() * scale;
+            for(int i = 0; i < values.length; i++) {
+                current += random.nextGaussian() * scale / 10;
+                values[i] = (float) current;
+                if(random.nextInt(50) == 0) {
+                    float[] special = {0f, -0f, Float.MIN_VALUE, -Float.MIN_NORMAL, Float.MAX_VALUE, Float.POSITIVE_INFINITY};
+                    values[i] = special[random.nextInt(special.length)];
+                }
+            }
+
+            ByteBufferBitOutput output = new ByteBufferBitOutput();
+            LossyCompressor32 c = new LossyCompressor32(output, logOfError, relative);
+            for(float value : values) {
+                c.addValue(value);
+            }
+            c.close();
+
+            ByteBuffer byteBuffer = output.getByteBuffer();
+            byteBuffer.flip();
+            Decompressor32 d = new Decompressor32(new ByteBufferBitInput(byteBuffer));
+            for(float value : values) {
+                float decompressed = d.readValue().getFloatValue();
+                if(Float.isInfinite(value) || (relative && Math.abs(value) < Float.MIN_NORMAL)) {
+                    // Stored as is
+                    assertEquals(value, decompressed);
+                } else {
+                    double bound = relative ? error * Math.abs(value) : error;
+                    assertTrue(Math.abs((double) value - decompressed) < bound,
+                            String.format("Value %s decompressed as %s, error bound %s (relative: %b)", value, decompressed, bound, relative));
+                }
+            }
+            assertNull(d.readValue());
+        }
+    }
+
+    @Test
+    void testGorillaCompressor32WithTimestamps() throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long blockStart = 1500000000000L;
+        int amountOfPoints = 5000;
+        long[] timestamps = new long[amountOfPoints];
+        float[] values = new float[amountOfPoints];
+
+        long timestamp = blockStart + random.nextInt(1000);
+        float value = 20f;
+        for(int i = 0; i < amountOfPoints; i++) {
+            // Mostly regular interval with some jitter and gaps, NaN does not end the block
+            timestamp += random.nextInt(10) == 0 ? random.nextInt(1, 100000) : 1000;
+            value += random.nextInt(3) - 1;
+            timestamps[i] = timestamp;
+            values[i] = random.nextInt(100) == 0 ? Float.NaN : value;
+        }
+
+        ByteBufferBitOutput output = new ByteBufferBitOutput();
+        GorillaCompressor32 c = new GorillaCompressor32(blockStart, output);
+        for(int i = 0; i < amountOfPoints; i++) {
+            c.addValue(timestamps[i], values[i]);
+        }
+        c.close();
+
+        ByteBuffer byteBuffer = output.getByteBuffer();
+        byteBuffer.flip();
+        GorillaDecompressor32 d = new GorillaDecompressor32(new ByteBufferBitInput(byteBuffer.duplicate()));
+        for(int i = 0; i < amountOfPoints; i++) {
+            Point point = d.readPoint();
+            assertEquals(timestamps[i], point.getTimestamp(), "Timestamp did not match");
+            assertEquals(Float.floatToRawIntBits(values[i]), Float.floatToRawIntBits(point.getValue()), "Value did not match");
+        }
+        assertNull(d.readPoint());
+
+        long[] decodedTimestamps = new long[amountOfPoints];
+        float[] decodedValues = new float[amountOfPoints];
+        d = new GorillaDecompressor32(new ByteBufferBitInput(byteBuffer));
+        assertEquals(amountOfPoints, d.decode(decodedTimestamps, decodedValues));
+        assertArrayEquals(timestamps, decodedTimestamps);
+        assertArrayEquals(values, decodedValues);
+
+        // Empty block
+        output = new ByteBufferBitOutput();
+        new GorillaCompressor32(blockStart, output).close();
+        byteBuffer = output.getByteBuffer();
+        byteBuffer.flip();
+        assertNull(new GorillaDecompressor32(new ByteBufferBitInput(byteBuffer)).readPoint());
+    }
+
+    @Test
+    void testFramedValues() throws Exception {
+        int amountOfPoints = 10000;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        float[] values = new float[amountOfPoints];
+        for(int i = 0; i < amountOfPoints; i++) {
+            values[i] = random.nextInt(10) == 0 ? Float.NaN : random.nextInt(100) / 10f;
+        }
+
+        for(boolean lossy : new boolean[] { false, true }) {
+            ByteBufferBitOutput output = new ByteBufferBitOutput();
+            if(lossy) {
+                LossyCompressor32 c = new LossyCompressor32(output, -30, false, amountOfPoints);
+                for(float value : values) {
+                    c.addValue(value);
+                }
+                c.close();
+            } else {
+                Compressor32 c = new Compressor32(output, amountOfPoints);
+                for(float value : values) {
+                    c.addValue(value);
+                }
+                c.close();
+            }
+
+            ByteBuffer byteBuffer = output.getByteBuffer();
+            byteBuffer.flip();
+            Decompressor32 d = new Decompressor32(new ByteBufferBitInput(byteBuffer), true);
+            assertEquals(amountOfPoints, d.size());
+            assertTrue(d.advance());
+            assertEquals(Float.floatToRawIntBits(values[0]), d.currentBits());
+            float[] decoded = new float[d.size()];
+            assertEquals(amountOfPoints - 1, d.decode(decoded));
+            for(int i = 1; i < amountOfPoints; i++) {
+                if(lossy && !Float.isNaN(values[i])) {
+                    assertEquals(values[i], decoded[i - 1], Math.scalb(1d, -30), "Value did not match at point " + i);
+                } else {
+                    assertEquals(Float.floatToRawIntBits(values[i]), Float.floatToRawIntBits(decoded[i - 1]),
+                            "Value did not match at point " + i);
+                }
+            }
+            assertFalse(d.advance());
+        }
+    }
+
+    @Test
+    void testBlockContainer32() throws Exception {
+        int amountOfPoints = 5000;
+        long blockStart = 1_500_000_000_000L;
+        float maxError = 0.5f;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        long[] timestamps = new long[amountOfPoints];
+        float[] values = new float[amountOfPoints];
+        float value = 20;
+        for(int i = 0; i < amountOfPoints; i++) {
+            timestamps[i] = blockStart + 60 + i * 1000 + random.nextInt(10);
+            value += random.nextInt(21) / 10f - 1;
+            values[i] = value;
+        }
+
+        // A container of a 64-bit codec is stored first, the rest are scanned after it by the codec in the header
+        ByteBuffer store = ByteBuffer.allocate(4 * 1024 * 1024);
+        BlockEncoder gorilla = new BlockEncoder(BlockEncoder.CODEC_GORILLA, blockStart);
+        for(int i = 0; i < amountOfPoints; i++) {
+            gorilla.addValue(timestamps[i], (double) values[i]);
+        }
+        gorilla.close();
+        ByteBuffer gorillaBlock = gorilla.getByteBuffer();
+        gorillaBlock.flip();
+        store.put(gorillaBlock);
+
+        int[] codecs = new int[] { BlockEncoder.CODEC_COMPRESSOR32, BlockEncoder.CODEC_GORILLA32,
+                BlockEncoder.CODEC_LOSSY32, BlockEncoder.CODEC_PMC_MR, BlockEncoder.CODEC_SWING,
+                BlockEncoder.CODEC_POLYNOMIAL, BlockEncoder.CODEC_HYBRID };
+        for(int codec : codecs) {
+            boolean lossless = codec == BlockEncoder.CODEC_COMPRESSOR32 || codec == BlockEncoder.CODEC_GORILLA32;
+            for(int points : new int[] { -1, amountOfPoints }) {
+                BlockEncoder32 encoder = new BlockEncoder32(codec, blockStart, points, lossless ? 0 : maxError);
+                for(int i = 0; i < amountOfPoints; i++) {
+                    encoder.addValue(timestamps[i], values[i]);
+                }
+                encoder.close();
+                ByteBuffer block = encoder.getByteBuffer();
+                block.flip();
+                store.put(block);
+            }
+        }
+        store.flip();
+
+        BlockDecoder gorillaDecoder = new BlockDecoder(store);
+        assertFalse(BlockEncoder.isCodec32(gorillaDecoder.getCodec()));
+        assertThrows(IllegalArgumentException.class, () -> new BlockDecoder32(store));
+        store.position(store.position() + gorillaDecoder.length());
+
+        for(int codec : codecs) {
+            boolean lossless = codec == BlockEncoder.CODEC_COMPRESSOR32 || codec == BlockEncoder.CODEC_GORILLA32;
+            for(int j = 0; j < 2; j++) {
+                assertTrue(BlockEncoder.isCodec32(new BlockDecoder(store).getCodec()));
+                assertThrows(IllegalArgumentException.class, () -> new BlockDecoder(store).decode((t, v) -> { }));
+                BlockDecoder32 decoder = new BlockDecoder32(store);
+                assertEquals(codec, decoder.getCodec());
+                assertEquals(amountOfPoints, decoder.size());
+                assertEquals(timestamps[0], decoder.getFirstTimestamp());
+                assertEquals(timestamps[amountOfPoints - 1], decoder.getLastTimestamp());
+                assertEquals(!lossless, decoder.isLossy());
+
+                long[] decodedTimestamps = new long[decoder.size()];
+                float[] decodedValues = new float[decoder.size()];
+                assertEquals(amountOfPoints, decoder.decode(decodedTimestamps, decodedValues));
+                for(int i = 0; i < amountOfPoints; i++) {
+                    assertEquals(timestamps[i], decodedTimestamps[i],
+                            "Timestamp did not match at point " + i + " with codec " + codec);
+                    if(lossless) {
+                        assertEquals(values[i], decodedValues[i], "Value did not match at point " + i + " with codec "
+                                + codec);
+                    } else {
+                        assertEquals(values[i], decodedValues[i], maxError, "Value out of bounds at point " + i
+                                + " with codec " + codec);
+                    }
+                }
+                store.position(store.position() + decoder.length());
+            }
+        }
+        assertEquals(store.limit(), store.position());
+
+        assertThrows(IllegalArgumentException.class, () -> new BlockEncoder(BlockEncoder.CODEC_SWING, blockStart));
+        assertThrows(IllegalArgumentException.class, () -> new BlockEncoder32(BlockEncoder.CODEC_GORILLA, blockStart));
+        assertThrows(IllegalArgumentException.class,
+                () -> new BlockEncoder32(BlockEncoder.CODEC_GORILLA32, blockStart, -1, maxError));
+    }
 }